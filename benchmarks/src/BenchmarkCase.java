@@ -0,0 +1,21 @@
+//one benchmark: the operation is called repeatedly by the BenchmarkRunner and has to return its result, so the work can't be optimized away
+    //inputs are prepared beforehand (e.g. in the constructor of the anonymous subclass), only operation() is timed
+public abstract class BenchmarkCase {
+    private String name;
+    private String parameters;
+
+    public BenchmarkCase(String nameIn, String parametersIn) {
+        this.name = nameIn;
+        this.parameters = parametersIn;
+    }
+
+    public abstract Object operation();
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getParameters() {
+        return this.parameters;
+    }
+}
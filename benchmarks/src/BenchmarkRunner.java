@@ -0,0 +1,90 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Locale;
+
+//runs the benchmarks of MatchingBenchmarks and writes one row per benchmark into a .csv-file
+    //every benchmark: warmup iterations (discarded), then measurement iterations
+    //one iteration calls the operation until the iteration time has passed; the result is the mean time per call
+    //arguments: amino acids list (default: Aminoacids_list.csv), output file (default: benchmark_results.csv), optional part of the benchmark names to run
+    //start with a fixed heap, e.g. -Xms2g -Xmx2g, so the garbage collector behaves the same in every run, and with -Dfile.encoding=UTF-8 for the amino acids list
+public class BenchmarkRunner {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 500000000L;
+    //written after every call, so the results of the operations are used and can't be optimized away
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws FileNotFoundException {
+        String aminoAcidsPath = args.length > 0 ? args[0] : "Aminoacids_list.csv";
+        String outputPath = args.length > 1 ? args[1] : "benchmark_results.csv";
+        String filter = args.length > 2 ? args[2] : "";
+        ArrayList<AminoAcid> acids = CSVReader.aminoAcidParse(new File(aminoAcidsPath));
+        //the analysis prints e.g. every match; this would be measured as well, so the output is discarded while the benchmarks run
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        //point as decimal separator, independent of the system language
+        DecimalFormat threeDec = new DecimalFormat("0.000", new DecimalFormatSymbols(Locale.US));
+        PrintWriter csvWriter = new PrintWriter(new File(outputPath));
+        csvWriter.println("Benchmark,Parameters,Warmup Iterations,Measurement Iterations,Mean [us/op],Std. Dev. [us/op],Min [us/op],Max [us/op]");
+        for (BenchmarkCase benchmark : MatchingBenchmarks.benchmarkCreator(acids)) {
+            if (!benchmark.getName().contains(filter))
+                continue;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                iterationRunner(benchmark);
+            }
+            double[] results = new double[MEASUREMENT_ITERATIONS];
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                results[i] = iterationRunner(benchmark);
+            }
+            double mean = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for (double result : results) {
+                mean += result;
+                min = Math.min(min, result);
+                max = Math.max(max, result);
+            }
+            mean /= results.length;
+            double squaredDeviations = 0;
+            for (double result : results) {
+                squaredDeviations += (result - mean) * (result - mean);
+            }
+            double stdDev = Math.sqrt(squaredDeviations / (results.length - 1));
+
+            csvWriter.println(benchmark.getName() + "," + benchmark.getParameters() + "," + WARMUP_ITERATIONS + "," + MEASUREMENT_ITERATIONS + ","
+                    + threeDec.format(mean) + "," + threeDec.format(stdDev) + "," + threeDec.format(min) + "," + threeDec.format(max));
+            csvWriter.flush();
+            console.println(benchmark.getName() + " (" + benchmark.getParameters() + "): " + threeDec.format(mean) + " +- " + threeDec.format(stdDev) + " us/op");
+        }
+        csvWriter.close();
+        System.setOut(console);
+        System.out.println("Benchmark results written to: " + new File(outputPath).getAbsolutePath());
+    }
+
+    //mean time per call in microseconds
+    //the time is taken after every 16 calls, so fast operations are not dominated by System.nanoTime
+    private static double iterationRunner(BenchmarkCase benchmark) {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 16; i++) {
+                sink = benchmark.operation();
+            }
+            operations += 16;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        return elapsed / 1000.0 / operations;
+    }
+}
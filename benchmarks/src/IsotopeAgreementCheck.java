@@ -0,0 +1,40 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+//compares M+1/M+0 of IsotopicEnvelopeCalculator with IsotopicDistributer.abundanceAddNeutron for synthetic peptides with EC labels
+    //abundanceAddNeutron does not know the label carbon, so the envelopes are calculated with pure label carbons (enrichment 1)
+    //argument: amino acids list (default: Aminoacids_list.csv); start with -Dfile.encoding=UTF-8
+public class IsotopeAgreementCheck {
+    private static final int PEPTIDES_PER_LENGTH = 200;
+
+    public static void main(String[] args) {
+        String aminoAcidsPath = args.length > 0 ? args[0] : "Aminoacids_list.csv";
+        ArrayList<AminoAcid> acids = CSVReader.aminoAcidParse(new File(aminoAcidsPath));
+        IsotopicEnvelopeCalculator calculator = new IsotopicEnvelopeCalculator(1, IsotopicEnvelopeCalculator.DEFAULT_PRUNING_THRESHOLD);
+        SumFormula label = new SumFormula("C11H17N3O1S1Cx1");
+        Random random = SyntheticData.randomCreator();
+
+        int compared = 0;
+        double maxDeviation = 0;
+        double deviationSum = 0;
+        for (int length = 5; length <= 50; length += 5) {
+            for (int i = 0; i < PEPTIDES_PER_LENGTH; i++) {
+                int lysines = random.nextInt(Math.min(4, length) + 1);
+                SumFormula formula = new Peptide(SyntheticData.sequenceCreator(random, length, lysines), acids).getSumFormula();
+                for (int l = 0; l < lysines; l++) {
+                    formula = SumFormula.sumFormulaJoiner(formula, label);
+                }
+                double expected = IsotopicDistributer.abundanceAddNeutron(formula);
+                double envelopeFactor = calculator.relativeEnvelopeCalculator(formula, 2)[1];
+                double deviation = Math.abs(envelopeFactor - expected) / expected;
+                maxDeviation = Math.max(maxDeviation, deviation);
+                deviationSum += deviation;
+                compared++;
+            }
+        }
+        System.out.println("Compared sum formulas: " + compared);
+        System.out.println("Max. relative deviation of M+1: " + maxDeviation);
+        System.out.println("Mean relative deviation of M+1: " + deviationSum / compared);
+    }
+}
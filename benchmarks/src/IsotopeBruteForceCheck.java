@@ -0,0 +1,70 @@
+import java.util.Random;
+
+//compares the envelopes of IsotopicEnvelopeCalculator with a brute-force convolution of every single atom
+    //random sum formulas with C, H, N, O, S and label carbons Cx; the brute force is not pruned, so the deviation shows the effect of the pruning
+    //deviations are relative to the highest entry, as the pruning threshold; every convolution prunes, so they can add up to a few times the threshold
+    //argument: pruning threshold (default: IsotopicEnvelopeCalculator.DEFAULT_PRUNING_THRESHOLD, 0 turns the pruning off)
+public class IsotopeBruteForceCheck {
+    private static final int FORMULAS = 300;
+    private static final int PEAKS = 6;
+    //abundances of IsotopicEnvelopeCalculator, from M+0 on
+    private static final double[] C_ABUNDANCES = {0.988922, 0.011078};
+    private static final double[] H_ABUNDANCES = {0.99984427, 0.00015575};
+    private static final double[] N_ABUNDANCES = {0.996337, 0.003663};
+    private static final double[] O_ABUNDANCES = {0.9976206, 0.000379, 0.0020004};
+    private static final double[] S_ABUNDANCES = {0.9504074, 0.0074869, 0.0419599, 0, 0.0001458};
+
+    public static void main(String[] args) {
+        double pruningThreshold = args.length > 0 ? Double.parseDouble(args[0]) : IsotopicEnvelopeCalculator.DEFAULT_PRUNING_THRESHOLD;
+        IsotopicEnvelopeCalculator calculator = new IsotopicEnvelopeCalculator(IsotopicEnvelopeCalculator.DEFAULT_CX_ENRICHMENT, pruningThreshold);
+        double enrichment = IsotopicEnvelopeCalculator.DEFAULT_CX_ENRICHMENT;
+        Random random = SyntheticData.randomCreator();
+
+        double maxDeviation = 0;
+        for (int i = 0; i < FORMULAS; i++) {
+            int c = 1 + random.nextInt(120);
+            int h = 2 + random.nextInt(200);
+            int n = random.nextInt(35);
+            int o = random.nextInt(40);
+            int s = random.nextInt(3);
+            int cx = random.nextInt(5);
+            String formula = "C" + c + "H" + h + (n > 0 ? "N" + n : "") + (o > 0 ? "O" + o : "") + (s > 0 ? "S" + s : "") + (cx > 0 ? "Cx" + cx : "");
+
+            double[] bruteForce = atomConvolver(C_ABUNDANCES, c, new double[]{1});
+            bruteForce = atomConvolver(H_ABUNDANCES, h, bruteForce);
+            bruteForce = atomConvolver(N_ABUNDANCES, n, bruteForce);
+            bruteForce = atomConvolver(O_ABUNDANCES, o, bruteForce);
+            bruteForce = atomConvolver(S_ABUNDANCES, s, bruteForce);
+            //a label carbon is 13C (M+0 of the label) or 12C (M-1), so M+0 of the formula is at index cx
+            bruteForce = atomConvolver(new double[]{1 - enrichment, enrichment}, cx, bruteForce);
+
+            double highestEntry = 0;
+            for (double abundance : bruteForce) {
+                highestEntry = Math.max(highestEntry, abundance);
+            }
+            double[] envelope = calculator.envelopeCalculator(new SumFormula(formula), PEAKS);
+            for (int k = 0; k < PEAKS; k++) {
+                double expected = cx + k < bruteForce.length ? bruteForce[cx + k] : 0;
+                maxDeviation = Math.max(maxDeviation, Math.abs(envelope[k] - expected) / highestEntry);
+            }
+        }
+        System.out.println("Compared sum formulas: " + FORMULAS + ", peaks: M+0 to M+" + (PEAKS - 1));
+        System.out.println("Max. deviation from the brute force (relative to the highest entry): " + maxDeviation);
+        System.out.println("Pruning threshold: " + calculator.getPruningThreshold());
+    }
+
+    //convolves the distribution with the abundances of one atom, once for every atom
+    private static double[] atomConvolver(double[] atomAbundances, int atomCount, double[] distributionIn) {
+        double[] distribution = distributionIn;
+        for (int atom = 0; atom < atomCount; atom++) {
+            double[] convolved = new double[distribution.length + atomAbundances.length - 1];
+            for (int i = 0; i < distribution.length; i++) {
+                for (int j = 0; j < atomAbundances.length; j++) {
+                    convolved[i + j] += distribution[i] * atomAbundances[j];
+                }
+            }
+            distribution = convolved;
+        }
+        return distribution;
+    }
+}
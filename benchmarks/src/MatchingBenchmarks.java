@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+//benchmarks of the hot paths of the whole run analysis
+    //spectra: 1k, 10k and 50k peaks; peptides: 7 to 40 residues with 0 to 4 lysines
+    //every benchmark cycles through several inputs, so the results don't depend on a single peptide or spectrum
+public class MatchingBenchmarks {
+    private static final int INPUTS = 16;
+    private static final int[] PEAK_COUNTS = {1000, 10000, 50000};
+    private static final int[] PEPTIDE_LENGTHS = {7, 20, 40};
+    private static final int[] LYSINE_COUNTS = {0, 2, 4};
+    private static final double PPM_DEV = 5;
+
+    public static ArrayList<BenchmarkCase> benchmarkCreator(ArrayList<AminoAcid> acids) {
+        ArrayList<BenchmarkCase> benchmarks = new ArrayList<>();
+        for (int length : PEPTIDE_LENGTHS) {
+            benchmarks.add(sumFormulaParseBenchmark(acids, length));
+            benchmarks.add(sumFormulaJoinBenchmark(acids, length));
+            benchmarks.add(peptideBenchmark(acids, length));
+            benchmarks.add(isotopeBenchmark(acids, length));
+            benchmarks.add(isotopeEnvelopeBenchmark(acids, length));
+        }
+        for (int peaks : PEAK_COUNTS) {
+            benchmarks.add(peakCompareBenchmark(acids, peaks));
+            benchmarks.add(reporterFinderBenchmark(acids, peaks));
+        }
+        //label combinations grow with the number of lysines, spectrum size changes the cost of every comparison
+        for (int lysines : LYSINE_COUNTS) {
+            benchmarks.add(compClusterBenchmark(acids, 10000, lysines));
+        }
+        benchmarks.add(compClusterBenchmark(acids, 1000, 2));
+        benchmarks.add(compClusterBenchmark(acids, 50000, 2));
+        return benchmarks;
+    }
+
+    private static String[] sequencesCreator(Random random, int lengthIn, int lysinesIn) {
+        String[] sequences = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            sequences[i] = SyntheticData.sequenceCreator(random, lengthIn, lysinesIn);
+        }
+        return sequences;
+    }
+
+    private static BenchmarkCase sumFormulaParseBenchmark(ArrayList<AminoAcid> acids, int lengthIn) {
+        Random random = SyntheticData.randomCreator();
+        final String[] formulas = new String[INPUTS];
+        String[] sequences = sequencesCreator(random, lengthIn, 1);
+        for (int i = 0; i < INPUTS; i++) {
+            formulas[i] = new Peptide(sequences[i], acids).getSumFormula().getSumFormula();
+        }
+        return new BenchmarkCase("SumFormula.parse", "residues=" + lengthIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return new SumFormula(formulas[next]);
+            }
+        };
+    }
+
+    private static BenchmarkCase sumFormulaJoinBenchmark(ArrayList<AminoAcid> acids, int lengthIn) {
+        Random random = SyntheticData.randomCreator();
+        final SumFormula[] formulas = new SumFormula[INPUTS];
+        String[] sequences = sequencesCreator(random, lengthIn, 1);
+        for (int i = 0; i < INPUTS; i++) {
+            formulas[i] = new Peptide(sequences[i], acids).getSumFormula();
+        }
+        final SumFormula label = new SumFormula("C11H17N3O1S1Cx1");
+        return new BenchmarkCase("SumFormula.join", "residues=" + lengthIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return SumFormula.sumFormulaJoiner(formulas[next], label);
+            }
+        };
+    }
+
+    private static BenchmarkCase peptideBenchmark(final ArrayList<AminoAcid> acids, int lengthIn) {
+        Random random = SyntheticData.randomCreator();
+        final String[] sequences = sequencesCreator(random, lengthIn, Math.min(2, lengthIn));
+        return new BenchmarkCase("Peptide.new", "residues=" + lengthIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return new Peptide(sequences[next], acids);
+            }
+        };
+    }
+
+    private static BenchmarkCase isotopeBenchmark(ArrayList<AminoAcid> acids, int lengthIn) {
+        Random random = SyntheticData.randomCreator();
+        final SumFormula[] formulas = new SumFormula[INPUTS];
+        String[] sequences = sequencesCreator(random, lengthIn, 1);
+        for (int i = 0; i < INPUTS; i++) {
+            formulas[i] = new Peptide(sequences[i], acids).getSumFormula();
+        }
+        return new BenchmarkCase("IsotopicDistributer.abundanceAddNeutron", "residues=" + lengthIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return IsotopicDistributer.abundanceAddNeutron(formulas[next]);
+            }
+        };
+    }
+
+    //M+0 to M+4 of the peptide with one EC label, so the label carbon is part of the envelope
+    private static BenchmarkCase isotopeEnvelopeBenchmark(ArrayList<AminoAcid> acids, int lengthIn) {
+        Random random = SyntheticData.randomCreator();
+        final SumFormula[] formulas = new SumFormula[INPUTS];
+        String[] sequences = sequencesCreator(random, lengthIn, 1);
+        SumFormula label = new SumFormula("C11H17N3O1S1Cx1");
+        for (int i = 0; i < INPUTS; i++) {
+            formulas[i] = SumFormula.sumFormulaJoiner(new Peptide(sequences[i], acids).getSumFormula(), label);
+        }
+        final IsotopicEnvelopeCalculator calculator = IsotopicEnvelopeCalculator.getDefaultCalculator();
+        return new BenchmarkCase("IsotopicEnvelopeCalculator.envelopeCalculator", "residues=" + lengthIn + ";peaks=5") {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return calculator.envelopeCalculator(formulas[next], 5);
+            }
+        };
+    }
+
+    private static BenchmarkCase peakCompareBenchmark(ArrayList<AminoAcid> acids, int peaksIn) {
+        Random random = SyntheticData.randomCreator();
+        final MySpectrum[] spectra = new MySpectrum[INPUTS];
+        final Peptide[] peptides = new Peptide[INPUTS];
+        String[] sequences = sequencesCreator(random, 20, 2);
+        for (int i = 0; i < INPUTS; i++) {
+            spectra[i] = SyntheticData.spectrumCreator(random, peaksIn, sequences[i], acids, i + 1);
+            peptides[i] = new Peptide(sequences[i], acids);
+        }
+        return new BenchmarkCase("PeakCompare.peakCompare", "peaks=" + peaksIn + ";residues=20") {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return PeakCompare.peakCompare(spectra[next], peptides[next], PPM_DEV);
+            }
+        };
+    }
+
+    private static BenchmarkCase reporterFinderBenchmark(ArrayList<AminoAcid> acids, int peaksIn) {
+        Random random = SyntheticData.randomCreator();
+        final MySpectrum[] spectra = new MySpectrum[INPUTS];
+        String[] sequences = sequencesCreator(random, 20, 2);
+        for (int i = 0; i < INPUTS; i++) {
+            spectra[i] = SyntheticData.spectrumCreator(random, peaksIn, sequences[i], acids, i + 1);
+        }
+        return new BenchmarkCase("PeakCompare.reporterFinder", "peaks=" + peaksIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return PeakCompare.reporterFinder(spectra[next], "EC", PPM_DEV);
+            }
+        };
+    }
+
+    private static BenchmarkCase compClusterBenchmark(final ArrayList<AminoAcid> acids, int peaksIn, int lysinesIn) {
+        Random random = SyntheticData.randomCreator();
+        final MySpectrum[] spectra = new MySpectrum[INPUTS];
+        final String[] sequences = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            //lengths between 7 and 40 residues
+            sequences[i] = SyntheticData.sequenceCreator(random, 7 + random.nextInt(34), lysinesIn);
+            spectra[i] = SyntheticData.spectrumCreator(random, peaksIn, sequences[i], acids, i + 1);
+        }
+        final ArrayList<Modification> mods = new ArrayList<>();
+        return new BenchmarkCase("LabelFragmentIonChecker.compClusterCheckerEC", "peaks=" + peaksIn + ";lysines=" + lysinesIn) {
+            private int next = 0;
+
+            @Override
+            public Object operation() {
+                next = (next + 1) % INPUTS;
+                return LabelFragmentIonChecker.compClusterCheckerEC(acids, sequences[next], mods, spectra[next], PPM_DEV, "P00000");
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+//fuzz test of PeakCompare.reporterFinder (DiagnosticIonTable) against the linear scan it replaced
+    //random spectra with peaks around the reporter ions and on the window bounds, TMT and EC, deviations from 0.1 to 50000 ppm
+    //matches have to be the same peaks with the same rep names in the same order
+public class ReporterWindowCheck {
+    private static final int SPECTRA = 20000;
+
+    public static void main(String[] args) {
+        Random random = SyntheticData.randomCreator();
+        String[] labels = {"TMT", "EC"};
+        int matches = 0;
+        int mismatches = 0;
+        for (int i = 0; i < SPECTRA; i++) {
+            String labelName = labels[random.nextInt(labels.length)];
+            double ppmDev = Math.pow(10, -1 + random.nextDouble() * 5.7);
+            double[] reporterMasses = reporterMassGetter(labelName);
+
+            int peakCount = 1 + random.nextInt(200);
+            double[] mz = new double[peakCount];
+            double[] intensity = new double[peakCount];
+            for (int p = 0; p < peakCount; p++) {
+                double reporterMass = reporterMasses[random.nextInt(2)];
+                double[] massRange = DeviationCalc.ppmRangeCalc(ppmDev, reporterMass);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        mz[p] = massRange[random.nextInt(2)];
+                        break;
+                    case 1:
+                        mz[p] = reporterMass + (random.nextDouble() - 0.5) * 3 * (massRange[1] - massRange[0]);
+                        break;
+                    case 2:
+                        mz[p] = reporterMass + (random.nextDouble() - 0.5) * 60;
+                        break;
+                    default:
+                        mz[p] = 100 + random.nextDouble() * 1900;
+                }
+                intensity[p] = Math.pow(10, 3 + random.nextDouble() * 4);
+            }
+            MySpectrum spectrum = new MySpectrum(mz, intensity, null, i + 1, MzXMLReadIn.scanHeaderCreator(500.0, 2));
+
+            ArrayList<ReporterMatch> expected = linearReporterFinder(spectrum, labelName, ppmDev, reporterMasses);
+            ArrayList<ReporterMatch> found = PeakCompare.reporterFinder(spectrum, labelName, ppmDev);
+            matches += expected.size();
+            if (!sameMatches(expected, found)) {
+                mismatches++;
+                System.out.println("Mismatch! Label: " + labelName + ", deviation: " + ppmDev + " ppm, scan: " + (i + 1));
+            }
+        }
+        System.out.println("Compared spectra: " + SPECTRA + ", reporter matches: " + matches);
+        System.out.println("Spectra with other matches: " + mismatches);
+    }
+
+    private static double[] reporterMassGetter(String labelName) {
+        if (labelName.equals("TMT"))
+            return new double[]{126.12773, 127.13108};
+        return new double[]{179.08487, 180.08823};
+    }
+
+    //the search of PeakCompare.reporterFinder before DiagnosticIonTable: every peak up to rep1 + 20 m/z is compared with both windows
+    private static ArrayList<ReporterMatch> linearReporterFinder(MySpectrum spectrumIn, String labelName, double ppmDev, double[] reporterMasses) {
+        ArrayList<ReporterMatch> matchedReporters = new ArrayList<>();
+        double[] massRangeRep0 = DeviationCalc.ppmRangeCalc(ppmDev, reporterMasses[0]);
+        double[] massRangeRep1 = DeviationCalc.ppmRangeCalc(ppmDev, reporterMasses[1]);
+        for (int p = 0; p < spectrumIn.getNumberOfPeaks(); p++) {
+            Peak peak = spectrumIn.getPeak(p);
+            if (peak.getMass() >= massRangeRep0[0] && peak.getMass() <= massRangeRep0[1])
+                matchedReporters.add(new ReporterMatch(peak, reporterMasses[0], labelName, "Rep0"));
+            if (peak.getMass() >= massRangeRep1[0] && peak.getMass() <= massRangeRep1[1])
+                matchedReporters.add(new ReporterMatch(peak, reporterMasses[1], labelName, "Rep1"));
+            if (peak.getMass() > (reporterMasses[1] + 20))
+                break;
+        }
+        return matchedReporters;
+    }
+
+    private static boolean sameMatches(ArrayList<ReporterMatch> expected, ArrayList<ReporterMatch> found) {
+        if (expected.size() != found.size())
+            return false;
+        for (int i = 0; i < expected.size(); i++) {
+            ReporterMatch a = expected.get(i);
+            ReporterMatch b = found.get(i);
+            if (!a.getRepName().equals(b.getRepName()) || a.getPeak().getMass() != b.getPeak().getMass()
+                    || a.getPeak().getIntensity() != b.getPeak().getIntensity() || a.getReporterMass() != b.getReporterMass())
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+//synthetic peptides and spectra for the benchmarks
+    //everything is created from a fixed seed, so every benchmark run works on the same data
+public class SyntheticData {
+    //amino acids of the random sequences; lysines are placed separately, cysteines are left out so no carbamidomethylation is needed
+    private static final String RESIDUES = "ADEFGHILMNPQRSTVWY";
+    private static final long SEED = 20171018L;
+
+    public static Random randomCreator() {
+        return new Random(SEED);
+    }
+
+    //random sequence with the given number of lysines; tryptic: ends with K if there is a lysine, otherwise with R
+    public static String sequenceCreator(Random random, int lengthIn, int lysinesIn) {
+        if (lysinesIn > lengthIn)
+            throw new IllegalArgumentException("More lysines than residues! Length: "+lengthIn+" Lysines: "+lysinesIn);
+        char[] sequence = new char[lengthIn];
+        for (int i = 0; i < lengthIn - 1; i++) {
+            char residue = RESIDUES.charAt(random.nextInt(RESIDUES.length()));
+            //R only at the C-terminus
+            while (residue == 'R')
+                residue = RESIDUES.charAt(random.nextInt(RESIDUES.length()));
+            sequence[i] = residue;
+        }
+        sequence[lengthIn - 1] = 'R';
+        if (lysinesIn > 0) {
+            sequence[lengthIn - 1] = 'K';
+            int placed = 1;
+            while (placed < lysinesIn) {
+                int position = random.nextInt(lengthIn - 1);
+                if (sequence[position] != 'K') {
+                    sequence[position] = 'K';
+                    placed++;
+                }
+            }
+        }
+        return new String(sequence);
+    }
+
+    //random peaks between 100 and 2000 m/z with intensities spread over 4 orders of magnitude
+    //the EC reporter ions and the singly charged b- and y-ions of the peptide with intact EC labels are added, so the matching finds hits as in real spectra
+    public static MySpectrum spectrumCreator(Random random, int peakCountIn, String sequenceIn, ArrayList<AminoAcid> acids, int scanNumberIn) {
+        LabelCombinationModel labelCombinations = new LabelCombinationModel(sequenceIn, acids, new ArrayList<Modification>(), "EC");
+        Peptide labeledPeptide = Peptide.modifiedPeptideCreator(sequenceIn, labelCombinations.getCombinationAcids(0));
+        double[] bIons = labeledPeptide.getFragmentMToZ('b', 1);
+        double[] yIons = labeledPeptide.getFragmentMToZ('y', 1);
+
+        int knownPeaks = 2 + bIons.length + yIons.length;
+        int peakCount = Math.max(peakCountIn, knownPeaks);
+        double[] mz = new double[peakCount];
+        double[] intensity = new double[peakCount];
+        int pointer = 0;
+        mz[pointer++] = 179.08487;
+        mz[pointer++] = 180.08823;
+        for (double b : bIons)
+            mz[pointer++] = b;
+        for (double y : yIons)
+            mz[pointer++] = y;
+        while (pointer < peakCount) {
+            mz[pointer] = 100 + random.nextDouble() * 1900;
+            pointer++;
+        }
+        for (int i = 0; i < peakCount; i++) {
+            intensity[i] = Math.pow(10, 3 + random.nextDouble() * 4);
+        }
+
+        int precursorCharge = 2 + random.nextInt(2);
+        double precursorMZ = (labeledPeptide.getExactMass() + precursorCharge * AtomicMasses.getPROTON()) / precursorCharge;
+        String scanHeader = MzXMLReadIn.scanHeaderCreator(precursorMZ, precursorCharge);
+        return new MySpectrum(mz, intensity, null, scanNumberIn, scanHeader);
+    }
+}
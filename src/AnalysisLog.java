@@ -0,0 +1,52 @@
+//log levels for the console output of the analysis
+    //QUIET: no output, INFO: start, end and progress messages, DEBUG: additionally one line per spectrum, scan, peptide and fragment ion match
+    //the lines per spectrum slow down long runs considerably, so they are only printed with DEBUG; the progress is reported by RunMetrics instead
+    //the level can be set with -DanalysisLog=DEBUG (or QUIET) when starting the program, or with setLogLevel
+public class AnalysisLog {
+    public static final int QUIET = 0;
+    public static final int INFO = 1;
+    public static final int DEBUG = 2;
+
+    private static volatile int logLevel = levelParser(System.getProperty("analysisLog", "INFO"));
+
+    //QUIET, INFO or DEBUG, case is ignored
+    public static int levelParser(String levelIn) {
+        String level = levelIn.trim().toUpperCase();
+        if (level.equals("QUIET"))
+            return QUIET;
+        if (level.equals("INFO"))
+            return INFO;
+        if (level.equals("DEBUG"))
+            return DEBUG;
+        throw new IllegalArgumentException("Unknown log level: "+levelIn+"! Please use QUIET, INFO or DEBUG");
+    }
+
+    public static void setLogLevel(int levelIn) {
+        if (levelIn < QUIET || levelIn > DEBUG)
+            throw new IllegalArgumentException("Unknown log level: "+levelIn+"! Please use QUIET, INFO or DEBUG");
+        logLevel = levelIn;
+    }
+
+    public static int getLogLevel() {
+        return logLevel;
+    }
+
+    //check this before building a message in a hot loop
+    public static boolean isDebugEnabled() {
+        return logLevel >= DEBUG;
+    }
+
+    public static boolean isInfoEnabled() {
+        return logLevel >= INFO;
+    }
+
+    public static void info(String messageIn) {
+        if (logLevel >= INFO)
+            System.out.println(messageIn);
+    }
+
+    public static void debug(String messageIn) {
+        if (logLevel >= DEBUG)
+            System.out.println(messageIn);
+    }
+}
@@ -0,0 +1,253 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLParsingException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLSpectrum;
+import uk.ac.ebi.pride.tools.mzxml_parser.mzxml.model.Scan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+//binary copy of the MS2 scans of a mzXML-file, created once with cacheCreator and opened again in milliseconds
+    //file layout: header (magic number, version, offset of the scan index), peak blocks, scan index
+    //peak block of a scan: all m/z values, then all intensities (doubles, sorted by ascending m/z)
+    //scan index entry: scan number, number of peaks, offset of the peak block, precursor m/z (NaN if missing), precursor charge (Integer.MIN_VALUE if missing)
+    //the peak blocks are memory mapped, the peaks of a scan are copied with one bulk read directly from the mapping into the columns of MySpectrum
+    //random access source: scan numbers can be requested in any order and by several threads at the same time
+public class BinarySpectrumCache implements SpectrumSource {
+    private static final int MAGIC_NUMBER = 0x43494353;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 28;
+    //the peak blocks are mapped in segments of 1 GB, a peak block never crosses a segment border
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int NO_CHARGE = Integer.MIN_VALUE;
+
+    private File cacheFile;
+    private int[] scanNumbers;
+    private int[] peakCounts;
+    private long[] peakOffsets;
+    private double[] precursorMZs;
+    private int[] precursorCharges;
+    private MappedByteBuffer[] segments;
+
+    public BinarySpectrumCache(File cacheFileIn) throws IOException {
+        this.cacheFile = cacheFileIn;
+        RandomAccessFile file = new RandomAccessFile(cacheFileIn, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC_NUMBER)
+                throw new IllegalArgumentException("Not a binary spectrum cache: " + cacheFileIn.getAbsolutePath());
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported binary spectrum cache version: " + version + "! Please create the cache again.");
+            long indexOffset = header.getLong();
+
+            //the scan index is small and read completely
+            long indexBytes = channel.size() - indexOffset;
+            if (indexOffset < HEADER_BYTES || indexBytes % INDEX_ENTRY_BYTES != 0)
+                throw new IllegalArgumentException("Binary spectrum cache is incomplete: " + cacheFileIn.getAbsolutePath());
+            int scanCount = (int) (indexBytes / INDEX_ENTRY_BYTES);
+            this.scanNumbers = new int[scanCount];
+            this.peakCounts = new int[scanCount];
+            this.peakOffsets = new long[scanCount];
+            this.precursorMZs = new double[scanCount];
+            this.precursorCharges = new int[scanCount];
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexBytes);
+            for (int i = 0; i < scanCount; i++) {
+                this.scanNumbers[i] = index.getInt();
+                this.peakCounts[i] = index.getInt();
+                this.peakOffsets[i] = index.getLong();
+                this.precursorMZs[i] = index.getDouble();
+                this.precursorCharges[i] = index.getInt();
+            }
+
+            //the mappings stay valid after the file is closed
+            int segmentCount = (int) ((indexOffset - HEADER_BYTES + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long segmentStart = HEADER_BYTES + s * SEGMENT_BYTES;
+                long segmentLength = Math.min(SEGMENT_BYTES, indexOffset - segmentStart);
+                this.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    //opens the cache of the mzXML-file; if there is no cache or the mzXML-file was changed afterwards, the cache is created first
+    public static BinarySpectrumCache cacheOpener(File mzXMLFileIn, File cacheFileIn) throws IOException, MzXMLParsingException {
+        if (!cacheFileIn.exists() || cacheFileIn.lastModified() < mzXMLFileIn.lastModified()) {
+            System.out.println("Creating binary spectrum cache: " + cacheFileIn.getAbsolutePath());
+            cacheCreator(new MzXMLFile(mzXMLFileIn), cacheFileIn);
+        }
+        return new BinarySpectrumCache(cacheFileIn);
+    }
+
+    //reads all MS2 scans of the mzXML-file in one forward pass and writes them into the cache file
+    //the file is written under a temporary name and renamed at the end, so an interrupted conversion never leaves an incomplete cache
+    public static void cacheCreator(MzXMLFile mzXMLFileIn, File cacheFileOut) throws IOException, MzXMLParsingException {
+        File tempFile = new File(cacheFileOut.getAbsolutePath() + ".tmp");
+        ArrayList<int[]> scanInfos = new ArrayList<>();
+        ArrayList<Long> offsets = new ArrayList<>();
+        ArrayList<Double> precursorMZList = new ArrayList<>();
+        long position = HEADER_BYTES;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+        try {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            //offset of the scan index, set at the end
+            out.writeLong(0);
+
+            MzXMLFile.MzXMLScanIterator ms2Iterator = mzXMLFileIn.getMS2ScanIterator();
+            while (ms2Iterator.hasNext()) {
+                Scan currentScan = ms2Iterator.next();
+                MzXMLSpectrum currentSpectrum = new MzXMLSpectrum(currentScan);
+                Map<Double, Double> mzXMLPeakList = currentSpectrum.getPeakList();
+                double[] masses = new double[mzXMLPeakList.size()];
+                double[] intensities = new double[mzXMLPeakList.size()];
+                int pointer = 0;
+                for (Map.Entry<Double, Double> peak : mzXMLPeakList.entrySet()) {
+                    masses[pointer] = peak.getKey();
+                    intensities[pointer] = peak.getValue();
+                    pointer++;
+                }
+                //stored sorted, MySpectrum then finds the peaks already in order
+                MassQuickSort.peakArrayQuickSort(masses, intensities, new byte[masses.length]);
+
+                long blockBytes = masses.length * 16L;
+                if (blockBytes > SEGMENT_BYTES)
+                    throw new IllegalArgumentException("Scan number " + currentScan.getNum() + " has too many peaks for the binary spectrum cache: " + masses.length);
+                //start a new segment if the block would cross the segment border
+                long positionInSegment = (position - HEADER_BYTES) % SEGMENT_BYTES;
+                if (positionInSegment + blockBytes > SEGMENT_BYTES) {
+                    for (long i = positionInSegment; i < SEGMENT_BYTES; i++) {
+                        out.writeByte(0);
+                    }
+                    position += SEGMENT_BYTES - positionInSegment;
+                }
+                for (double mass : masses) {
+                    out.writeDouble(mass);
+                }
+                for (double intensity : intensities) {
+                    out.writeDouble(intensity);
+                }
+
+                Integer precursorCharge = currentSpectrum.getPrecursorCharge();
+                Double precursorMZ = currentSpectrum.getPrecursorMZ();
+                scanInfos.add(new int[]{currentScan.getNum().intValue(), masses.length, precursorCharge == null ? NO_CHARGE : precursorCharge});
+                offsets.add(position);
+                precursorMZList.add(precursorMZ == null ? Double.NaN : precursorMZ);
+                position += blockBytes;
+            }
+
+            //the scan index is sorted by scan number for the binary search
+            Integer[] order = new Integer[scanInfos.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            final ArrayList<int[]> infos = scanInfos;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(infos.get(a)[0], infos.get(b)[0]);
+                }
+            });
+            for (int i : order) {
+                int[] scanInfo = scanInfos.get(i);
+                out.writeInt(scanInfo[0]);
+                out.writeInt(scanInfo[1]);
+                out.writeLong(offsets.get(i));
+                out.writeDouble(precursorMZList.get(i));
+                out.writeInt(scanInfo[2]);
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.seek(8);
+            file.writeLong(position);
+            //make sure that the cache is complete on disk before it replaces an old one
+            file.getChannel().force(true);
+        }
+        finally {
+            file.close();
+        }
+        if (cacheFileOut.exists() && !cacheFileOut.delete())
+            throw new IOException("Could not replace old binary spectrum cache: " + cacheFileOut.getAbsolutePath());
+        if (!tempFile.renameTo(cacheFileOut))
+            throw new IOException("Could not rename binary spectrum cache: " + tempFile.getAbsolutePath());
+        System.out.println("Binary spectrum cache created! MS2 scans: " + scanInfos.size());
+    }
+
+    public MySpectrum getSpectrum(int scanNumber) throws JMzReaderException {
+        int i = scanIndex(scanNumber);
+        if (i < 0)
+            throw new JMzReaderException("No MS2 scan with scan number " + scanNumber + " in the binary spectrum cache " + this.cacheFile.getName() + "!");
+        int peakCount = this.peakCounts[i];
+        double[] masses = new double[peakCount];
+        double[] intensities = new double[peakCount];
+        if (peakCount > 0) {
+            long positionInData = this.peakOffsets[i] - HEADER_BYTES;
+            //duplicate: position and limit of the shared mapping are never changed, so several threads can read at the same time
+            ByteBuffer block = this.segments[(int) (positionInData / SEGMENT_BYTES)].duplicate();
+            block.position((int) (positionInData % SEGMENT_BYTES));
+            DoubleBuffer peaks = block.asDoubleBuffer();
+            peaks.get(masses);
+            peaks.get(intensities);
+        }
+        return new MySpectrum(masses, intensities, null, scanNumber, MzXMLReadIn.scanHeaderCreator(getPrecursorMZ(i), getPrecursorCharge(i)));
+    }
+
+    //position of the scan number in the scan index, -1 if there is no such MS2 scan
+    public int scanIndex(int scanNumber) {
+        int i = Arrays.binarySearch(this.scanNumbers, scanNumber);
+        if (i < 0)
+            return -1;
+        return i;
+    }
+
+    //the following getters take the position in the scan index (0 to getScanCount()-1), the scans are ordered by scan number
+    public int getScanCount() {
+        return this.scanNumbers.length;
+    }
+
+    public int getScanNumber(int index) {
+        return this.scanNumbers[index];
+    }
+
+    public int getPeakCount(int index) {
+        return this.peakCounts[index];
+    }
+
+    //null if the scan has no precursor m/z
+    public Double getPrecursorMZ(int index) {
+        if (Double.isNaN(this.precursorMZs[index]))
+            return null;
+        return this.precursorMZs[index];
+    }
+
+    //null if the scan has no precursor charge
+    public Integer getPrecursorCharge(int index) {
+        if (this.precursorCharges[index] == NO_CHARGE)
+            return null;
+        return this.precursorCharges[index];
+    }
+}
@@ -1,30 +1,36 @@
 import com.sun.javaws.exceptions.InvalidArgumentException;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Created by micha on 7/7/2017.
  */
 public class CSVAnalyzer {
 
-    private static DecimalFormat twoDec = new DecimalFormat("0.00");
+    //number of scans handled by one task of the parallel ratio calculation
+    private static final int RATIO_BATCH_SCANS = 64;
     //analyzes created comp-Cluster Matches list
-    public static void cicStatistics(String filePath) throws FileNotFoundException {
+    //the list can be a .csv-file or a columnar file of ColumnarMatchWriter (ending .ccm: run_EC.ccm gives run_EC_statistics.csv)
+    public static void cicStatistics(String filePath) throws IOException {
+        DecimalFormat twoDec = new DecimalFormat("0.00");
         File cicAnalysis = new File(filePath);
-        //scanner reads through results
-        Scanner scanner = null;
-        try {
-            scanner = new Scanner(cicAnalysis);
-        } catch (FileNotFoundException e) {
-            System.out.println("Could not read file: " + filePath);
-        }
+        //reader reads through results, the header is read in directly
+        TableRowReader reader = ColumnarMatchReader.matchFileOpener(cicAnalysis);
 
         //check if file name contains EC
         boolean ec = false;
@@ -33,13 +39,52 @@ public class CSVAnalyzer {
 
         //scanner set up
         //set up Stringbuilder and PrinterWriter
-        String newFilePath = filePath.replace(".csv", "_");
-        newFilePath = newFilePath + "statistics.csv";
+        String newFilePath = ColumnarMatchReader.outputPathCreator(filePath, "statistics.csv");
 
 
         File outputFile = new File(newFilePath);
-        StringBuilder sb = new StringBuilder();
         PrintWriter csvWriter = new PrintWriter(outputFile);
+        csvWriter.write(cicStatisticsHeaderBuilder(ec));
+        csvWriter.flush();
+
+        int handledPeptides = 1;
+
+        //all the rows of one scan number are collected and then analyzed together
+        ArrayList<String[]> scanRows = new ArrayList<>();
+        int activeScanNumber = 0;
+        while (reader.nextRow()){
+            //set current ScanNumber
+            int currentScanNumber = reader.getInt(15);
+
+            //check if current scan is the same as the active scan
+            //if not, start Printout Sequence
+            if (!scanRows.isEmpty() && currentScanNumber != activeScanNumber){
+                csvWriter.write(cicStatisticsLineBuilder(scanRows, ec, twoDec));
+                csvWriter.flush();
+                if (AnalysisLog.isDebugEnabled())
+                    AnalysisLog.debug("Analyzed Peptide: "+handledPeptides);
+                scanRows.clear();
+                handledPeptides++;
+            }
+            activeScanNumber = currentScanNumber;
+            scanRows.add(reader.getFields());
+        }
+        //handle last peptide
+        csvWriter.write(cicStatisticsLineBuilder(scanRows, ec, twoDec));
+        csvWriter.flush();
+
+        handledPeptides++;
+
+        //close everything
+        reader.close();
+        csvWriter.close();
+
+        System.out.println("Analysis complete! Peptides handled in total: "+ (handledPeptides-1));
+    }
+
+    //header of the _statistics.csv-file, including the line break
+    static String cicStatisticsHeaderBuilder(boolean ec) {
+        StringBuilder sb = new StringBuilder();
         //write header
         //0 Modified Peptide
         //1 Precursor Charge
@@ -94,21 +139,37 @@ public class CSVAnalyzer {
             sb.append(header);
         }
         sb.append('\n');
-        csvWriter.write(sb.toString());
-        csvWriter.flush();
-        //empty stringbuilder
-        sb.setLength(0);
-
-        //active and current Peptide, charge state and scan number
-        String activePeptide = "";
-        String activeChargeStateString = "";
-        int activeChargeState = 0;
-        String currentPeptide = "";
-        String currentChargeStateString;
-        int currentChargeState = 0;
-        int activeScanNumber;
-        int currentScanNumber;
-        String activeLeadingProteins;
+        return sb.toString();
+    }
+
+    //line of the _statistics.csv-file for the fragment ion rows of one scan, including the line break
+    //peptide, charge state and leading proteins are taken from the first row
+    //the DecimalFormat is passed in, since it is not thread safe
+    static String cicStatisticsLineBuilder(ArrayList<String[]> scanRows, boolean ec, DecimalFormat twoDec) {
+        //0 Modified Peptide
+        //1 Precursor Mass [m/z]
+        //2 Precursor Charge
+        //3 Label Count
+        //4 Label Name
+        //5 Cleaved Label
+        //6 Mixed Label
+        //7 Fragment Ion
+        //8 Fragment Ion Charge
+        //9 Fragment Ion Mass [m/z]
+        //10 Peak Charge
+        //11 Peak Mass [m/z]
+        //12 Mass Deviation [ppm]
+        //13 Peak rel. Intensity [%]
+        //14 Peak abs. Intensity [au]
+        //15 Scan Number
+        //16 Fragment Ion Amino Acid Sequence
+        //17 Fragment Ion Sum Formula
+        //18 Leading Proteins
+        String[] firstValues = scanRows.get(0);
+        String activePeptide = firstValues[0];
+        int activeChargeState = Integer.parseInt(firstValues[2].replace("+",""));
+        int activeScanNumber = Integer.parseInt(firstValues[15]);
+        String activeLeadingProteins = firstValues[18];
 
         //variables that have to be read out or calculated
         int uncleavedFragments = 0;
@@ -122,161 +183,7 @@ public class CSVAnalyzer {
         ArrayList<Double> cleavedEC179IntList = new ArrayList<>();
         ArrayList<Double> cleavedEC180IntList = new ArrayList<>();
 
-        //set length of output string[]
-        int outputLength;
-        if (ec)
-            outputLength = 12;
-        else
-            outputLength = 8;
-
-        int handledPeptides = 1;
-
-        //skip first line for header
-        scanner.nextLine();
-
-        //read in first line and set first peptide
-        String firstLine = scanner.nextLine();
-        String[] firstLineValues = firstLine.split(",");
-        activePeptide = firstLineValues[0];
-        activeChargeStateString = firstLineValues[2].replace("+","");
-        activeChargeState = Integer.parseInt(activeChargeStateString);
-        activeScanNumber = Integer.parseInt(firstLineValues[15]);
-        activeLeadingProteins = firstLineValues[18];
-
-
-
-        //do first readout of values
-
-        //cleaved label
-        if (firstLineValues[5].equals("true")){
-            cleavedFragments++;
-            cleavedIntList.add(Double.parseDouble(firstLineValues[13]));
-        }
-        //uncleaved label
-        if (firstLineValues[5].equals("false")){
-            uncleavedFragments++;
-            uncleavedIntList.add(Double.parseDouble(firstLineValues[13]));
-        }
-        //only in case of EC
-        if (ec){
-            //only if label is cleaved
-            if (firstLineValues[5].equals("true")){
-                if (firstLineValues[4].contains("179")){
-                    cleavedEC179++;
-                    cleavedEC179IntList.add(Double.parseDouble(firstLineValues[13]));
-                }
-                if (firstLineValues[4].contains("180")){
-                    cleavedEC180++;
-                    cleavedEC180IntList.add(Double.parseDouble(firstLineValues[13]));
-                }
-            }
-        }
-        //all the values are read in now
-        //active peptide is set
-        //continue trough whole list
-        while (scanner.hasNextLine()){
-            String current = scanner.nextLine();
-            String[] values = current.split(",");
-            //0 Modified Peptide
-            //1 Precursor Mass [m/z]
-            //2 Precursor Charge
-            //3 Label Count
-            //4 Label Name
-            //5 Cleaved Label
-            //6 Mixed Label
-            //7 Fragment Ion
-            //8 Fragment Ion Charge
-            //9 Fragment Ion Mass [m/z]
-            //10 Peak Charge
-            //11 Peak Mass [m/z]
-            //12 Mass Deviation [ppm]
-            //13 Peak rel. Intensity [%]
-            //14 Peak abs. Intensity [au]
-            //15 Scan Number
-            //16 Fragment Ion Amino Acid Sequence
-            //17 Fragment Ion Sum Formula
-            //18 Leading Proteins
-
-            //set current Peptide with charge state and ScanNumber
-            currentPeptide = values[0];
-            currentChargeStateString = values[2].replace("+","");
-            currentChargeState = Integer.parseInt(currentChargeStateString);
-            currentScanNumber = Integer.parseInt(values[15]);
-
-
-
-            //check if current Peptide is same as active Peptide
-            //if not, start Printout Sequence
-            //if (!currentPeptide.equals(activePeptide) || (currentPeptide.equals(activePeptide) && currentChargeState != activeChargeState ))
-            if (currentScanNumber != activeScanNumber)
-            {
-                String[] outputString = new String[outputLength];
-                //0 Modified Peptide
-                //1 Precursor Charge
-                //2 Scan Number
-                //3 Leading Proteins
-                //4 Number uncleaved fragments
-                //5 Mean intensity uncleaved fragments
-                //6 Number cleaved fragments
-                //7 Mean intensity cleaved fragments
-                //only in case of EC, also add other information to analyze duplex
-                //8 Number EC 179 fragments
-                //9 Mean intensity EC179
-                //10 Number EC 180 fragments
-                //11 Mean intensity EC180
-                outputString[0] = activePeptide;
-                outputString[1] = Integer.toString(activeChargeState) + "+";
-                outputString[2] = Integer.toString(activeScanNumber);
-                outputString[3] = activeLeadingProteins;
-                outputString[4] = Integer.toString(uncleavedFragments);
-                outputString[5] = twoDec.format(medianCalc(uncleavedIntList));
-                outputString[6] = Integer.toString(cleavedFragments);
-                outputString[7] = twoDec.format(medianCalc(cleavedIntList));
-
-                if (ec) {
-                    outputString[8] = Integer.toString(cleavedEC179);
-                    outputString[9] = twoDec.format(medianCalc(cleavedEC179IntList));
-                    outputString[10] = Integer.toString(cleavedEC180);
-                    outputString[11] = twoDec.format(medianCalc(cleavedEC180IntList));
-                }
-
-                //all values are set now
-                //start Stringbuilder
-                String sep = "";
-                for (String string : outputString){
-                    sb.append(sep);
-                    sb.append(string);
-                    sep = ",";
-                }
-                sb.append("\n");
-                csvWriter.write(sb.toString());
-                csvWriter.flush();
-                System.out.println("Analyzed Peptide: "+handledPeptides);
-
-                //clear stringbuilder
-                sb.setLength(0);
-                //set all relevant variables to 0
-                uncleavedFragments = 0;
-                cleavedFragments = 0;
-                cleavedEC179 = 0;
-                cleavedEC180 = 0;
-
-                uncleavedIntList.clear();
-                cleavedIntList.clear();
-                cleavedEC179IntList.clear();
-                cleavedEC180IntList.clear();
-
-
-                //set the current peptide and charge state as the active ones
-                activePeptide = currentPeptide;
-                activeChargeState = currentChargeState;
-                activeScanNumber = Integer.parseInt(values[15]);
-                activeLeadingProteins = values[18];
-
-                handledPeptides++;
-            }
-            //now process current values
-
+        for (String[] values : scanRows){
             //cleaved label
             if (values[5].equals("true")){
                 cleavedFragments++;
@@ -302,7 +209,13 @@ public class CSVAnalyzer {
                 }
             }
         }
-        //handle last peptide
+
+        //set length of output string[]
+        int outputLength;
+        if (ec)
+            outputLength = 12;
+        else
+            outputLength = 8;
         String[] outputString = new String[outputLength];
         outputString[0] = activePeptide;
         outputString[1] = Integer.toString(activeChargeState) + "+";
@@ -321,6 +234,7 @@ public class CSVAnalyzer {
         }
         //all values are set now
         //start Stringbuilder
+        StringBuilder sb = new StringBuilder();
         String sep = "";
         for (String string : outputString){
             sb.append(sep);
@@ -328,29 +242,146 @@ public class CSVAnalyzer {
             sep = ",";
         }
         sb.append("\n");
-        csvWriter.write(sb.toString());
-        csvWriter.flush();
+        return sb.toString();
+    }
 
-        handledPeptides++;
+
+    public static void cicRatioCalculator (String filePath) throws IOException {
+        cicRatioCalculator(filePath, 1);
+    }
+
+    //threads > 1: batches of RATIO_BATCH_SCANS scans are analyzed in parallel by a pool with the given number of worker threads
+    //the batches are written in the order of the scans, so the .csv-file is the same as with one thread
+    //the fragment ion list can also be a columnar file of ColumnarMatchWriter
+    public static void cicRatioCalculator (String filePath, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads has to be at least 1! Threads: "+threads);
+        File fragmentFile = new File(filePath);
+
+        TableRowReader reader = ColumnarMatchReader.matchFileOpener(fragmentFile);
+        int scansAnalyzed = 0;
+
+        //set up Stringbuilder and PrinterWriter
+        String newFilePath = ColumnarMatchReader.outputPathCreator(filePath, "complementaryClusters_5rel.csv");
+
+        File outputFile = new File(newFilePath);
+        PrintWriter csvWriter = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
+        csvWriter.write(cicRatioHeaderBuilder());
+
+        //determine header positions important in the old fragment Ion list file
+        final HashMap<String, Integer> captionPositions = cicCaptionPositions(reader.getHeader());
+
+        //with one thread, every batch is analyzed directly when it is complete
+        //otherwise, up to 4 batches per thread are queued; the oldest batch is always written first
+        ExecutorService workers = null;
+        int maxBatchesInFlight = 1;
+        if (threads > 1) {
+            workers = Executors.newFixedThreadPool(threads);
+            maxBatchesInFlight = threads * 4;
+        }
+        ArrayDeque<Future<String>> batchesInFlight = new ArrayDeque<>();
+        ArrayDeque<Integer> lastScansInFlight = new ArrayDeque<>();
+
+        //caption positions read in, start to copy all the information of one scan together
+        ArrayList<ArrayList<String[]>> batch = new ArrayList<>();
+        ArrayList<String[]> scanRows = new ArrayList<>();
+        int activeScanNumber = 0;
+        int scanNumberPosition = captionPositions.get("Scan Number");
+        try {
+            while (reader.nextRow()){
+                int currentScanNumber = reader.getInt(scanNumberPosition);
+                //check if current Scan Number is still the active scan Number. If not, then the rows of the scan are complete
+                if (!scanRows.isEmpty() && currentScanNumber!=activeScanNumber){
+                    batch.add(scanRows);
+                    scanRows = new ArrayList<>();
+                    scansAnalyzed++;
+                    if (batch.size() == RATIO_BATCH_SCANS) {
+                        batchesInFlight.add(ratioBatchTask(workers, batch, captionPositions));
+                        lastScansInFlight.add(activeScanNumber);
+                        batch = new ArrayList<>();
+                        //write the lines of the oldest batches to the .csv File
+                        while (batchesInFlight.size() >= maxBatchesInFlight) {
+                            csvWriter.write(ratioBatchResult(batchesInFlight.poll()));
+                            int writtenScan = lastScansInFlight.poll();
+                            if (AnalysisLog.isDebugEnabled())
+                                AnalysisLog.debug("Analyzed scan: #" + writtenScan);
+                        }
+                    }
+                }
+                activeScanNumber = currentScanNumber;
+                scanRows.add(reader.getFields());
+            }
+
+            //last line read
+            //all scans are completed
+            batch.add(scanRows);
+            scansAnalyzed++;
+            batchesInFlight.add(ratioBatchTask(workers, batch, captionPositions));
+            lastScansInFlight.add(activeScanNumber);
+            while (!batchesInFlight.isEmpty()) {
+                csvWriter.write(ratioBatchResult(batchesInFlight.poll()));
+                int writtenScan = lastScansInFlight.poll();
+                if (AnalysisLog.isDebugEnabled())
+                    AnalysisLog.debug("Analyzed scan: #" + writtenScan);
+            }
+        }
+        finally {
+            if (workers != null)
+                workers.shutdownNow();
+        }
 
         //close everything
-        scanner.close();
+        reader.close();
         csvWriter.close();
+        if (csvWriter.checkError())
+            throw new IOException("Could not write the .csv-file: " + newFilePath);
+        System.out.println("Analysis complete! .csv-File created! Scans analyzed: "+ (scansAnalyzed));
+        IsotopeFactorCache factorCache = IsotopicDistributer.getFactorCache();
+        System.out.println("Isotope pattern factors - cache hits: " + factorCache.getHits() + ", cache misses: " + factorCache.getMisses());
 
-        System.out.println("Analysis complete! Peptides handled in total: "+ (handledPeptides-1));
     }
 
+    //creates the task which builds the lines of a batch of scans; without workers, the task is run directly
+    private static Future<String> ratioBatchTask(ExecutorService workers, final ArrayList<ArrayList<String[]>> batchIn, final HashMap<String, Integer> captionPositions) {
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() {
+                StringBuilder sb = new StringBuilder();
+                for (ArrayList<String[]> scanRows : batchIn) {
+                    sb.append(cicRatioLinesBuilder(scanRows, captionPositions));
+                }
+                return sb.toString();
+            }
+        };
+        if (workers == null) {
+            FutureTask<String> directTask = new FutureTask<>(task);
+            directTask.run();
+            return directTask;
+        }
+        return workers.submit(task);
+    }
 
-    public static void cicRatioCalculator (String filePath) throws FileNotFoundException {
-        File fragmentFile = new File(filePath);
-
-        Scanner scanner = null;
+    //waits for the batch and passes on exceptions thrown by the task
+    private static String ratioBatchResult(Future<String> batchTask) {
         try {
-            scanner = new Scanner(fragmentFile);
-        } catch (FileNotFoundException e) {
-            System.out.println("Could not read file: " + filePath);
+            return batchTask.get();
         }
-        int scansAnalyzed = 0;
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ratio calculation!", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Ratio calculation failed!", cause);
+        }
+    }
+
+    //header of the _complementaryClusters_5rel.csv-file, including the line break
+    static String cicRatioHeaderBuilder() {
         //open SB and write new header
         //[0] Modified Peptide
         //[1] Precursor Mass
@@ -365,15 +396,7 @@ public class CSVAnalyzer {
         //[10] Intensity SOT179c
         //[11] ratio SOT179c/SOT180c
         //[12] Isotope Pattern Factor
-
-        //set up Stringbuilder and PrinterWriter
-        String newFilePath = filePath.replace(".csv", "_");
-        newFilePath = newFilePath + "complementaryClusters_5rel.csv";
-
-        File outputFile = new File(newFilePath);
         StringBuilder sb = new StringBuilder();
-        PrintWriter csvWriter = new PrintWriter(outputFile);
-
         String header = "Modified Peptide";
         sb.append(header);
         sb.append(',');
@@ -413,14 +436,11 @@ public class CSVAnalyzer {
         header = "Isotope Pattern Factor";
         sb.append(header);
         sb.append('\n');
-        csvWriter.write(sb.toString());
-        csvWriter.flush();
-        //empty stringbuilder
-        sb.setLength(0);
-
-
-        //determine header positions important in the old fragment Ion list file
+        return sb.toString();
+    }
 
+    //positions of the columns needed by cicRatioLinesBuilder in the header of a fragment ion list
+    static HashMap<String, Integer> cicCaptionPositions(String[] headerCaptions) {
         //[0] Modified Peptide
         //[1] Precursor Mass [m/z]
         //[2] Precursor Charge
@@ -437,60 +457,27 @@ public class CSVAnalyzer {
         //[13] Fragment Ion Amino Acid Sequence
         //[14] Fragment Ion Sum Formula
         //[15] Leading Proteins
-
-        String oldHeader = scanner.nextLine();
-        String headerCaptions[] = oldHeader.split(",");
         HashMap<String, Integer> captionPositions = new HashMap<>();
         int index = 0;
         for (String captions : headerCaptions){
             switch (captions){
                 case "Modified Peptide":
-                    captionPositions.put("Modified Peptide", index);
-                    break;
                 case "Precursor Mass [m/z]":
-                    captionPositions.put("Precursor Mass [m/z]", index);
-                    break;
                 case "Precursor Charge":
-                    captionPositions.put("Precursor Charge", index);
-                    break;
                 case "Label Name":
-                    captionPositions.put("Label Name", index);
-                    break;
                 case "Cleaved Labels":
-                    captionPositions.put("Cleaved Labels", index);
-                    break;
                 case "Fragment Ion":
-                    captionPositions.put("Fragment Ion", index);
-                    break;
                 case "Fragment Ion Charge":
-                    captionPositions.put("Fragment Ion Charge", index);
-                    break;
                 case "Fragment Ion Mass [m/z]":
-                    captionPositions.put("Fragment Ion Mass [m/z]", index);
-                    break;
                 case "Peak Mass [m/z]":
-                    captionPositions.put("Peak Mass [m/z]", index);
-                    break;
                 case "Mass Deviation [ppm]":
-                    captionPositions.put("Mass Deviation [ppm]", index);
-                    break;
                 case "Peak rel. Intensity [%]":
-                    captionPositions.put("Peak rel. Intensity [%]", index);
-                    break;
                 case "Peak abs. Intensity [au]":
-                    captionPositions.put("Peak abs. Intensity [au]", index);
-                    break;
                 case "Scan Number":
-                    captionPositions.put("Scan Number", index);
-                    break;
                 case "Fragment Ion Amino Acid Sequence":
-                    captionPositions.put("Fragment Ion Amino Acid Sequence", index);
-                    break;
                 case "Fragment Ion Sum Formula":
-                    captionPositions.put("Fragment Ion Sum Formula", index);
-                    break;
                 case "Leading Proteins":
-                    captionPositions.put("Leading Proteins", index);
+                    captionPositions.put(captions, index);
                     break;
             }
             index++;
@@ -498,75 +485,24 @@ public class CSVAnalyzer {
         //check if HashMap has all necessary entries
         if(captionPositions.size() != 16)
             throw new IllegalArgumentException("Not all headers could be read in! Number of read in headers, out of 16 necessary: "+captionPositions.size());
+        return captionPositions;
+    }
 
-
-        //caption positions read in, start to copy all the information of one scan together
-        //the complementary ion information will be stored in an object of the type ComplementaryIon
+    //lines of the _complementaryClusters_5rel.csv-file for the fragment ion rows of one scan
+    //the complementary ion information of the cleaved fragment ions with more than 5% rel. intensity is stored in ComplementaryIon objects and matched into clusters
+    static String cicRatioLinesBuilder(ArrayList<String[]> scanRows, HashMap<String, Integer> captionPositions) {
         ArrayList<ComplementaryIon> compIonList = new ArrayList<>();
-        ArrayList<ComplementaryCluster> compClusterList = new ArrayList<>();
-
-
-
-        //start with first peptide, all the other direct variables and most importantly the scan number
-        String currentLine = scanner.nextLine();
-        String[] currentValues = currentLine.split(",");
-        String activePeptide = currentValues[captionPositions.get("Modified Peptide")];
-        String activePrecMass = currentValues[captionPositions.get("Precursor Mass [m/z]")];
-        String activePrecChargeString = currentValues[captionPositions.get("Precursor Charge")].replace("+","");
+        //peptide, precursor and leading protein of the first row
+        String[] firstValues = scanRows.get(0);
+        String activePeptide = firstValues[captionPositions.get("Modified Peptide")];
+        String activePrecMass = firstValues[captionPositions.get("Precursor Mass [m/z]")];
+        String activePrecChargeString = firstValues[captionPositions.get("Precursor Charge")].replace("+","");
         int activePrecCharge = Integer.parseInt(activePrecChargeString);
-        String activeLeadingProtein = currentValues[captionPositions.get("Leading Proteins")];
-        int activeScanNumber = Integer.parseInt(currentValues[captionPositions.get("Scan Number")]);
-        double activeRelInt;
-        //read the first set of fragment ion specific parameters to create a new complementary ion object and add it to the list
-        //do this only if a cleaved Ion is present
-        if (currentValues[captionPositions.get("Cleaved Labels")].equals("true")) {
-            activeRelInt = Double.parseDouble(currentValues[captionPositions.get("Peak rel. Intensity [%]")]);
-            if(activeRelInt >5) {
-                compIonList.add(new ComplementaryIon(currentValues[captionPositions.get("Modified Peptide")],
-                        currentValues[captionPositions.get("Label Name")], currentValues[captionPositions.get("Fragment Ion")],
-                        currentValues[captionPositions.get("Fragment Ion Charge")], currentValues[captionPositions.get("Fragment Ion Mass [m/z]")],
-                        currentValues[captionPositions.get("Peak Mass [m/z]")], currentValues[captionPositions.get("Mass Deviation [ppm]")],
-                        currentValues[captionPositions.get("Peak rel. Intensity [%]")], currentValues[captionPositions.get("Peak abs. Intensity [au]")],
-                        currentValues[captionPositions.get("Scan Number")], currentValues[captionPositions.get("Fragment Ion Amino Acid Sequence")],
-                        currentValues[captionPositions.get("Fragment Ion Sum Formula")]));
-            }
-        }
-
-        //now, start scanner loop and continue with the fragmentIonReading
-        while (scanner.hasNextLine()){
-            currentLine = scanner.nextLine();
-            currentValues = currentLine.split(",");
-            int currentScanNumber = Integer.parseInt(currentValues[captionPositions.get("Scan Number")]);
-            //check if current Scan Number is still the active scan Number. If not, then lists must be handled
-            if (currentScanNumber!=activeScanNumber){
-
-                //with all the complementary ions in the list, now create complementary ion clusters by matching of ions
-                compClusterList.addAll(ComplementaryCluster.compClusterMatcher(compIonList));
-
-                //the ComplementaryCluster class will provide a string for the SB
-                //write the lines to the .csv File
-                sb.append(ComplementaryCluster.compClusterCSVStringProducer(compClusterList, activePeptide, activePrecMass, Integer.toString(activePrecCharge), activeLeadingProtein));
-                csvWriter.write(sb.toString());
-                csvWriter.flush();
-                System.out.println("Analyzed scan: #" + activeScanNumber);
-
-                //after old data is handled, reset everything and start readout of new data
-                compIonList.clear();
-                compClusterList.clear();
-                sb.setLength(0);
-                scansAnalyzed++;
-
-                //set new active values
-                activePeptide = currentValues[captionPositions.get("Modified Peptide")];
-                activePrecMass = currentValues[captionPositions.get("Precursor Mass [m/z]")];
-                activePrecChargeString = currentValues[captionPositions.get("Precursor Charge")].replace("+","");
-                activePrecCharge = Integer.parseInt(activePrecChargeString);
-                activeLeadingProtein = currentValues[captionPositions.get("Leading Proteins")];
-                activeScanNumber = currentScanNumber;
-            }
-            //normal readout of all the values
+        String activeLeadingProtein = firstValues[captionPositions.get("Leading Proteins")];
+        for (String[] currentValues : scanRows){
+            //do this only if a cleaved Ion is present
             if (currentValues[captionPositions.get("Cleaved Labels")].equals("true")) {
-                activeRelInt = Double.parseDouble(currentValues[captionPositions.get("Peak rel. Intensity [%]")]);
+                double activeRelInt = Double.parseDouble(currentValues[captionPositions.get("Peak rel. Intensity [%]")]);
                 if(activeRelInt >5) {
                     compIonList.add(new ComplementaryIon(currentValues[captionPositions.get("Modified Peptide")],
                             currentValues[captionPositions.get("Label Name")], currentValues[captionPositions.get("Fragment Ion")],
@@ -578,29 +514,10 @@ public class CSVAnalyzer {
                 }
             }
         }
-
-
-        //last line read
-        //all scans are completed, now create complementary ion clusters by matching of ions
-        compClusterList.addAll(ComplementaryCluster.compClusterMatcher(compIonList));
-
+        //with all the complementary ions in the list, now create complementary ion clusters by matching of ions
+        ArrayList<ComplementaryCluster> compClusterList = new ArrayList<>(ComplementaryCluster.compClusterMatcher(compIonList));
         //the ComplementaryCluster class will provide a string for the SB
-        //write the lines to the .csv File
-        sb.append(ComplementaryCluster.compClusterCSVStringProducer(compClusterList, activePeptide, activePrecMass, Integer.toString(activePrecCharge), activeLeadingProtein));
-        csvWriter.write(sb.toString());
-        csvWriter.flush();
-        scansAnalyzed++;
-
-
-
-        //close everything
-        compIonList.clear();
-        compClusterList.clear();
-        scanner.close();
-        csvWriter.close();
-        System.out.println("Analyzed scan: #" + activeScanNumber);
-        System.out.println("Analysis complete! .csv-File created! Scans analyzed: "+ (scansAnalyzed));
-
+        return ComplementaryCluster.compClusterCSVStringProducer(compClusterList, activePeptide, activePrecMass, Integer.toString(activePrecCharge), activeLeadingProtein);
     }
 
 
@@ -1,13 +1,32 @@
 import com.sun.org.apache.xpath.internal.SourceTree;
 import uk.ac.ebi.pride.tools.mzxml_parser.mzxml.model.Scan;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by micha on 6/30/2017.
@@ -16,12 +35,32 @@ public class CSVCreator {
     private static DecimalFormat twoDec = new DecimalFormat("0.00");
     private static DecimalFormat fourDec = new DecimalFormat("0.0000");
     private static DecimalFormat scientific = new DecimalFormat("0.00E0");
+    //.csv-files of Section 1: ..._first spectrum_last spectrum.csv
+    private static final Pattern CHUNK_FILE_NAME = Pattern.compile(".*_(\\d+)_(\\d+)\\.csv");
 
     public static void compClusterMatchCSVPrinter(ArrayList<CompClusterIonMatch> matchesIn, String filePathIn) throws FileNotFoundException{
         File csvOut = new File(filePathIn);
         PrintWriter csvWriter =  new PrintWriter(csvOut);
         StringBuilder sb = new StringBuilder();
 
+        //Write captions in file
+        sb.append(compClusterHeaderBuilder());
+        //new row
+        sb.append('\n');
+
+        //handle the CompClusterMatches now
+        for (CompClusterIonMatch match : matchesIn){
+            compClusterRowAppender(sb, match, twoDec, fourDec, scientific);
+        }
+        //all the matches are added to StringBuilder
+        //write to .csv File
+        csvWriter.write(sb.toString());
+        csvWriter.close();
+        System.out.println(".csv-file created!");
+    }
+
+    //header line of the CompClusterMatch .csv-files, without line break
+    static String compClusterHeaderBuilder(){
         //define captions
         String[] header = new String[19];
         header[0] = "Modified Peptide";
@@ -44,127 +83,280 @@ public class CSVCreator {
         header[17] = "Fragment Ion Sum Formula";
         header[18] = "Leading Proteins";
 
-
-        //Write captions in file
         //first seperator is empty
+        StringBuilder sb = new StringBuilder();
         String sep = "";
         for (String caption : header){
             sb.append(sep);
             sb.append(caption);
             sep = ",";
         }
-        //new row
+        return sb.toString();
+    }
+
+    //appends the row of one CompClusterMatch, including the line break
+    //the DecimalFormats are passed in, since they are not thread safe
+    static void compClusterRowAppender(StringBuilder sb, CompClusterIonMatch match, DecimalFormat twoDecIn, DecimalFormat fourDecIn, DecimalFormat scientificIn){
+        compClusterRowAppender(sb, compClusterRowValues(match, twoDecIn, fourDecIn, scientificIn));
+    }
+
+    //appends a row which was already formatted by compClusterRowValues, including the line break
+    static void compClusterRowAppender(StringBuilder sb, String[] values){
+        String sep = "";
+        for (String value : values){
+            sb.append(sep);
+            sb.append(value);
+            sep = ",";
+        }
         sb.append('\n');
+    }
 
-        //handle the CompClusterMatches now
-        for (CompClusterIonMatch match : matchesIn){
-            //get the values
-            String[] values = new String[19];
-            values[0] = match.getFragmentIon().getPrecursorSequence(); //"Modified Peptide";
-
-
-            String[] splitScanHeader = match.getScanHeader().split(";");
-
-            values[1] = splitScanHeader[0]; //"Precursor Mass [m/z]";
-            values[2] = splitScanHeader[1]; //"Precursor Charge";
-
-            values[3] = Integer.toString(match.getFragmentIon().getLabelQuantity()); //"Label Count";
-            values[4] = match.getLabelName(); //"Label Name";
-            values[5] = ""+match.getIsCleaved();//"Cleaved Labels";
-            values[6] = ""+match.getMixedLabels(); //"Mixed Labels";
-            values[7] = match.getFragmentIon().getCompleteIon(); //"Fragment Ion";
-            values[8] = Integer.toString(match.getFragmentIon().getCharge()); //"Fragment Ion Charge";
-            values[9] = fourDec.format(match.getFragmentIon().getMToZ()); //"Fragment Ion Mass [m/z]";
-            values[10] = Integer.toString(match.getPeak().getCharge()); //"Peak Charge";
-            values[11] = fourDec.format(match.getPeak().getMass()); //"Peak Mass [m/z]";
-            values[12] = twoDec.format(match.getPpmDeviation());//"Mass Deviation [ppm]";
-            values[13] = twoDec.format(match.getPeak().getRelIntensity()); //"Peak rel. Intensity [%]";
-            values[14] = scientific.format(match.getPeak().getIntensity()); //"Peak abs. Intensity [au]";
-            values[15] = Integer.toString(match.getPeak().getScanNumber()); //"Scan Number";
-            values[16] = match.getFragmentIon().getAASequence();//"Fragment Ion Sequence";
-            values[17] = match.getFragmentIon().getFormula().getSumFormula();//"Fragment Ion Sum Formula";
-            values[18] = match.getLeadingProteins();
-
-            //start writing
-            sep = "";
-            for (String value : values){
-                sb.append(sep);
-                sb.append(value);
-                sep = ",";
+    //values of the row of one CompClusterMatch, in the order of compClusterHeaderBuilder
+    static String[] compClusterRowValues(CompClusterIonMatch match, DecimalFormat twoDecIn, DecimalFormat fourDecIn, DecimalFormat scientificIn){
+        //get the values
+        String[] values = new String[19];
+        values[0] = match.getFragmentIon().getPrecursorSequence(); //"Modified Peptide";
+
+
+        String[] splitScanHeader = match.getScanHeader().split(";");
+
+        values[1] = splitScanHeader[0]; //"Precursor Mass [m/z]";
+        values[2] = splitScanHeader[1]; //"Precursor Charge";
+
+        values[3] = Integer.toString(match.getFragmentIon().getLabelQuantity()); //"Label Count";
+        values[4] = match.getLabelName(); //"Label Name";
+        values[5] = ""+match.getIsCleaved();//"Cleaved Labels";
+        values[6] = ""+match.getMixedLabels(); //"Mixed Labels";
+        values[7] = match.getFragmentIon().getCompleteIon(); //"Fragment Ion";
+        values[8] = Integer.toString(match.getFragmentIon().getCharge()); //"Fragment Ion Charge";
+        values[9] = fourDecIn.format(match.getFragmentIon().getMToZ()); //"Fragment Ion Mass [m/z]";
+        values[10] = Integer.toString(match.getPeak().getCharge()); //"Peak Charge";
+        values[11] = fourDecIn.format(match.getPeak().getMass()); //"Peak Mass [m/z]";
+        values[12] = twoDecIn.format(match.getPpmDeviation());//"Mass Deviation [ppm]";
+        values[13] = twoDecIn.format(match.getPeak().getRelIntensity()); //"Peak rel. Intensity [%]";
+        values[14] = scientificIn.format(match.getPeak().getIntensity()); //"Peak abs. Intensity [au]";
+        values[15] = Integer.toString(match.getPeak().getScanNumber()); //"Scan Number";
+        values[16] = match.getFragmentIon().getAASequence();//"Fragment Ion Sequence";
+        values[17] = match.getFragmentIon().getFormula().getSumFormula();//"Fragment Ion Sum Formula";
+        values[18] = match.getLeadingProteins();
+        return values;
+    }
+
+    //combine the .csv Files of Section 1 (name ending _first_last.csv, see CSVReader.wholeRunCICChecker) into one big .csv file: folder name + _complete.csv
+    //the files are appended in the order of their first spectrum, the header of the first file is kept
+    //the rows are copied as bytes without reading them line by line (FileChannel.transferTo), so the memory does not depend on the size of the files
+    public static void csvFileCombiner(String folderPath) throws IOException {
+        csvFileCombiner(folderPath, false, 1);
+    }
+
+    //gzipOutput: the complete file is written as _complete.csv.gz
+    //with more than 1 thread, the files are compressed in parallel, every file into its own gzip member (the members one after another are one valid .gz file)
+    //up to 2 compressed files per thread are kept in memory until they are written
+    public static void csvFileCombiner(String folderPath, boolean gzipOutput, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads has to be at least 1! Threads: "+threads);
+        File folder = new File(folderPath);
+        ArrayList<File> csvFiles = chunkFileFinder(folder);
+        if (csvFiles.isEmpty())
+            throw new IllegalArgumentException("No .csv-files of Section 1 found in: "+folder.getAbsolutePath());
+        String completeName = folder.getName() + "_complete.csv";
+        if (gzipOutput)
+            completeName = completeName + ".gz";
+        File completeCSV = new File(folder, completeName);
+
+        byte[] header = headerReader(csvFiles.get(0));
+        FileOutputStream completeOut = new FileOutputStream(completeCSV);
+        try {
+            if (!gzipOutput) {
+                FileChannel outChannel = completeOut.getChannel();
+                outChannel.write(ByteBuffer.wrap(header));
+                for (File currentCSV : csvFiles) {
+                    rowsTransferrer(currentCSV, header, outChannel);
+                    if (AnalysisLog.isDebugEnabled())
+                        AnalysisLog.debug(".csv File added to complete File: "+currentCSV.getName());
+                }
+            }
+            else {
+                gzipMemberWriter(csvFiles, header, completeOut, threads);
             }
-            sb.append('\n');
         }
-        //all the matches are added to StringBuilder
-        //write to .csv File
-        csvWriter.write(sb.toString());
-        csvWriter.close();
-        System.out.println(".csv-file created!");
+        finally {
+            completeOut.close();
+        }
+        System.out.println(".csv File created from "+csvFiles.size()+" individual files.");
     }
 
-    //combine different .csv Files into one big .csv file
-    public static void csvFileCombiner(String folderPath) throws FileNotFoundException {
-        ArrayList<String> fileNames = new ArrayList<>();
-        File folder = new File(folderPath);
-        //get ArrayList<String> of all the .csv files in this folder
-        fileNames = getFolderCSVFileNames(folder);
+    //.csv-files with the name ending _first_last.csv, ordered by the first and then the last spectrum
+    private static ArrayList<File> chunkFileFinder(File folder) {
+        File[] folderFiles = folder.listFiles();
+        if (folderFiles == null)
+            throw new IllegalArgumentException("Not a directory: "+folder.getAbsolutePath());
+        final HashMap<File, long[]> spectrumRanges = new HashMap<>();
         ArrayList<File> csvFiles = new ArrayList<>();
-        //create all the .csv File objects
-        folderPath = folderPath.replace("\\", "\\\\");
-        for (String fileName : fileNames){
-            String pathName = folderPath+fileName;
-            csvFiles.add(new File(pathName));
-        }
-        //prepare writing of new .csv
-        String folderName = folder.getName();
-        String completeCSVName = folderPath + "\\"+folderName+"_complete.csv";
-        File completeCSV = new File(completeCSVName);
-        PrintWriter csvWriter = new PrintWriter(completeCSV);
-
-        //set boolean for headers
-        boolean headerWritten = false;
-        //loop through all the Files
-        for (File currentCSV : csvFiles){
-            //starting scanner and StringBuilder
-            Scanner scanner = new Scanner(currentCSV);
-            StringBuilder sb = new StringBuilder();
-            //handle writing of headers
-            if (!headerWritten){
-                String header = scanner.nextLine();
-                sb.append(header);
-                sb.append('\n');
-                headerWritten = true;
+        for (File individualFile : folderFiles) {
+            Matcher matcher = CHUNK_FILE_NAME.matcher(individualFile.getName());
+            if (!individualFile.isFile() || !matcher.matches())
+                continue;
+            spectrumRanges.put(individualFile, new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))});
+            csvFiles.add(individualFile);
+        }
+        Collections.sort(csvFiles, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long[] rangeA = spectrumRanges.get(a);
+                long[] rangeB = spectrumRanges.get(b);
+                if (rangeA[0] != rangeB[0])
+                    return Long.compare(rangeA[0], rangeB[0]);
+                return Long.compare(rangeA[1], rangeB[1]);
             }
-            //if not first File, advance scanner one line
-            else {
-                scanner.nextLine();
+        });
+        return csvFiles;
+    }
+
+    //first line of the file including its line break
+    private static byte[] headerReader(File csvFile) throws IOException {
+        FileInputStream in = new FileInputStream(csvFile);
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        header.write(buffer, 0, i + 1);
+                        return header.toByteArray();
+                    }
+                }
+                header.write(buffer, 0, read);
             }
-            //go through whole file
-            while (scanner.hasNextLine()){
-                String line = scanner.nextLine();
-                sb.append(line);
-                sb.append('\n');
+            throw new IllegalArgumentException("No complete header in: "+csvFile.getAbsolutePath());
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    //checks that the file starts with the header and returns the position of the first row
+    private static long rowsOffset(File csvFile, byte[] header) throws IOException {
+        if (!Arrays.equals(headerReader(csvFile), header))
+            throw new IllegalArgumentException("The header is different from the header of the first file: "+csvFile.getAbsolutePath());
+        return header.length;
+    }
+
+    //copies all the rows (without header) of the file to the end of outChannel; a missing line break after the last row is added
+    private static void rowsTransferrer(File csvFile, byte[] header, FileChannel outChannel) throws IOException {
+        long offset = rowsOffset(csvFile, header);
+        FileInputStream in = new FileInputStream(csvFile);
+        try {
+            FileChannel inChannel = in.getChannel();
+            long size = inChannel.size();
+            long position = offset;
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
             }
-            //write to complete .csv and close this scanner
-            scanner.close();
-            csvWriter.write(sb.toString());
-            csvWriter.flush();
-            //leave csvWriter open for next go
-            System.out.println(".csv File added to complete File: "+currentCSV.getName());
-            //delete current StringBuilder
+            if (size > offset) {
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                inChannel.read(lastByte, size - 1);
+                if (lastByte.get(0) != '\n')
+                    outChannel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    //writes the header and then one gzip member per file, the members are compressed by the workers and written in the order of the files
+    private static void gzipMemberWriter(ArrayList<File> csvFiles, final byte[] header, FileOutputStream completeOut, int threads) throws IOException {
+        GZIPOutputStream headerOut = new GZIPOutputStream(completeOut, 1 << 16);
+        headerOut.write(header);
+        //only the gzip member is finished, completeOut stays open
+        headerOut.finish();
 
+        //with one thread, every file is compressed directly
+        ExecutorService workers = null;
+        int maxFilesInFlight = 1;
+        if (threads > 1) {
+            workers = Executors.newFixedThreadPool(threads);
+            maxFilesInFlight = threads * 2;
         }
-        csvWriter.close();
-        System.out.println(".csv File created from "+csvFiles.size()+" individual files.");
+        ArrayDeque<Future<byte[]>> filesInFlight = new ArrayDeque<>();
+        try {
+            int nextFile = 0;
+            while (nextFile < csvFiles.size() || !filesInFlight.isEmpty()) {
+                if (nextFile < csvFiles.size() && filesInFlight.size() < maxFilesInFlight) {
+                    filesInFlight.add(gzipMemberTask(workers, csvFiles.get(nextFile), header));
+                    nextFile++;
+                    continue;
+                }
+                completeOut.write(gzipMemberResult(filesInFlight.poll()));
+            }
+        }
+        finally {
+            if (workers != null)
+                workers.shutdownNow();
+        }
+    }
 
+    //creates the task which compresses the rows of one file into a gzip member; without workers, the task is run directly
+    private static Future<byte[]> gzipMemberTask(ExecutorService workers, final File csvFile, final byte[] header) {
+        Callable<byte[]> task = new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                long offset = rowsOffset(csvFile, header);
+                ByteArrayOutputStream member = new ByteArrayOutputStream();
+                GZIPOutputStream gzipOut = new GZIPOutputStream(member, 1 << 16);
+                FileInputStream in = new FileInputStream(csvFile);
+                try {
+                    FileChannel inChannel = in.getChannel();
+                    inChannel.position(offset);
+                    ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                    byte lastByte = '\n';
+                    int read;
+                    while ((read = inChannel.read(buffer)) > 0) {
+                        gzipOut.write(buffer.array(), 0, read);
+                        lastByte = buffer.get(read - 1);
+                        buffer.clear();
+                    }
+                    if (lastByte != '\n')
+                        gzipOut.write('\n');
+                }
+                finally {
+                    in.close();
+                }
+                gzipOut.close();
+                if (AnalysisLog.isDebugEnabled())
+                    AnalysisLog.debug(".csv File added to complete File: "+csvFile.getName());
+                return member.toByteArray();
+            }
+        };
+        if (workers == null) {
+            FutureTask<byte[]> directTask = new FutureTask<>(task);
+            directTask.run();
+            return directTask;
+        }
+        return workers.submit(task);
     }
 
-    private static ArrayList<String> getFolderCSVFileNames(final File folder){
-        ArrayList<String> fileNames = new ArrayList<>();
-        for (final File individualFiles : folder.listFiles()){
-            if (individualFiles.getName().contains(".csv"))
-                fileNames.add(individualFiles.getName());
+    //waits for the compression and passes on exceptions thrown by the task
+    private static byte[] gzipMemberResult(Future<byte[]> memberTask) throws IOException {
+        try {
+            return memberTask.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the compression!", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Compression failed!", cause);
         }
-        return fileNames;
     }
 
     public static void createMassDiffCSV(ArrayList<Double> diffsIn, String filePathIn) throws FileNotFoundException {
@@ -183,4 +375,41 @@ public class CSVCreator {
         System.out.println(".csv-File created!");
     }
 
+    //bins of the mass shift histogram with at least one shift
+    public static void createMassShiftHistogramCSV(MassShiftHistogram histogramIn, String filePathIn) throws FileNotFoundException {
+        filePathIn = filePathIn + "massShiftHistogram.csv";
+        PrintWriter csvWriter = new PrintWriter(new File(filePathIn));
+        StringBuilder sb = new StringBuilder();
+        sb.append("Bin Lower Edge [Da],Bin Center [Da],Count\n");
+        for (int i = 0; i < histogramIn.getNumberOfBins(); i++){
+            long count = histogramIn.getBinCount(i);
+            if (count == 0)
+                continue;
+            sb.append(fourDec.format(histogramIn.getBinLowerEdge(i))).append(",");
+            sb.append(fourDec.format(histogramIn.getBinCenter(i))).append(",");
+            sb.append(count).append("\n");
+            csvWriter.write(sb.toString());
+            sb.setLength(0);
+        }
+        csvWriter.write(sb.toString());
+        csvWriter.close();
+        System.out.println(".csv-File created!");
+    }
+
+    //enriched mass shifts of MassShiftHistogram.peakPicker
+    public static void createMassShiftPeaksCSV(ArrayList<MassShiftPeak> peaksIn, String filePathIn) throws FileNotFoundException {
+        filePathIn = filePathIn + "massShiftPeaks.csv";
+        PrintWriter csvWriter = new PrintWriter(new File(filePathIn));
+        StringBuilder sb = new StringBuilder();
+        sb.append("Mass Shift [Da],Count,Background,Enrichment\n");
+        for (MassShiftPeak peak : peaksIn){
+            sb.append(fourDec.format(peak.getShift())).append(",");
+            sb.append(peak.getCount()).append(",");
+            sb.append(twoDec.format(peak.getBackground())).append(",");
+            sb.append(twoDec.format(peak.getEnrichment())).append("\n");
+        }
+        csvWriter.write(sb.toString());
+        csvWriter.close();
+        System.out.println(".csv-File created!");
+    }
 }
@@ -1,16 +1,22 @@
 import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
 import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Created by micha on 6/14/2017.
  */
 public class CSVReader {
+
     public static ArrayList<AminoAcid> aminoAcidParse(File file) {
 
         Scanner scanner = null;
@@ -79,160 +85,299 @@ public class CSVReader {
     }
 
 
-    public static void wholeRunCICChecker(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce, String filePath, String labelIn) throws JMzReaderException, FileNotFoundException {
+    public static void wholeRunCICChecker(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce, String filePath, String labelIn) throws JMzReaderException, IOException {
+        wholeRunCICChecker(runIn, evidence, aminoAcids, accuracy, spectraAtOnce, filePath, labelIn, false);
+    }
+
+    //streamSpectra = true: the evidence rows are sorted by their MS/MS scan number and the mzXML is read in one forward pass (MzXMLSpectrumStream)
+    //instead of one random access per evidence row; the .csv-files then contain the spectra in the order of their scan numbers
+    public static void wholeRunCICChecker(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce, String filePath, String labelIn,
+                                          boolean streamSpectra) throws JMzReaderException, IOException {
+        wholeRunCICChecker(runIn, evidence, aminoAcids, accuracy, spectraAtOnce, filePath, labelIn, streamSpectra, 1);
+    }
+
+    //threads > 1: the evidence rows are checked in parallel by a pool with the given number of worker threads
+    //the results are collected in the order of the evidence rows, so the .csv-files are the same as with one thread
+    //with random access, the workers also read the spectra; with streamSpectra, the spectra are read one after another and only the checking runs in parallel
+    public static void wholeRunCICChecker(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce, String filePath, String labelIn,
+                                          boolean streamSpectra, int threads) throws JMzReaderException, IOException {
+        cicCheckerRunner(mzXMLSpectrumSourceCreator(runIn, streamSpectra), streamSpectra, evidenceParse(evidence), aminoAcids, accuracy, spectraAtOnce, filePath, null, null, labelIn, threads);
+    }
+
+    //instead of one .csv-file per spectraAtOnce spectra, all the matches are written into matchesOut
+    //(a CompClusterCSVWriter for the _complete.csv-file of Section 2 or a ColumnarMatchWriter for a compressed columnar file)
+    //matchesOut is not closed, so the caller decides when the file is complete
+    //if a CompClusterCSVWriter was opened with resume = true, the evidence rows up to its checkpoint are skipped
+    public static void wholeRunCICChecker(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, CompClusterOutput matchesOut, String labelIn,
+                                          boolean streamSpectra, int threads) throws JMzReaderException, IOException {
+        cicCheckerRunner(mzXMLSpectrumSourceCreator(runIn, streamSpectra), streamSpectra, evidenceParse(evidence), aminoAcids, accuracy, 0, null, matchesOut, null, labelIn, threads);
+    }
+
+    //same analysis with spectra from a random access source, e.g. a BinarySpectrumCache which was created once for the run
+    //the evidence rows are handled in their original order
+    public static void wholeRunCICChecker(SpectrumSource spectraIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce, String filePath, String labelIn,
+                                          int threads) throws JMzReaderException, IOException {
+        cicCheckerRunner(spectraIn, false, evidenceParse(evidence), aminoAcids, accuracy, spectraAtOnce, filePath, null, null, labelIn, threads);
+    }
+
+    public static void wholeRunCICChecker(SpectrumSource spectraIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, CompClusterOutput matchesOut, String labelIn,
+                                          int threads) throws JMzReaderException, IOException {
+        cicCheckerRunner(spectraIn, false, evidenceParse(evidence), aminoAcids, accuracy, 0, null, matchesOut, null, labelIn, threads);
+    }
+
+    static SpectrumSource mzXMLSpectrumSourceCreator(MzXMLFile runIn, boolean streamSpectra) {
+        if (streamSpectra)
+            return new MzXMLSpectrumStream(runIn);
+        return new MzXMLSpectrumSource(runIn);
+    }
+
+    //streamSpectra = true: spectra can only be read in ascending scan number order, the evidence rows are sorted accordingly
+    //matchesOut = null: the matches are written into one .csv-file per spectraAtOnce spectra, otherwise every spectrum is written into matchesOut when it is finished
+    //pipeline != null (only together with matchesOut): the written rows and the spectrum are passed on to the pipeline, which analyzes them in the same pass
+    //evidenceEntries: the rows of the evidence.txt which belong to this run
+    static void cicCheckerRunner(SpectrumSource spectra, boolean streamSpectra, ArrayList<EvidenceEntry> evidenceEntries, ArrayList<AminoAcid> aminoAcids, double accuracy, int spectraAtOnce,
+                                 String filePath, CompClusterOutput matchesOut, WholeRunPipeline pipeline, String labelIn, int threads) throws JMzReaderException, IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads has to be at least 1! Threads: "+threads);
         if (!labelIn.equals("TMT") && !labelIn.equals("EC"))
             throw new IllegalArgumentException("Unknown label: "+labelIn+"! Please use TMT or EC");
 
 
         ArrayList<CompClusterIonMatch> allResults = new ArrayList<>();
-        Scanner scanner = null;
-        try {
-            scanner = new Scanner(evidence);
-        } catch (FileNotFoundException e) {
-            System.out.println("Could not read given file - " + evidence.getAbsolutePath());
-        }
-        //read out the captions
-        String captions = scanner.nextLine();
-        String[] splitCaptions = captions.split("\t");
-        //determine the important columns: "Sequence", "Modifications", "Modified sequence", "MS/MS Scan Number", "Reporter intensity count 0" and "Leading Proteins"
-        //create new map with those keywords and the column indices (starting from 0!) as values
-        Map<String, Integer> captionPositions = new HashMap<>();
-        int index = 0;
-        for (String caption : splitCaptions) {
-            switch (caption) {
-                case "Sequence":
-                    captionPositions.put("Sequence", index);
-                    break;
-                case "Modifications":
-                    captionPositions.put("Modifications", index);
-                    break;
-                case "Modified sequence":
-                    captionPositions.put("Modified sequence", index);
-                    break;
-                case "Leading proteins":
-                    captionPositions.put("Leading proteins", index);
-                    break;
-                case "MS/MS Scan Number":
-                captionPositions.put("MS/MS Scan Number", index);
-                break;
-                case "Reporter intensity count 0":
-                captionPositions.put("Reporter intensity count 0", index);
-                break;
-            }
-            index++;
-        }
-
-        if (captionPositions.size() != 6)
-            throw new IllegalArgumentException("Not all required captions could be read!");
+        //is there a reporter present?
+        //if not, the row is sorted out
         int sortedOut = 0;
-        int processedSpectra = 0;
-        int addedSpectra = 0;
-
-        //TODO : Writer open, write header
-
-        //start reading in of values
-        while (scanner.hasNextLine()) {
-            String currentRow = scanner.nextLine();
-            String[] values = currentRow.split("\t");
-            //is there a reporter present?
-            //if not, go to next line
-            if (Integer.parseInt(values[captionPositions.get("Reporter intensity count 0")]) == 0) {
+        ArrayList<EvidenceEntry> entriesToCheck = new ArrayList<>();
+        for (EvidenceEntry entry : evidenceEntries) {
+            if (entry.getReporterCount() == 0) {
                 sortedOut++;
                 continue;
             }
+            entriesToCheck.add(entry);
+        }
 
+        if (streamSpectra) {
+            //sorting is stable, rows with the same scan number keep their order
+            Collections.sort(entriesToCheck, new Comparator<EvidenceEntry>() {
+                @Override
+                public int compare(EvidenceEntry a, EvidenceEntry b) {
+                    return Integer.compare(a.getScanNumber(), b.getScanNumber());
+                }
+            });
+        }
 
-            //read out the direct information
-            String sequence = values[captionPositions.get("Sequence")];
-            String modSequence = values[captionPositions.get("Modified sequence")];
-            String scanNumber = values[captionPositions.get("MS/MS Scan Number")];
-            String modStatus = values[captionPositions.get("Modifications")];
-            String leadingProteins = values[captionPositions.get("Leading proteins")];
-
+        int processedSpectra = 0;
+        int addedSpectra = 0;
+        //resumed matchesOut: the spectra before the checkpoint are already in the file
+        int nextEntry = 0;
+        if (matchesOut != null && matchesOut.getJournal() != null && matchesOut.getWrittenSpectra() > 0) {
+            nextEntry = matchesOut.getWrittenSpectra();
+            matchesOut.getJournal().rowCountValidator(entriesToCheck.size());
+            matchesOut.getJournal().checkpointValidator(nextEntry - 1, entriesToCheck.get(nextEntry - 1).getScanNumber());
+            processedSpectra = nextEntry;
+            AnalysisLog.info("Skipped spectra (already in the .csv-file): " + nextEntry);
+        }
 
-            //use this information to create the ArrayList<Modification> necessary for the CompClusterChecker
-            ArrayList<Modification> mods = new ArrayList<>();
-            if (modStatus.equals("Unmodified")) {
-                if (sequence.contains("C")) {
-                    mods.add(Modification.carbamidomethylation());
+        //with one thread, every task is run directly when it is created
+        //otherwise, up to 4 tasks per thread are queued; the oldest task is always collected first, which keeps the order of the evidence rows
+        ExecutorService workers = null;
+        int maxTasksInFlight = 1;
+        if (threads > 1) {
+            workers = Executors.newFixedThreadPool(threads);
+            maxTasksInFlight = threads * 4;
+        }
+        ArrayDeque<Future<CheckedSpectrum>> tasksInFlight = new ArrayDeque<>();
+        ArrayDeque<EvidenceEntry> entriesInFlight = new ArrayDeque<>();
+        RunMetrics metrics = RunMetrics.getRunMetrics();
+        metrics.runStarter(entriesToCheck.size(), sortedOut);
+        metrics.skippedSpectraAdder(nextEntry);
+        RunMetrics.mxBeanRegistration();
+        metrics.periodicReporterStarter();
+        try {
+            while (nextEntry < entriesToCheck.size() || !tasksInFlight.isEmpty()) {
+                if (nextEntry < entriesToCheck.size() && tasksInFlight.size() < maxTasksInFlight) {
+                    EvidenceEntry entry = entriesToCheck.get(nextEntry);
+                    nextEntry++;
+                    //the spectrum stream can only be read in order, so it is read here and not by the worker
+                    MySpectrum streamedSpectrum = null;
+                    if (streamSpectra) {
+                        long decodeStart = System.nanoTime();
+                        streamedSpectrum = spectra.getSpectrum(entry.getScanNumber());
+                        metrics.getDecodeLatency().valueAdder(System.nanoTime() - decodeStart);
+                    }
+                    Callable<CheckedSpectrum> task = evidenceEntryTask(entry, spectra, streamedSpectrum, aminoAcids, accuracy, labelIn);
+                    if (workers == null) {
+                        FutureTask<CheckedSpectrum> directTask = new FutureTask<>(task);
+                        directTask.run();
+                        tasksInFlight.add(directTask);
+                    }
+                    else {
+                        tasksInFlight.add(workers.submit(task));
+                    }
+                    entriesInFlight.add(entry);
+                    continue;
                 }
-                ArrayList<CompClusterIonMatch> currentSpectrumMatches = new ArrayList<>();
-                if (labelIn.equals("EC"))
-                    currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerEC(aminoAcids, sequence, mods, scanNumber, runIn, accuracy, leadingProteins);
-                if (labelIn.equals("TMT"))
-                    currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerTMT(aminoAcids, sequence, mods, scanNumber, runIn, accuracy, leadingProteins);
-                allResults.addAll(currentSpectrumMatches);
+
+                EvidenceEntry entry = entriesInFlight.poll();
+                CheckedSpectrum checkedSpectrum = taskResult(tasksInFlight.poll());
+                ArrayList<CompClusterIonMatch> currentSpectrumMatches = checkedSpectrum.getMatches();
                 processedSpectra++;
-                System.out.println("Processed spectrum number: " + scanNumber);
-                System.out.println("Processed spectra: " + processedSpectra);
-                addedSpectra++;
-                if (addedSpectra == spectraAtOnce) {
-                    int indices = processedSpectra - addedSpectra +1;
-                    String path = filePath + "_" + indices + "_" + processedSpectra + ".csv";
-                    CSVCreator.compClusterMatchCSVPrinter(allResults, path);
-                    allResults = new ArrayList<>();
-                    addedSpectra = 0;
+                if (AnalysisLog.isDebugEnabled()) {
+                    AnalysisLog.debug("Processed spectrum number: " + entry.getScanNumberString());
+                    AnalysisLog.debug("Processed spectra: " + processedSpectra);
                 }
-                continue;
-            }
-
-            modSequence = modSequence.replace("_", "");
-            while (modSequence.contains("(")) {
-                int methPointer = 0;
-                for (int a = 0; a < modSequence.length(); a++) {
-                    char current = modSequence.charAt(a);
-                    if (current == '(') {
-                        //Methionine is at position a, because modifications start counting at 1
-                        methPointer = a;
-                        break;
+                long writeStart = System.nanoTime();
+                if (matchesOut != null) {
+                    ArrayList<String[]> writtenRows = matchesOut.spectrumMatchesWriter(entry.getScanNumber(), currentSpectrumMatches);
+                    if (pipeline != null)
+                        pipeline.checkedSpectrumAdder(checkedSpectrum.getSpectrum(), writtenRows);
+                }
+                else {
+                    allResults.addAll(currentSpectrumMatches);
+                    addedSpectra++;
+                    if (addedSpectra == spectraAtOnce) {
+                        int indices = processedSpectra - addedSpectra + 1 ;
+                        String path = filePath + "_" + indices + "_" + processedSpectra + ".csv";
+                        CSVCreator.compClusterMatchCSVPrinter(allResults, path);
+                        allResults = new ArrayList<>();
+                        addedSpectra = 0;
                     }
                 }
-                if (methPointer != 0)
-                    mods.add(Modification.oxidation(methPointer));
-
-                //remove occurence of brackets handled
-                if (methPointer + 5 >= modSequence.length())
-                    break;
-                String firstPart = modSequence.substring(0, methPointer - 1);
-                String secondPart = modSequence.substring(methPointer + 5, modSequence.length());
-                modSequence = firstPart + secondPart;
+                metrics.getWriteLatency().valueAdder(System.nanoTime() - writeStart);
+                metrics.processedSpectrumAdder(currentSpectrumMatches.size());
             }
+        }
+        finally {
+            if (workers != null)
+                workers.shutdownNow();
+            metrics.runFinisher();
+        }
 
-            if (sequence.contains("C")) {
-                mods.add(Modification.carbamidomethylation());
-            }
-            ArrayList<CompClusterIonMatch> currentSpectrumMatches = new ArrayList<>();
-            if (labelIn.equals("EC"))
-                currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerEC(aminoAcids, sequence, mods, scanNumber, runIn, accuracy, leadingProteins);
-            if (labelIn.equals("TMT"))
-                currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerTMT(aminoAcids, sequence, mods, scanNumber, runIn, accuracy, leadingProteins);
-            allResults.addAll(currentSpectrumMatches);
-            processedSpectra++;
-            addedSpectra++;
-            System.out.println("Processed spectrum number: " + scanNumber);
-            System.out.println("Processed spectra: " + processedSpectra);
-            if (addedSpectra == spectraAtOnce) {
-                int indices = processedSpectra - addedSpectra + 1 ;
-                String path = filePath + "_" + indices + "_" + processedSpectra + ".csv";
-                CSVCreator.compClusterMatchCSVPrinter(allResults, path);
-                allResults = new ArrayList<>();
-                addedSpectra = 0;
+        if (matchesOut == null) {
+            int indices = processedSpectra - addedSpectra +1;
+            String path = filePath + "_" + indices + "_" + processedSpectra + ".csv";
+            CSVCreator.compClusterMatchCSVPrinter(allResults, path);
+        }
+
+        AnalysisLog.info("Sorted out spectra (no reporter ion intensities): " + sortedOut);
+        AnalysisLog.info("Processed spectra: " + processedSpectra);
+    }
+
+    //creates the task to check one evidence row; if spectrumIn is null, the task reads the spectrum itself
+    private static Callable<CheckedSpectrum> evidenceEntryTask(final EvidenceEntry entry, final SpectrumSource spectra, final MySpectrum spectrumIn,
+                                                               final ArrayList<AminoAcid> aminoAcids, final double accuracy, final String labelIn) {
+        return new Callable<CheckedSpectrum>() {
+            @Override
+            public CheckedSpectrum call() throws JMzReaderException {
+                MySpectrum spectrum = spectrumIn;
+                if (spectrum == null) {
+                    long decodeStart = System.nanoTime();
+                    spectrum = spectra.getSpectrum(entry.getScanNumber());
+                    RunMetrics.getRunMetrics().getDecodeLatency().valueAdder(System.nanoTime() - decodeStart);
+                }
+                return new CheckedSpectrum(spectrum, evidenceEntryChecker(entry, spectrum, aminoAcids, accuracy, labelIn));
             }
+        };
+    }
+
+    //waits for the task and passes on exceptions thrown by the task
+    private static CheckedSpectrum taskResult(Future<CheckedSpectrum> task) throws JMzReaderException {
+        try {
+            return task.get();
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the spectrum analysis!", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JMzReaderException)
+                throw (JMzReaderException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Spectrum analysis failed!", cause);
+        }
+    }
 
-        scanner.close();
-        int indices = processedSpectra - addedSpectra +1;
-        String path = filePath + "_" + indices + "_" + processedSpectra + ".csv";
-        CSVCreator.compClusterMatchCSVPrinter(allResults, path);
-        //TODO : writer.close
+    //checks one evidence row against its spectrum with the label checker for the used label
+    private static ArrayList<CompClusterIonMatch> evidenceEntryChecker(EvidenceEntry entry, MySpectrum spectrum, ArrayList<AminoAcid> aminoAcids, double accuracy, String labelIn) {
+        //use the evidence information to create the ArrayList<Modification> necessary for the CompClusterChecker
+        ArrayList<Modification> mods = entry.getModificationList();
+        ArrayList<CompClusterIonMatch> currentSpectrumMatches = new ArrayList<>();
+        if (labelIn.equals("EC"))
+            currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerEC(aminoAcids, entry.getSequence(), mods, spectrum, accuracy, entry.getLeadingProteins());
+        if (labelIn.equals("TMT"))
+            currentSpectrumMatches = LabelFragmentIonChecker.compClusterCheckerTMT(aminoAcids, entry.getSequence(), mods, spectrum, accuracy, entry.getLeadingProteins());
+        return currentSpectrumMatches;
+    }
+
+    //reads in all the rows of a MaxQuant evidence.txt
+    public static ArrayList<EvidenceEntry> evidenceParse(File evidence) throws IOException {
+        DelimitedReader reader = new DelimitedReader(evidence, '\t');
+        ArrayList<EvidenceEntry> entries = new ArrayList<>();
+        try {
+            //determine the important columns: "Sequence", "Modifications", "Modified sequence", "MS/MS Scan Number", "Reporter intensity count 0" and "Leading Proteins"
+            //column indices start from 0!
+            int sequenceColumn = reader.columnIndex("Sequence");
+            int modificationsColumn = reader.columnIndex("Modifications");
+            int modSequenceColumn = reader.columnIndex("Modified sequence");
+            int leadingProteinsColumn = reader.columnIndex("Leading proteins");
+            int scanNumberColumn = reader.columnIndex("MS/MS Scan Number");
+            int reporterCountColumn = reader.columnIndex("Reporter intensity count 0");
+            //optional, only needed if the evidence.txt contains several raw files (see ExperimentBatchRunner)
+            int rawFileColumn = reader.columnIndex("Raw file");
+            if (sequenceColumn < 0 || modificationsColumn < 0 || modSequenceColumn < 0 || leadingProteinsColumn < 0 || scanNumberColumn < 0 || reporterCountColumn < 0)
+                throw new IllegalArgumentException("Not all required captions could be read!");
 
-        System.out.println("Sorted out spectra (no reporter ion intensities): " + sortedOut);
-        System.out.println("Processed spectra: " + processedSpectra);
+            //start reading in of values; only the needed fields of every row are turned into Strings
+            while (reader.nextRow()) {
+                String rawFile = rawFileColumn < 0 ? "" : reader.getString(rawFileColumn);
+                entries.add(new EvidenceEntry(reader.getString(sequenceColumn), reader.getString(modSequenceColumn),
+                        reader.getString(modificationsColumn), reader.getString(leadingProteinsColumn),
+                        reader.getString(scanNumberColumn), reader.getString(reporterCountColumn), rawFile));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return entries;
     }
 
-public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, double ppmDev) throws FileNotFoundException, JMzReaderException {
+//statisticsAnalysis can also be a columnar match file (ColumnarMatchWriter) instead of the statistics file: the statistics rows are then calculated from its matches, see ScanStatisticsReader
+public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, double ppmDev) throws IOException, JMzReaderException {
+    wholeRunRepFinder(runIn, statisticsAnalysis, ppmDev, false);
+}
+
+//streamSpectra = true: the rows are handled in the order of their scan numbers with one forward pass through the mzXML (MzXMLSpectrumStream)
+//the lines are kept until the end and written in the order of the statistics file
+public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, double ppmDev, boolean streamSpectra) throws IOException, JMzReaderException {
+    repFinderRunner(mzXMLSpectrumSourceCreator(runIn, streamSpectra), streamSpectra, statisticsAnalysis, ppmDev, 0, false);
+}
+
+//same analysis with spectra from a random access source, e.g. a BinarySpectrumCache which was created once for the run
+public static void wholeRunRepFinder(SpectrumSource spectraIn, File statisticsAnalysis, double ppmDev) throws IOException, JMzReaderException {
+    repFinderRunner(spectraIn, false, statisticsAnalysis, ppmDev, 0, false);
+}
+
+//rowsPerCheckpoint > 0: every rowsPerCheckpoint rows, the output is forced to disk and a checkpoint is written next to it (_reporterIons.csv.checkpoint)
+//resume = true: an interrupted run continues after its last checkpoint and appends to the existing output
+public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, double ppmDev, int rowsPerCheckpoint, boolean resume) throws IOException, JMzReaderException {
+    repFinderRunner(new MzXMLSpectrumSource(runIn), false, statisticsAnalysis, ppmDev, rowsPerCheckpoint, resume);
+}
+
+public static void wholeRunRepFinder(SpectrumSource spectraIn, File statisticsAnalysis, double ppmDev, int rowsPerCheckpoint, boolean resume) throws IOException, JMzReaderException {
+    repFinderRunner(spectraIn, false, statisticsAnalysis, ppmDev, rowsPerCheckpoint, resume);
+}
+
+//checkpoints are only supported with random access (streamSpectra = false), since the streamed lines are written at the end
+private static void repFinderRunner(SpectrumSource spectra, boolean streamSpectra, File statisticsAnalysis, double ppmDev, int rowsPerCheckpoint, boolean resume)
+        throws IOException, JMzReaderException {
     DecimalFormat twoDec = new DecimalFormat("0.00");
     DecimalFormat scientific = new DecimalFormat("0.00E0");
+    if (rowsPerCheckpoint < 0)
+        throw new IllegalArgumentException("Number of rows per checkpoint can't be negative! Rows per checkpoint: "+rowsPerCheckpoint);
         //first, set label name
     String labelName = "";
     String fileName = statisticsAnalysis.getName();
@@ -243,84 +388,161 @@ public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, d
     if (fileName.contains("EC"))
         labelName = "EC";
 
-    //initialize scanner
-    Scanner scanner = null;
-    try {
-         scanner = new Scanner(statisticsAnalysis);
-    } catch (FileNotFoundException e) {
-        System.out.println("File not found! Location: " +statisticsAnalysis.getAbsolutePath());
+    //initialize reader; a columnar match file gives the rows of its statistics file
+    TableRowReader reader;
+    String newFilePath;
+    if (ColumnarMatchReader.isColumnarFile(statisticsAnalysis)) {
+        reader = new ScanStatisticsReader(new ColumnarMatchReader(statisticsAnalysis), labelName.equals("EC"));
+        newFilePath = ColumnarMatchReader.outputPathCreator(statisticsAnalysis.getAbsolutePath(), "reporterIons.csv");
+    }
+    else {
+        reader = new DelimitedReader(statisticsAnalysis, ',');
+        newFilePath = statisticsAnalysis.getAbsolutePath().replace("_statistics.csv", "")+"_reporterIons.csv";
     }
 
     //get header positions
-    String header = scanner.nextLine();
-    String headerCaptions[] = header.split(",");
     HashMap<String, Integer> captionPositions = new HashMap<>();
-    int index = 0;
-    for (String captions : headerCaptions){
-        switch (captions){
-            case "Modified Peptide":
-                captionPositions.put("Modified Peptide", index);
-                break;
-            case "Precursor Charge":
-                captionPositions.put("Precursor Charge", index);
-                break;
-            case "Scan Number":
-                captionPositions.put("Scan Number", index);
-                break;
-            case "Leading Proteins":
-                captionPositions.put("Leading Proteins", index);
-                break;
-        }
-        index++;
-    }
+    captionPositions.put("Modified Peptide", reader.columnIndex("Modified Peptide"));
+    captionPositions.put("Precursor Charge", reader.columnIndex("Precursor Charge"));
+    captionPositions.put("Scan Number", reader.columnIndex("Scan Number"));
+    captionPositions.put("Leading Proteins", reader.columnIndex("Leading Proteins"));
+    if (captionPositions.containsValue(-1))
+        throw new IllegalArgumentException("Not all required captions could be read! File: " + statisticsAnalysis.getAbsolutePath());
 
     //prepare new File and write header
-    String newFilePath = statisticsAnalysis.getAbsolutePath().replace("_statistics.csv", "")+"_reporterIons.csv";
     File outputCSV = new File(newFilePath);
-    PrintWriter csvWriter = new PrintWriter(outputCSV);
-    StringBuilder sb = new StringBuilder();
-    String[] newHeader = new String[10];
-    newHeader[0] = "Modified Peptide";
-    newHeader[1] = "Precursor Charge";
-    newHeader[2] = "Scan Number";
-    newHeader[3] = "Leading Proteins";
-    newHeader[4] = "Rep0 Relative Intensity [%]";
-    newHeader[5] = "Rep0 Absolute Intensity [au]";
-    newHeader[6] = "Rep0 Mass Deviation [ppm]";
-    newHeader[7] = "Rep1 Relative Intensity [%]";
-    newHeader[8] = "Rep1 Absolute Intensity [au]";
-    newHeader[9] = "Rep1 Mass Deviation [ppm]";
-    String sep = "";
-    for (String s : newHeader){
-        sb.append(sep);
-        sb.append(s);
-        sep = ",";
+    CheckpointJournal journal = null;
+    FileOutputStream fileOut;
+    if (rowsPerCheckpoint > 0) {
+        journal = new CheckpointJournal(new File(newFilePath + ".checkpoint"));
+        fileOut = journal.outputOpener(outputCSV, resume);
+    }
+    else {
+        fileOut = new FileOutputStream(outputCSV);
     }
-    sb.append("\n");
-    csvWriter.write(sb.toString());
-    sb.setLength(0);
+    PrintWriter csvWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fileOut)));
+    //resumed run: the header is already in the file
+    if (journal == null || !journal.getCheckpointStatus())
+        csvWriter.write(reporterHeaderBuilder());
 
     //continue with scanning of the csv and readout of the values
     int handledSpectra = 1;
-    while (scanner.hasNextLine()){
-        String currentLine = scanner.nextLine();
-        String[] values = currentLine.split(",");
-        String[] newValues = new String[10];
-        Arrays.fill(newValues, "");
-        newValues[0] = values[captionPositions.get("Modified Peptide")];
-        newValues[1] = values[captionPositions.get("Precursor Charge")];
-        newValues[2] = values[captionPositions.get("Scan Number")];
-        newValues[3] = values[captionPositions.get("Leading Proteins")];
-        //generate MySpectrum and start search for Reporter Ions
-        MySpectrum currentSpectrum = MzXMLReadIn.mzXMLToMySpectrum(runIn, newValues[2]);
-        ArrayList<ReporterMatch> repMatches = new ArrayList<>();
-        repMatches = PeakCompare.reporterFinder(currentSpectrum, labelName, ppmDev);
-        //if no reporter ions are found, set values to 0
-        if (repMatches.isEmpty()){
-            for (int i = 4; i<newHeader.length; i++){
-                newHeader[i] = "0";
+    if (!streamSpectra) {
+        int rowIndex = 0;
+        int skippedRows = journal == null ? 0 : journal.getProcessedRows();
+        int lastScanNumber = 0;
+        while (reader.nextRow()) {
+            String[] rowValues = reporterRowValues(reader, captionPositions);
+            int scanNumber = Integer.parseInt(rowValues[2]);
+            //rows before the checkpoint are already in the output
+            if (rowIndex < skippedRows) {
+                journal.checkpointValidator(rowIndex, scanNumber);
+                rowIndex++;
+                handledSpectra++;
+                continue;
+            }
+            //generate MySpectrum and start search for Reporter Ions
+            MySpectrum currentSpectrum = spectra.getSpectrum(scanNumber);
+            csvWriter.write(reporterLineBuilder(rowValues, currentSpectrum, labelName, ppmDev, twoDec, scientific));
+            csvWriter.flush();
+            if (AnalysisLog.isDebugEnabled())
+                AnalysisLog.debug("Analyzed peptide: " + handledSpectra);
+            handledSpectra++;
+            rowIndex++;
+            lastScanNumber = scanNumber;
+            if (journal != null && rowIndex % rowsPerCheckpoint == 0)
+                reporterCheckpointWriter(journal, csvWriter, fileOut, rowIndex, lastScanNumber);
+        }
+        if (journal != null) {
+            journal.rowCountValidator(rowIndex);
+            if (rowIndex > skippedRows)
+                reporterCheckpointWriter(journal, csvWriter, fileOut, rowIndex, lastScanNumber);
+        }
+    }
+    else {
+        final ArrayList<String[]> rows = new ArrayList<>();
+        while (reader.nextRow()) {
+            rows.add(reporterRowValues(reader, captionPositions));
+        }
+        //handle the rows sorted by scan number, rows with the same scan number keep their order
+        ArrayList<Integer> rowOrder = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            rowOrder.add(i);
+        }
+        Collections.sort(rowOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(Integer.parseInt(rows.get(a)[2]), Integer.parseInt(rows.get(b)[2]));
             }
+        });
+        String[] lines = new String[rows.size()];
+        for (int row : rowOrder) {
+            MySpectrum currentSpectrum = spectra.getSpectrum(Integer.parseInt(rows.get(row)[2]));
+            lines[row] = reporterLineBuilder(rows.get(row), currentSpectrum, labelName, ppmDev, twoDec, scientific);
+            if (AnalysisLog.isDebugEnabled())
+                AnalysisLog.debug("Analyzed peptide: " + handledSpectra);
+            handledSpectra++;
+        }
+        for (String line : lines) {
+            csvWriter.write(line);
         }
+        csvWriter.flush();
+    }
+    reader.close();
+    csvWriter.close();
+    System.out.println("Analysis complete! .csv File with "+ (handledSpectra-1)+" peptides created!");
+
+}
+
+    private static void reporterCheckpointWriter(CheckpointJournal journal, PrintWriter csvWriter, FileOutputStream fileOut, int processedRows, int lastScanNumber) throws IOException {
+        csvWriter.flush();
+        if (csvWriter.checkError())
+            throw new IOException("Could not write the reporter ion .csv-file!");
+        fileOut.getFD().sync();
+        journal.checkpointWriter(processedRows, lastScanNumber, fileOut.getChannel().size());
+    }
+
+    //header of the _reporterIons.csv, including the line break
+    static String reporterHeaderBuilder() {
+        StringBuilder sb = new StringBuilder();
+        String[] newHeader = new String[10];
+        newHeader[0] = "Modified Peptide";
+        newHeader[1] = "Precursor Charge";
+        newHeader[2] = "Scan Number";
+        newHeader[3] = "Leading Proteins";
+        newHeader[4] = "Rep0 Relative Intensity [%]";
+        newHeader[5] = "Rep0 Absolute Intensity [au]";
+        newHeader[6] = "Rep0 Mass Deviation [ppm]";
+        newHeader[7] = "Rep1 Relative Intensity [%]";
+        newHeader[8] = "Rep1 Absolute Intensity [au]";
+        newHeader[9] = "Rep1 Mass Deviation [ppm]";
+        String sep = "";
+        for (String s : newHeader){
+            sb.append(sep);
+            sb.append(s);
+            sep = ",";
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    //picks "Modified Peptide", "Precursor Charge", "Scan Number" and "Leading Proteins" from a row of the statistics file
+    private static String[] reporterRowValues(TableRowReader reader, HashMap<String, Integer> captionPositions) {
+        String[] rowValues = new String[4];
+        rowValues[0] = reader.getString(captionPositions.get("Modified Peptide"));
+        rowValues[1] = reader.getString(captionPositions.get("Precursor Charge"));
+        rowValues[2] = reader.getString(captionPositions.get("Scan Number"));
+        rowValues[3] = reader.getString(captionPositions.get("Leading Proteins"));
+        return rowValues;
+    }
+
+    //searches the reporter ions in the spectrum and creates the line for the _reporterIons.csv
+    //the DecimalFormats are passed in, since they are not thread safe
+    static String reporterLineBuilder(String[] rowValues, MySpectrum currentSpectrum, String labelName, double ppmDev, DecimalFormat twoDec, DecimalFormat scientific) {
+        String[] newValues = new String[10];
+        Arrays.fill(newValues, "");
+        System.arraycopy(rowValues, 0, newValues, 0, 4);
+        ArrayList<ReporterMatch> repMatches = PeakCompare.reporterFinder(currentSpectrum, labelName, ppmDev);
         //loop through the matches
         if (repMatches.size() > 2)
             throw new IllegalArgumentException("More than 2 matched reporters! Size: "+repMatches.size());
@@ -341,26 +563,14 @@ public static void wholeRunRepFinder(MzXMLFile runIn, File statisticsAnalysis, d
             if (newValues[a].length()==0)
                 newValues[a] += "0";
         }
-        //use sb and write to file
-        sep = "";
+        StringBuilder sb = new StringBuilder();
+        String sep = "";
         for (String s : newValues){
             sb.append(sep);
             sb.append(s);
             sep = ",";
         }
         sb.append("\n");
-        csvWriter.write(sb.toString());
-        csvWriter.flush();
-        System.out.println("Analyzed peptide: "+handledSpectra);
-        handledSpectra++;
-
-        //set values to 0 again
-        sb.setLength(0);
-        repMatches.clear();
+        return sb.toString();
     }
-    scanner.close();
-    csvWriter.close();
-    System.out.println("Analysis complete! .csv File with "+ (handledSpectra-1)+" peptides created!");
-
-}
 }
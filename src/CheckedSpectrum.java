@@ -0,0 +1,21 @@
+import java.util.ArrayList;
+
+//result of the check of one evidence row: the spectrum and the CompClusterIonMatches found in it
+    //the spectrum is kept, so the whole run pipeline can search the reporter ions without reading the spectrum again
+public class CheckedSpectrum {
+    private MySpectrum spectrum;
+    private ArrayList<CompClusterIonMatch> matches;
+
+    public CheckedSpectrum(MySpectrum spectrumIn, ArrayList<CompClusterIonMatch> matchesIn) {
+        this.spectrum = spectrumIn;
+        this.matches = matchesIn;
+    }
+
+    public MySpectrum getSpectrum() {
+        return this.spectrum;
+    }
+
+    public ArrayList<CompClusterIonMatch> getMatches() {
+        return this.matches;
+    }
+}
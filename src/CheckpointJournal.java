@@ -0,0 +1,117 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Scanner;
+
+//checkpoint of a whole run analysis: number of rows which are completely written, scan number of the last of these rows and length of the output file at that point
+    //the rows are always written in order, so everything before the checkpoint is complete, even if several threads worked on the rows
+    //after a crash, the output file is cut back to the recorded length and the analysis continues with the next row
+    //the journal is a small .csv-file which is replaced atomically, so it always contains a complete checkpoint
+public class CheckpointJournal {
+    private File journalFile;
+    private boolean checkpointStatus;
+    private int processedRows;
+    private int lastScanNumber;
+    private long outputOffset;
+
+    public CheckpointJournal(File journalFileIn) throws FileNotFoundException {
+        this.journalFile = journalFileIn;
+        if (!journalFileIn.exists())
+            return;
+        Scanner scanner = new Scanner(journalFileIn, "UTF-8");
+        try {
+            //header line
+            scanner.nextLine();
+            String[] values = scanner.nextLine().split(",");
+            this.processedRows = Integer.parseInt(values[0]);
+            this.lastScanNumber = Integer.parseInt(values[1]);
+            this.outputOffset = Long.parseLong(values[2]);
+            this.checkpointStatus = true;
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Checkpoint journal can't be read: " + journalFileIn.getAbsolutePath(), e);
+        }
+        finally {
+            scanner.close();
+        }
+    }
+
+    //writes the checkpoint into a temporary file, forces it to disk and replaces the journal with it
+    //the output file has to be forced to disk before, otherwise the checkpoint could point behind the written rows
+    public void checkpointWriter(int processedRowsIn, int lastScanNumberIn, long outputOffsetIn) throws IOException {
+        File tempFile = new File(this.journalFile.getAbsolutePath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        try {
+            Writer writer = new OutputStreamWriter(fileOut, StandardCharsets.UTF_8);
+            writer.write("Processed Rows,Last Scan Number,Output Offset\n");
+            writer.write(processedRowsIn + "," + lastScanNumberIn + "," + outputOffsetIn + "\n");
+            writer.flush();
+            fileOut.getFD().sync();
+        }
+        finally {
+            fileOut.close();
+        }
+        Files.move(tempFile.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.processedRows = processedRowsIn;
+        this.lastScanNumber = lastScanNumberIn;
+        this.outputOffset = outputOffsetIn;
+        this.checkpointStatus = true;
+    }
+
+    //opens the output file of a run: without checkpoint (or resume = false), the file is created again and getCheckpointStatus() is false afterwards, so the caller writes the header
+    //with checkpoint, the rows after the checkpoint are cut off and the file is opened for appending
+    public FileOutputStream outputOpener(File outputFile, boolean resume) throws IOException {
+        if (!resume || !this.checkpointStatus) {
+            this.checkpointStatus = false;
+            this.processedRows = 0;
+            this.lastScanNumber = 0;
+            this.outputOffset = 0;
+            //an old checkpoint must not be used with the new file
+            if (this.journalFile.exists() && !this.journalFile.delete())
+                throw new IOException("Could not delete old checkpoint: " + this.journalFile.getAbsolutePath());
+            return new FileOutputStream(outputFile);
+        }
+        if (outputFile.length() < this.outputOffset)
+            throw new IllegalArgumentException("Output file is shorter than its checkpoint, can't resume: " + outputFile.getAbsolutePath());
+        FileOutputStream fileOut = new FileOutputStream(outputFile, true);
+        fileOut.getChannel().truncate(this.outputOffset);
+        System.out.println("Resuming after row " + this.processedRows + " (scan number " + this.lastScanNumber + "): " + outputFile.getName());
+        return fileOut;
+    }
+
+    //has to be called for the skipped rows (at least for the last one): checks that the rows before the checkpoint are the same as in the interrupted run
+    public void checkpointValidator(int rowIndex, int scanNumberIn) {
+        if (rowIndex == this.processedRows - 1 && scanNumberIn != this.lastScanNumber)
+            throw new IllegalArgumentException("Checkpoint " + this.journalFile.getName() + " does not fit to the input rows! Checkpoint: row " + this.processedRows
+                    + ", scan number " + this.lastScanNumber + ", input: scan number " + scanNumberIn + ". Delete the checkpoint to start again.");
+    }
+
+    public void rowCountValidator(int rowCount) {
+        if (this.processedRows > rowCount)
+            throw new IllegalArgumentException("Checkpoint " + this.journalFile.getName() + " is behind the last input row! Checkpoint: row " + this.processedRows
+                    + ", input rows: " + rowCount + ". Delete the checkpoint to start again.");
+    }
+
+    //true if a checkpoint was read or written
+    public boolean getCheckpointStatus() {
+        return this.checkpointStatus;
+    }
+
+    public int getProcessedRows() {
+        return this.processedRows;
+    }
+
+    public int getLastScanNumber() {
+        return this.lastScanNumber;
+    }
+
+    public long getOutputOffset() {
+        return this.outputOffset;
+    }
+}
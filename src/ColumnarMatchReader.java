@@ -0,0 +1,372 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+//reads the files of ColumnarMatchWriter row by row, as a DelimitedReader reads the complete .csv-file
+    //the rows have exactly the values of the .csv rows; the Strings of a dictionary column are shared by all the rows with the same value
+    //getInt of a column stored as integer without decimals (e.g. the scan number) returns the stored number without parsing
+    //only one block is in memory at a time
+public class ColumnarMatchReader implements TableRowReader {
+    private static final long[] POWERS_OF_TEN = new long[19];
+    //texts of small integers (charges, label counts), shared by all rows
+    private static final String[] SMALL_INTEGERS = new String[256];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = Integer.toString(i);
+        }
+    }
+
+    private DataInputStream fileIn;
+    private String filePath;
+    private String[] header;
+    private byte[] encodings;
+    private byte[] decimals;
+    private HashMap<String, Integer> columnPositions = new HashMap<>();
+    private ArrayList<ArrayList<String>> dictionaries = new ArrayList<>();
+    private byte[] blockBytes = new byte[1 << 16];
+    private byte[] compressedBytes = new byte[1 << 16];
+    private Inflater inflater = new Inflater();
+    //position of the next value of every column in the current block
+    private int[] columnOffsets;
+    private int blockRowsLeft;
+    private boolean finished;
+    private long[] lastValues;
+    //values of the current row
+    private String[] fields;
+    private long[] integerValues;
+    private boolean[] integerStored;
+    private long rowNumber;
+
+    public ColumnarMatchReader(File fileIn) throws IOException {
+        this.filePath = fileIn.getAbsolutePath();
+        this.fileIn = new DataInputStream(new BufferedInputStream(new FileInputStream(fileIn), 1 << 16));
+        try {
+            if (fileIn.length() < 12 || this.fileIn.readInt() != ColumnarMatchWriter.MAGIC_NUMBER)
+                throw new IllegalArgumentException("File is no columnar match file: " + this.filePath);
+            int version = this.fileIn.readInt();
+            if (version != ColumnarMatchWriter.VERSION)
+                throw new IllegalArgumentException("Unknown version of the columnar match file: " + version + ", file: " + this.filePath);
+            int columnCount = this.fileIn.readInt();
+            this.header = new String[columnCount];
+            this.encodings = new byte[columnCount];
+            this.decimals = new byte[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                this.header[i] = this.fileIn.readUTF();
+                this.encodings[i] = this.fileIn.readByte();
+                this.decimals[i] = this.fileIn.readByte();
+                this.columnPositions.put(this.header[i], i);
+                this.dictionaries.add(new ArrayList<String>());
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            this.fileIn.close();
+            throw e;
+        }
+        this.columnOffsets = new int[this.header.length];
+        this.lastValues = new long[this.header.length];
+        this.integerValues = new long[this.header.length];
+        this.integerStored = new boolean[this.header.length];
+    }
+
+    //true if the file starts with the magic number of ColumnarMatchWriter
+    public static boolean isColumnarFile(File fileIn) throws IOException {
+        if (fileIn.length() < 4)
+            return false;
+        DataInputStream magicIn = new DataInputStream(new FileInputStream(fileIn));
+        try {
+            return magicIn.readInt() == ColumnarMatchWriter.MAGIC_NUMBER;
+        }
+        finally {
+            magicIn.close();
+        }
+    }
+
+    //reader for a CompClusterMatch file: columnar file or .csv-file (also gzip compressed)
+    public static TableRowReader matchFileOpener(File fileIn) throws IOException {
+        if (isColumnarFile(fileIn))
+            return new ColumnarMatchReader(fileIn);
+        return new DelimitedReader(fileIn, ',');
+    }
+
+    //path of a file created from a CompClusterMatch file, e.g. ending "statistics.csv"
+    //.csv-files: ".csv" is replaced by "_", as before; columnar files: the file ending is replaced by "_"; the ending .gz of a gzip file is removed first
+    static String outputPathCreator(String matchFilePathIn, String endingIn) {
+        if (matchFilePathIn.endsWith(".gz"))
+            matchFilePathIn = matchFilePathIn.substring(0, matchFilePathIn.length() - 3);
+        if (matchFilePathIn.endsWith(ColumnarMatchWriter.FILE_ENDING))
+            return matchFilePathIn.substring(0, matchFilePathIn.length() - ColumnarMatchWriter.FILE_ENDING.length()) + "_" + endingIn;
+        return matchFilePathIn.replace(".csv", "_") + endingIn;
+    }
+
+    //exports a columnar file into a .csv-file with the same bytes as the complete .csv-file it was created from
+    public static void csvFileCreator(File columnarIn, String csvPathIn) throws IOException {
+        ColumnarMatchReader reader = new ColumnarMatchReader(columnarIn);
+        PrintWriter csvWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvPathIn)), 1 << 16));
+        long rows = 0;
+        try {
+            StringBuilder sb = new StringBuilder();
+            String sep = "";
+            for (String caption : reader.header) {
+                sb.append(sep);
+                sb.append(caption);
+                sep = ",";
+            }
+            sb.append('\n');
+            while (reader.nextRow()) {
+                CSVCreator.compClusterRowAppender(sb, reader.fields);
+                rows++;
+                if (sb.length() > 1 << 16) {
+                    csvWriter.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            csvWriter.append(sb);
+        }
+        finally {
+            reader.close();
+            csvWriter.close();
+        }
+        if (csvWriter.checkError())
+            throw new IOException("Could not write the .csv-file: " + csvPathIn);
+        System.out.println(".csv File created from " + rows + " rows: " + csvPathIn);
+    }
+
+    //reads the next row; false at the end of the file
+    public boolean nextRow() throws IOException {
+        if (this.blockRowsLeft == 0 && !blockReader())
+            return false;
+        String[] rowFields = new String[this.header.length];
+        for (int column = 0; column < rowFields.length; column++) {
+            this.integerStored[column] = false;
+            switch (this.encodings[column]) {
+                case ColumnarMatchWriter.DICTIONARY:
+                    rowFields[column] = dictionaryReader(column, varintReader(column));
+                    break;
+                case ColumnarMatchWriter.FLOAT32:
+                    int bits = intReader(column);
+                    if (bits == ColumnarMatchWriter.FLOAT_IN_DICTIONARY)
+                        rowFields[column] = dictionaryReader(column, varintReader(column));
+                    else
+                        rowFields[column] = scientificFormatter(Float.intBitsToFloat(bits));
+                    break;
+                case ColumnarMatchWriter.DECIMAL:
+                case ColumnarMatchWriter.DELTA:
+                    long code = varintReader(column);
+                    if ((code & 1) == 1) {
+                        rowFields[column] = dictionaryReader(column, code >>> 1);
+                        break;
+                    }
+                    code >>>= 1;
+                    long value = (code >>> 1) ^ -(code & 1);
+                    if (this.encodings[column] == ColumnarMatchWriter.DELTA) {
+                        value += this.lastValues[column];
+                        this.lastValues[column] = value;
+                    }
+                    this.integerValues[column] = value;
+                    this.integerStored[column] = true;
+                    rowFields[column] = decimalFormatter(value, this.decimals[column]);
+                    break;
+                default:
+                    throw new IOException("Unknown encoding " + this.encodings[column] + " of column " + this.header[column] + ", file: " + this.filePath);
+            }
+        }
+        this.fields = rowFields;
+        this.blockRowsLeft--;
+        this.rowNumber++;
+        return true;
+    }
+
+    //reads and decompresses the next block; false at the end mark
+    private boolean blockReader() throws IOException {
+        if (this.finished)
+            return false;
+        int rows = this.fileIn.readInt();
+        if (rows == 0) {
+            this.finished = true;
+            this.fields = null;
+            return false;
+        }
+        int blockLength = this.fileIn.readInt();
+        int compressedLength = this.fileIn.readInt();
+        if (rows < 0 || blockLength < 0 || compressedLength < 0)
+            throw new IOException("Corrupt block in the columnar match file: " + this.filePath);
+        if (this.compressedBytes.length < compressedLength)
+            this.compressedBytes = new byte[compressedLength];
+        if (this.blockBytes.length < blockLength)
+            this.blockBytes = new byte[blockLength];
+        this.fileIn.readFully(this.compressedBytes, 0, compressedLength);
+        this.inflater.reset();
+        this.inflater.setInput(this.compressedBytes, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < blockLength && !this.inflater.finished()) {
+                int count = this.inflater.inflate(this.blockBytes, inflated, blockLength - inflated);
+                if (count == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary()))
+                    break;
+                inflated += count;
+            }
+            if (inflated != blockLength)
+                throw new IOException("Corrupt block in the columnar match file: " + this.filePath);
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupt block in the columnar match file: " + this.filePath, e);
+        }
+        //the columns follow each other, every one with its length first
+        int position = 0;
+        for (int column = 0; column < this.header.length; column++) {
+            this.columnOffsets[column] = position;
+            int length = (int) varintReader(column);
+            position = this.columnOffsets[column] + length;
+        }
+        Arrays.fill(this.lastValues, 0);
+        this.blockRowsLeft = rows;
+        return true;
+    }
+
+    //value with the number of the dictionary of the column; the number after the last value is a new value, which follows in the block
+    private String dictionaryReader(int column, long id) throws IOException {
+        ArrayList<String> dictionary = this.dictionaries.get(column);
+        if (id < dictionary.size())
+            return dictionary.get((int) id);
+        if (id != dictionary.size())
+            throw new IOException("Unknown dictionary value " + id + " of column " + this.header[column] + ", file: " + this.filePath);
+        int length = (int) varintReader(column);
+        String value = new String(this.blockBytes, this.columnOffsets[column], length, StandardCharsets.UTF_8);
+        this.columnOffsets[column] += length;
+        dictionary.add(value);
+        return value;
+    }
+
+    private long varintReader(int column) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = this.blockBytes[this.columnOffsets[column]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+            shift += 7;
+        }
+    }
+
+    private int intReader(int column) {
+        int offset = this.columnOffsets[column];
+        this.columnOffsets[column] += 4;
+        return ((this.blockBytes[offset] & 0xFF) << 24) | ((this.blockBytes[offset + 1] & 0xFF) << 16)
+                | ((this.blockBytes[offset + 2] & 0xFF) << 8) | (this.blockBytes[offset + 3] & 0xFF);
+    }
+
+    //text of an integer with the given number of decimals, as DecimalFormat("0.0000") (4 decimals) or Integer.toString (0 decimals)
+    static String decimalFormatter(long value, int decimalsIn) {
+        if (decimalsIn == 0) {
+            if (value >= 0 && value < SMALL_INTEGERS.length)
+                return SMALL_INTEGERS[(int) value];
+            return Long.toString(value);
+        }
+        StringBuilder sb = new StringBuilder(24);
+        if (value < 0)
+            sb.append('-');
+        long absolute = Math.abs(value);
+        sb.append(absolute / POWERS_OF_TEN[decimalsIn]);
+        sb.append('.');
+        String fraction = Long.toString(absolute % POWERS_OF_TEN[decimalsIn]);
+        for (int i = fraction.length(); i < decimalsIn; i++) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+        return sb.toString();
+    }
+
+    //text of a float32 with 3 significant digits, as DecimalFormat("0.00E0") formats it (e.g. 1.35E5, 2.00E-3)
+    //much faster than DecimalFormat; ColumnarMatchWriter only stores an intensity as float32 if this gives exactly its .csv text, so rounding differences can't change a value
+    static String scientificFormatter(float valueIn) {
+        double value = Math.abs((double) valueIn);
+        StringBuilder sb = new StringBuilder(12);
+        if (valueIn < 0)
+            sb.append('-');
+        if (value == 0)
+            return sb.append("0.00E0").toString();
+        int exponent = (int) Math.floor(Math.log10(value));
+        long digits = Math.round(value / Math.pow(10, exponent - 2));
+        //log10 of values close to a power of ten can be off by one
+        if (digits >= 1000) {
+            exponent++;
+            digits = Math.round(value / Math.pow(10, exponent - 2));
+        }
+        else if (digits < 100) {
+            exponent--;
+            digits = Math.round(value / Math.pow(10, exponent - 2));
+        }
+        sb.append(digits / 100).append('.');
+        if (digits % 100 < 10)
+            sb.append('0');
+        sb.append(digits % 100).append('E').append(exponent);
+        return sb.toString();
+    }
+
+    //index of the column with this caption in the header, -1 if there is none
+    public int columnIndex(String caption) {
+        Integer position = this.columnPositions.get(caption);
+        if (position == null)
+            return -1;
+        return position;
+    }
+
+    public String[] getHeader() {
+        return this.header.clone();
+    }
+
+    //number of the current row, the header not counted
+    public long getRowNumber() {
+        return this.rowNumber;
+    }
+
+    public String getString(int column) {
+        fieldChecker(column);
+        return this.fields[column];
+    }
+
+    //same result and exceptions as Integer.parseInt
+    public int getInt(int column) {
+        fieldChecker(column);
+        long value = this.integerValues[column];
+        if (this.integerStored[column] && this.decimals[column] == 0 && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+            return (int) value;
+        return Integer.parseInt(this.fields[column]);
+    }
+
+    //all the fields of the current row
+    public String[] getFields() {
+        if (this.fields == null)
+            throw new IllegalStateException("No row was read! File: " + this.filePath);
+        return this.fields.clone();
+    }
+
+    private void fieldChecker(int column) {
+        if (this.fields == null)
+            throw new IllegalStateException("No row was read! File: " + this.filePath);
+        if (column < 0 || column >= this.fields.length)
+            throw new IllegalArgumentException("Column " + column + " does not exist in row " + this.rowNumber + "! Number of columns: " + this.fields.length);
+    }
+
+    public void close() throws IOException {
+        this.fileIn.close();
+        this.inflater.end();
+    }
+}
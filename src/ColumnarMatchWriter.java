@@ -0,0 +1,319 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+
+//compressed binary file with the same columns and rows as the complete .csv-file of Section 1, read by ColumnarMatchReader
+    //file layout: header (magic number, version, caption, encoding and decimals of every column), blocks of up to ROWS_PER_BLOCK rows, end mark (block with 0 rows)
+    //block: number of rows, length before and after compression, then the values of the rows column by column (length of the column first), compressed with Deflater
+    //text columns (peptide, label name, fragment ion, sequence, sum formula, leading proteins, ...) are dictionary encoded: every distinct value is stored once, then only its number
+    //decimal columns are stored as integers with their number of decimals (m/z: 4, ppm and rel. intensity: 2), the scan number as difference to the row before
+    //the abs. intensity is stored as float32; all the other numbers are variable length integers (7 bits per byte)
+    //values which would not be read back exactly as written (e.g. NA, -0.00) are stored in the dictionary of their column, so ColumnarMatchReader returns exactly the .csv rows
+    //an interrupted file can't be resumed; not thread safe
+public class ColumnarMatchWriter implements CompClusterOutput {
+    static final int MAGIC_NUMBER = 0x43434D46;
+    static final int VERSION = 1;
+    static final String FILE_ENDING = ".ccm";
+    static final int ROWS_PER_BLOCK = 8192;
+    //encodings of the columns
+    static final byte DICTIONARY = 0;
+    static final byte DECIMAL = 1;
+    static final byte DELTA = 2;
+    static final byte FLOAT32 = 3;
+    //float32 bits of a value which is stored in the dictionary instead (a NaN, which is never stored as number)
+    static final int FLOAT_IN_DICTIONARY = 0x7FC00001;
+    //encoding and decimals of the columns of CSVCreator.compClusterHeaderBuilder
+    private static final byte[] COLUMN_ENCODINGS = {DICTIONARY, DECIMAL, DICTIONARY, DECIMAL, DICTIONARY, DICTIONARY, DICTIONARY, DICTIONARY, DECIMAL, DECIMAL,
+            DECIMAL, DECIMAL, DECIMAL, DECIMAL, FLOAT32, DELTA, DICTIONARY, DICTIONARY, DICTIONARY};
+    private static final byte[] COLUMN_DECIMALS = {0, 4, 0, 0, 0, 0, 0, 0, 0, 4, 0, 4, 2, 2, 0, 0, 0, 0, 0};
+    //larger numbers are stored in the dictionary, so the differences and the dictionary flag fit into a long
+    private static final long MAX_INTEGER = 1L << 59;
+    private static final long NO_INTEGER = Long.MIN_VALUE;
+
+    private DataOutputStream fileOut;
+    private String filePath;
+    private int columnCount;
+    //values of the current block, column by column
+    private byte[][] columnBytes;
+    private int[] columnLengths;
+    private long[] lastValues;
+    private ArrayList<HashMap<String, Integer>> dictionaries = new ArrayList<>();
+    private byte[] blockBytes = new byte[1 << 16];
+    private byte[] compressedBytes = new byte[1 << 16];
+    private Deflater deflater = new Deflater();
+    private int blockRows;
+    private long writtenRows;
+    private int writtenSpectra;
+    private boolean closed;
+    //own formats, so different writers can be used by different threads
+    private DecimalFormat twoDec = new DecimalFormat("0.00");
+    private DecimalFormat fourDec = new DecimalFormat("0.0000");
+    private DecimalFormat scientific = new DecimalFormat("0.00E0");
+
+    public ColumnarMatchWriter(String filePathIn) throws IOException {
+        String[] header = CSVCreator.compClusterHeaderBuilder().split(",");
+        this.filePath = filePathIn;
+        this.columnCount = header.length;
+        this.columnBytes = new byte[this.columnCount][1 << 12];
+        this.columnLengths = new int[this.columnCount];
+        this.lastValues = new long[this.columnCount];
+        for (int i = 0; i < this.columnCount; i++) {
+            this.dictionaries.add(new HashMap<String, Integer>());
+        }
+        this.fileOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePathIn), 1 << 16));
+        this.fileOut.writeInt(MAGIC_NUMBER);
+        this.fileOut.writeInt(VERSION);
+        this.fileOut.writeInt(this.columnCount);
+        for (int i = 0; i < this.columnCount; i++) {
+            this.fileOut.writeUTF(header[i]);
+            this.fileOut.writeByte(COLUMN_ENCODINGS[i]);
+            this.fileOut.writeByte(COLUMN_DECIMALS[i]);
+        }
+    }
+
+    //converts a complete .csv-file of Section 1 or 2 into a columnar file
+    public static void columnarFileCreator(File csvIn, String filePathIn) throws IOException {
+        DelimitedReader reader = new DelimitedReader(csvIn, ',');
+        ColumnarMatchWriter writer = null;
+        try {
+            if (!Arrays.equals(reader.getHeader(), CSVCreator.compClusterHeaderBuilder().split(",")))
+                throw new IllegalArgumentException("File is no CompClusterMatch .csv-file: " + csvIn.getAbsolutePath());
+            writer = new ColumnarMatchWriter(filePathIn);
+            while (reader.nextRow()) {
+                writer.rowWriter(reader.getFields());
+            }
+        }
+        finally {
+            reader.close();
+            if (writer != null)
+                writer.close();
+        }
+        System.out.println("Columnar file created from " + writer.getWrittenRows() + " rows: " + filePathIn);
+    }
+
+    //appends the rows of one analyzed spectrum and returns their values, as CompClusterCSVWriter does
+    public ArrayList<String[]> spectrumMatchesWriter(int scanNumberIn, ArrayList<CompClusterIonMatch> matchesIn) throws IOException {
+        ArrayList<String[]> rows = new ArrayList<>();
+        for (CompClusterIonMatch match : matchesIn) {
+            String[] values = CSVCreator.compClusterRowValues(match, this.twoDec, this.fourDec, this.scientific);
+            rowWriter(values);
+            rows.add(values);
+        }
+        this.writtenSpectra++;
+        return rows;
+    }
+
+    //appends one row, the values in the order of CSVCreator.compClusterHeaderBuilder
+    public void rowWriter(String[] valuesIn) throws IOException {
+        if (this.closed)
+            throw new IllegalStateException("Columnar file is already closed: " + this.filePath);
+        if (valuesIn.length != this.columnCount)
+            throw new IllegalArgumentException("Row needs " + this.columnCount + " values! Values: " + valuesIn.length);
+        for (int column = 0; column < this.columnCount; column++) {
+            String value = valuesIn[column];
+            switch (COLUMN_ENCODINGS[column]) {
+                case DICTIONARY:
+                    dictionaryWriter(column, value, false);
+                    break;
+                case FLOAT32:
+                    float number = floatParser(value);
+                    if (Float.isNaN(number)) {
+                        intWriter(column, FLOAT_IN_DICTIONARY);
+                        dictionaryWriter(column, value, false);
+                    }
+                    else {
+                        intWriter(column, Float.floatToIntBits(number));
+                    }
+                    break;
+                default:
+                    long integer = integerParser(value, COLUMN_DECIMALS[column]);
+                    if (integer == NO_INTEGER) {
+                        dictionaryWriter(column, value, true);
+                        break;
+                    }
+                    long stored = integer;
+                    if (COLUMN_ENCODINGS[column] == DELTA) {
+                        stored = integer - this.lastValues[column];
+                        this.lastValues[column] = integer;
+                    }
+                    //zigzag: small negative numbers get small codes; last bit 0: number
+                    varintWriter(column, ((stored << 1) ^ (stored >> 63)) << 1);
+            }
+        }
+        this.blockRows++;
+        this.writtenRows++;
+        if (this.blockRows == ROWS_PER_BLOCK)
+            blockWriter();
+    }
+
+    //number of the value in the dictionary of the column; a new value is added and written behind its number
+    //flagged (decimal columns): the number is shifted and the last bit is 1, to tell it from a number of the column
+    private void dictionaryWriter(int column, String value, boolean flagged) {
+        HashMap<String, Integer> dictionary = this.dictionaries.get(column);
+        Integer id = dictionary.get(value);
+        boolean newValue = id == null;
+        if (newValue) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+        }
+        long code = id;
+        if (flagged)
+            code = (code << 1) | 1;
+        varintWriter(column, code);
+        if (newValue) {
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            varintWriter(column, valueBytes.length);
+            for (byte b : valueBytes) {
+                byteAdder(column, b);
+            }
+        }
+    }
+
+    //value with exactly the given number of decimals as integer (e.g. 123.4567 with 4 decimals: 1234567)
+    //NO_INTEGER if ColumnarMatchReader.decimalFormatter would not return exactly the same text (NA, leading zeros, -0.00, too many digits)
+    static long integerParser(String value, int decimals) {
+        int length = value.length();
+        int position = 0;
+        boolean negative = length > 0 && value.charAt(0) == '-';
+        if (negative)
+            position++;
+        long digits = 0;
+        int integerDigits = 0;
+        int decimalDigits = -1;
+        for (int i = position; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && decimalDigits < 0) {
+                decimalDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9')
+                return NO_INTEGER;
+            digits = digits * 10 + (c - '0');
+            if (decimalDigits >= 0)
+                decimalDigits++;
+            else
+                integerDigits++;
+            if (integerDigits + Math.max(decimalDigits, 0) > 17)
+                return NO_INTEGER;
+        }
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(position) == '0'))
+            return NO_INTEGER;
+        if (decimals == 0 ? decimalDigits >= 0 : decimalDigits != decimals)
+            return NO_INTEGER;
+        if (digits >= MAX_INTEGER || (negative && digits == 0))
+            return NO_INTEGER;
+        return negative ? -digits : digits;
+    }
+
+    //value of the abs. intensity as float32; NaN if ColumnarMatchReader.scientificFormatter would not return exactly the same text
+    private static float floatParser(String value) {
+        float number;
+        try {
+            number = (float) Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+        if (Float.isInfinite(number) || Float.isNaN(number) || !ColumnarMatchReader.scientificFormatter(number).equals(value))
+            return Float.NaN;
+        return number;
+    }
+
+    private void varintWriter(int column, long value) {
+        while ((value & ~0x7FL) != 0) {
+            byteAdder(column, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        byteAdder(column, (byte) value);
+    }
+
+    private void intWriter(int column, int value) {
+        byteAdder(column, (byte) (value >>> 24));
+        byteAdder(column, (byte) (value >>> 16));
+        byteAdder(column, (byte) (value >>> 8));
+        byteAdder(column, (byte) value);
+    }
+
+    private void byteAdder(int column, byte value) {
+        if (this.columnLengths[column] == this.columnBytes[column].length)
+            this.columnBytes[column] = Arrays.copyOf(this.columnBytes[column], this.columnBytes[column].length * 2);
+        this.columnBytes[column][this.columnLengths[column]++] = value;
+    }
+
+    //compresses the columns of the current block and appends it to the file
+    //every block starts with differences to 0, the dictionaries are kept for the whole file
+    private void blockWriter() throws IOException {
+        if (this.blockRows == 0)
+            return;
+        int blockLength = 0;
+        for (int column = 0; column < this.columnCount; column++) {
+            int length = this.columnLengths[column];
+            this.blockBytes = blockBytesCapacity(this.blockBytes, blockLength + 5 + length);
+            long value = length;
+            while ((value & ~0x7FL) != 0) {
+                this.blockBytes[blockLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.blockBytes[blockLength++] = (byte) value;
+            System.arraycopy(this.columnBytes[column], 0, this.blockBytes, blockLength, length);
+            blockLength += length;
+            this.columnLengths[column] = 0;
+        }
+        this.deflater.reset();
+        this.deflater.setInput(this.blockBytes, 0, blockLength);
+        this.deflater.finish();
+        int compressedLength = 0;
+        while (!this.deflater.finished()) {
+            this.compressedBytes = blockBytesCapacity(this.compressedBytes, compressedLength + 1);
+            compressedLength += this.deflater.deflate(this.compressedBytes, compressedLength, this.compressedBytes.length - compressedLength);
+        }
+        this.fileOut.writeInt(this.blockRows);
+        this.fileOut.writeInt(blockLength);
+        this.fileOut.writeInt(compressedLength);
+        this.fileOut.write(this.compressedBytes, 0, compressedLength);
+        Arrays.fill(this.lastValues, 0);
+        this.blockRows = 0;
+    }
+
+    private static byte[] blockBytesCapacity(byte[] bytes, int capacity) {
+        if (capacity <= bytes.length)
+            return bytes;
+        return Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+    }
+
+    public long getWrittenRows() {
+        return this.writtenRows;
+    }
+
+    public int getWrittenSpectra() {
+        return this.writtenSpectra;
+    }
+
+    //the file can't be resumed
+    public CheckpointJournal getJournal() {
+        return null;
+    }
+
+    //writes the last block and the end mark
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+        try {
+            blockWriter();
+            this.fileOut.writeInt(0);
+        }
+        finally {
+            this.fileOut.close();
+            this.deflater.end();
+        }
+    }
+}
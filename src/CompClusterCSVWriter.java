@@ -0,0 +1,93 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+//writes the CompClusterMatches of a whole run into one .csv-file while the spectra are analyzed
+    //same columns and rows as the single .csv-files of CSVCreator.compClusterMatchCSVPrinter, so csvFileCombiner is not needed
+    //the rows of every spectrum are appended as soon as the spectrum is finished
+    //every spectraPerSyncIn spectra, the written rows are forced to disk (fsync), so a crash loses at most these spectra; 0: only when the file is closed
+    //after every sync, a checkpoint is written next to the file (.checkpoint); with resume = true, an interrupted run continues after the last checkpoint
+public class CompClusterCSVWriter implements CompClusterOutput {
+    private FileOutputStream fileOut;
+    private BufferedWriter csvWriter;
+    private int spectraPerSync;
+    private int spectraSinceSync;
+    private int writtenSpectra;
+    private int lastScanNumber;
+    private CheckpointJournal journal;
+    private StringBuilder sb = new StringBuilder();
+    //own formats, so different writers can be used by different threads
+    private DecimalFormat twoDec = new DecimalFormat("0.00");
+    private DecimalFormat fourDec = new DecimalFormat("0.0000");
+    private DecimalFormat scientific = new DecimalFormat("0.00E0");
+
+    public CompClusterCSVWriter(String filePathIn, int spectraPerSyncIn) throws IOException {
+        this(filePathIn, spectraPerSyncIn, false);
+    }
+
+    public CompClusterCSVWriter(String filePathIn, int spectraPerSyncIn, boolean resume) throws IOException {
+        if (spectraPerSyncIn < 0)
+            throw new IllegalArgumentException("Number of spectra per sync can't be negative! Spectra per sync: "+spectraPerSyncIn);
+        this.spectraPerSync = spectraPerSyncIn;
+        this.journal = new CheckpointJournal(new File(filePathIn + ".checkpoint"));
+        this.fileOut = this.journal.outputOpener(new File(filePathIn), resume);
+        this.csvWriter = new BufferedWriter(new OutputStreamWriter(this.fileOut), 1 << 16);
+        if (this.journal.getCheckpointStatus()) {
+            this.writtenSpectra = this.journal.getProcessedRows();
+            this.lastScanNumber = this.journal.getLastScanNumber();
+        }
+        else {
+            this.csvWriter.write(CSVCreator.compClusterHeaderBuilder());
+            this.csvWriter.write('\n');
+        }
+    }
+
+    //appends the rows of one analyzed spectrum and returns their values, so they can be analyzed further without reading the file again
+    public ArrayList<String[]> spectrumMatchesWriter(int scanNumberIn, ArrayList<CompClusterIonMatch> matchesIn) throws IOException {
+        ArrayList<String[]> rows = new ArrayList<>();
+        for (CompClusterIonMatch match : matchesIn) {
+            String[] values = CSVCreator.compClusterRowValues(match, this.twoDec, this.fourDec, this.scientific);
+            CSVCreator.compClusterRowAppender(this.sb, values);
+            rows.add(values);
+        }
+        this.csvWriter.append(this.sb);
+        this.sb.setLength(0);
+        this.writtenSpectra++;
+        this.lastScanNumber = scanNumberIn;
+        this.spectraSinceSync++;
+        if (this.spectraPerSync > 0 && this.spectraSinceSync >= this.spectraPerSync)
+            sync();
+        return rows;
+    }
+
+    //writes the buffered rows, forces them to disk and writes the checkpoint
+    public void sync() throws IOException {
+        this.csvWriter.flush();
+        this.fileOut.getFD().sync();
+        this.journal.checkpointWriter(this.writtenSpectra, this.lastScanNumber, this.fileOut.getChannel().size());
+        this.spectraSinceSync = 0;
+    }
+
+    //number of spectra in the file, including the spectra of an interrupted run
+    public int getWrittenSpectra() {
+        return this.writtenSpectra;
+    }
+
+    //checkpoint of the file; the whole run analysis skips the spectra which are already written
+    public CheckpointJournal getJournal() {
+        return this.journal;
+    }
+
+    public void close() throws IOException {
+        try {
+            sync();
+        }
+        finally {
+            this.csvWriter.close();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+//receives the CompClusterMatches of every spectrum of a whole run analysis (CSVReader.wholeRunCICChecker) as soon as the spectrum is finished
+    //implementations: CompClusterCSVWriter (.csv-file, can be resumed) and ColumnarMatchWriter (compressed binary file)
+public interface CompClusterOutput extends Closeable {
+    //writes the rows of one spectrum and returns their values, in the order of CSVCreator.compClusterHeaderBuilder
+    ArrayList<String[]> spectrumMatchesWriter(int scanNumberIn, ArrayList<CompClusterIonMatch> matchesIn) throws IOException;
+
+    //number of written spectra; for a resumed output, the spectra of the interrupted run are included
+    int getWrittenSpectra();
+
+    //checkpoint of a resumed output; null if the output can't be resumed
+    CheckpointJournal getJournal();
+}
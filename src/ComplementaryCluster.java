@@ -1,5 +1,6 @@
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Created by Michael Stadlmeier on 10/2/2017.
@@ -30,6 +31,7 @@ public class ComplementaryCluster {
     private double adjustedLightIntensity;
     private double adjustedHeavyIntensity;
     private double ratio179c180c;
+    private double isotopePatternFactor;
 
     public ComplementaryCluster (ComplementaryIon lightCompIonIn, ComplementaryIon heavyCompIonIn, String scanNumberIn){
         //set complementary Ions and scan number
@@ -37,15 +39,18 @@ public class ComplementaryCluster {
         this.heavyCompIon = heavyCompIonIn;
         this.scanNumber = Integer.parseInt(scanNumberIn);
 
+        //the isotope pattern factor is looked up once and used for the adjustment and the .csv-file
+        this.isotopePatternFactor = IsotopicDistributer.abundanceAddNeutron(this.lightCompIon.getFragIonSumFormula());
+
         //get adjusted ratios from intensityAdjuster function
-        double[] adjustedRatios = intensityAdjuster(this.lightCompIon, this.heavyCompIon);
+        double[] adjustedRatios = intensityAdjuster(this.lightCompIon, this.heavyCompIon, this.isotopePatternFactor);
         this.adjustedLightIntensity = adjustedRatios[0];
         this.adjustedHeavyIntensity = adjustedRatios[1];
 
         this.ratio179c180c = this.adjustedHeavyIntensity/this.adjustedLightIntensity;
     }
 
-    private static double[] intensityAdjuster (ComplementaryIon lightCompIonIn, ComplementaryIon heavyCompIonIn){
+    private static double[] intensityAdjuster (ComplementaryIon lightCompIonIn, ComplementaryIon heavyCompIonIn, double isotopePatternFactor){
         //adjustedRatios[0]: intensity light comp ion, SOT180c
         //adjustedRatios[1]: intensity heavy comp ion, SOT179c
         double[] adjustedRatios = new double[2];
@@ -57,9 +62,6 @@ public class ComplementaryCluster {
         double unadjustedLightIntensity = lightCompIonIn.getPeakAbsInt();
         double unadjustedHeavyIntensity = heavyCompIonIn.getPeakAbsInt();
 
-        SumFormula sumFormulaSOT180c = new SumFormula(lightCompIonIn.getFragIonSumFormula());
-        double isotopePatternFactor = IsotopicDistributer.abundanceAddNeutron(sumFormulaSOT180c);
-
         double denominator = (1-isotopicImpurityFactor*isotopePatternFactor);
 
         adjustedRatios[0] = (unadjustedLightIntensity-isotopicImpurityFactor*unadjustedHeavyIntensity)/denominator;
@@ -83,29 +85,40 @@ public class ComplementaryCluster {
                 compIonsSOT180c.add(compIon);
         }
 
-        //now, loop through one of the lists. if the fragment ion and the fragment ion charge is the same in the other list, and the scan number is the same, make a complementary cluster
-        String currentFragmentIon;
-        int currentFragmentIonCharge;
-        int currentScanNumber;
+        //the SOT179c ions are grouped by fragment ion, fragment ion charge and scan number
+        //every SOT180c ion is then joined with the SOT179c ions of its group, instead of comparing it with all of them
+        //the groups keep the order of the list, so the clusters are in the same order as with two nested loops
+        HashMap<String, ArrayList<ComplementaryIon>> compIonsSOT179cByKey = new HashMap<>();
+        for (ComplementaryIon sot179c : compIonsSOT179c){
+            String key = compIonKeyCreator(sot179c);
+            ArrayList<ComplementaryIon> sameKeyIons = compIonsSOT179cByKey.get(key);
+            if (sameKeyIons == null){
+                sameKeyIons = new ArrayList<>();
+                compIonsSOT179cByKey.put(key, sameKeyIons);
+            }
+            sameKeyIons.add(sot179c);
+        }
 
+        //now, loop through the SOT180c ions. if the fragment ion and the fragment ion charge is the same in the other list, and the scan number is the same, make a complementary cluster
         for(ComplementaryIon sot180c : compIonsSOT180c){
-            currentFragmentIon = sot180c.getFragmentIon();
             //sort out all the y1 ions, because there could be quite some interference
-            if (currentFragmentIon.equals("y1"))
+            if (sot180c.getFragmentIon().equals("y1"))
+                continue;
+            ArrayList<ComplementaryIon> sameKeyIons = compIonsSOT179cByKey.get(compIonKeyCreator(sot180c));
+            if (sameKeyIons == null)
                 continue;
-            currentFragmentIonCharge = sot180c.getFragmentIonCharge();
-            currentScanNumber = sot180c.getScanNumber();
-
-            //now, loop through all the ions of the other list
-            for(ComplementaryIon sot179c : compIonsSOT179c){
-                //only if fragment ion, fragment ion charge and scan number are the same, make complementary cluster
-                if(currentFragmentIon.equals(sot179c.getFragmentIon())&&currentFragmentIonCharge==sot179c.getFragmentIonCharge()&&currentScanNumber==sot179c.getScanNumber())
-                    matchedCompClusters.add(new ComplementaryCluster(sot180c, sot179c, Integer.toString(currentScanNumber)));
+            for(ComplementaryIon sot179c : sameKeyIons){
+                matchedCompClusters.add(new ComplementaryCluster(sot180c, sot179c, Integer.toString(sot180c.getScanNumber())));
             }
         }
         return matchedCompClusters;
     }
 
+    //fragment ion, fragment ion charge and scan number; two ions with the same key form a complementary cluster
+    private static String compIonKeyCreator(ComplementaryIon compIonIn){
+        return compIonIn.getFragmentIon() + ";" + compIonIn.getFragmentIonCharge() + ";" + compIonIn.getScanNumber();
+    }
+
 
     public static String compClusterCSVStringProducer(ArrayList<ComplementaryCluster> compClustersIn, String modPeptideIn, String precursorMassIn, String precursorChargeStateIn,
                                                         String leadingProteinsIn) {
@@ -127,8 +140,7 @@ public class ComplementaryCluster {
         StringBuilder combinedValues = new StringBuilder();
 
         for (ComplementaryCluster compCluster : compClustersIn){
-            SumFormula lightCompIonFormula = new SumFormula(compCluster.getLightCompIon().getFragIonSumFormula());
-            double isotopePatternFactor = IsotopicDistributer.abundanceAddNeutron(lightCompIonFormula);
+            double isotopePatternFactor = compCluster.getIsotopePatternFactor();
             combinedValues.append(modPeptideIn + ",");
             combinedValues.append(precursorMassIn + ",");
             combinedValues.append(precursorChargeStateIn + ",");
@@ -170,4 +182,8 @@ public class ComplementaryCluster {
     public double getRatio179c180c() {
         return this.ratio179c180c;
     }
+
+    public double getIsotopePatternFactor() {
+        return this.isotopePatternFactor;
+    }
 }
@@ -0,0 +1,255 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+
+//reads a delimited text file (evidence.txt: tab, .csv-files: comma) row by row without Scanner and String.split
+    //the characters of the current row stay in one char array, only the start and end of every field are stored
+    //fields are turned into Strings, ints or doubles only when they are asked for, so unused columns cost nothing
+    //the first row is the header; columns can be looked up by their caption
+    //same rules as Scanner.nextLine() and split: lines end with \n, \r\n or \r, no quoting; empty fields at the end of a row are kept
+    //the file is read with the default charset, as with Scanner(File)
+    //gzip files (e.g. the _complete.csv.gz of CSVCreator.csvFileCombiner) are recognized by their first two bytes and decompressed while reading
+public class DelimitedReader implements TableRowReader {
+    //powers of ten which are exact doubles, for the fast path of getDouble
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private Reader reader;
+    private char delimiter;
+    private char[] buffer = new char[1 << 16];
+    private int bufferLength;
+    private int bufferPosition;
+    private boolean skipLineFeed;
+    private char[] line = new char[1024];
+    private int lineLength;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+    private long rowNumber;
+    private String[] header;
+    private HashMap<String, Integer> columnPositions = new HashMap<>();
+
+    public DelimitedReader(File fileIn, char delimiterIn) throws IOException {
+        this.reader = new InputStreamReader(inputOpener(fileIn));
+        this.delimiter = delimiterIn;
+        if (!nextRow()) {
+            this.reader.close();
+            throw new IllegalArgumentException("File is empty, no header found: " + fileIn.getAbsolutePath());
+        }
+        //a byte order mark (e.g. of files saved with Excel) would be part of the first caption
+        if (this.lineLength > 0 && this.line[0] == '\uFEFF')
+            this.fieldStarts[0] = 1;
+        this.header = getFields();
+        //if a caption is used twice, the last column is used
+        for (int i = 0; i < this.header.length; i++) {
+            this.columnPositions.put(this.header[i], i);
+        }
+        this.rowNumber = 0;
+    }
+
+    //stream of the file, decompressed if the file starts with the gzip magic bytes 1f 8b
+    private static InputStream inputOpener(File fileIn) throws IOException {
+        InputStream fileStream = new BufferedInputStream(new FileInputStream(fileIn), 1 << 16);
+        try {
+            fileStream.mark(2);
+            int first = fileStream.read();
+            int second = fileStream.read();
+            fileStream.reset();
+            if (first == 0x1F && second == 0x8B)
+                return new GZIPInputStream(fileStream, 1 << 16);
+        }
+        catch (IOException e) {
+            fileStream.close();
+            throw e;
+        }
+        return fileStream;
+    }
+
+    //reads the next row; false at the end of the file
+    public boolean nextRow() throws IOException {
+        this.lineLength = 0;
+        boolean lineRead = false;
+        while (true) {
+            if (this.bufferPosition == this.bufferLength) {
+                this.bufferLength = this.reader.read(this.buffer);
+                this.bufferPosition = 0;
+                if (this.bufferLength <= 0) {
+                    this.bufferLength = 0;
+                    //last line without line break
+                    if (!lineRead)
+                        return false;
+                    break;
+                }
+            }
+            char c = this.buffer[this.bufferPosition++];
+            //second character of \r\n
+            if (this.skipLineFeed) {
+                this.skipLineFeed = false;
+                if (c == '\n')
+                    continue;
+            }
+            lineRead = true;
+            if (c == '\n')
+                break;
+            if (c == '\r') {
+                this.skipLineFeed = true;
+                break;
+            }
+            if (this.lineLength == this.line.length) {
+                char[] longerLine = new char[this.line.length * 2];
+                System.arraycopy(this.line, 0, longerLine, 0, this.lineLength);
+                this.line = longerLine;
+            }
+            this.line[this.lineLength++] = c;
+        }
+        this.rowNumber++;
+
+        //field boundaries
+        this.fieldCount = 0;
+        int start = 0;
+        for (int i = 0; i <= this.lineLength; i++) {
+            if (i == this.lineLength || this.line[i] == this.delimiter) {
+                if (this.fieldCount == this.fieldStarts.length) {
+                    int[] starts = new int[this.fieldStarts.length * 2];
+                    int[] ends = new int[this.fieldEnds.length * 2];
+                    System.arraycopy(this.fieldStarts, 0, starts, 0, this.fieldCount);
+                    System.arraycopy(this.fieldEnds, 0, ends, 0, this.fieldCount);
+                    this.fieldStarts = starts;
+                    this.fieldEnds = ends;
+                }
+                this.fieldStarts[this.fieldCount] = start;
+                this.fieldEnds[this.fieldCount] = i;
+                this.fieldCount++;
+                start = i + 1;
+            }
+        }
+        return true;
+    }
+
+    //index of the column with this caption in the header, -1 if there is none
+    public int columnIndex(String caption) {
+        Integer position = this.columnPositions.get(caption);
+        if (position == null)
+            return -1;
+        return position;
+    }
+
+    public String[] getHeader() {
+        return this.header.clone();
+    }
+
+    //number of the current row, the header not counted
+    public long getRowNumber() {
+        return this.rowNumber;
+    }
+
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    public String getString(int column) {
+        fieldChecker(column);
+        return new String(this.line, this.fieldStarts[column], this.fieldEnds[column] - this.fieldStarts[column]);
+    }
+
+    //all the fields of the current row
+    public String[] getFields() {
+        String[] fields = new String[this.fieldCount];
+        for (int i = 0; i < this.fieldCount; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    //compares the field with a String without creating a String from the field
+    public boolean fieldEquals(int column, String value) {
+        fieldChecker(column);
+        int start = this.fieldStarts[column];
+        int length = this.fieldEnds[column] - start;
+        if (length != value.length())
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (this.line[start + i] != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    //same result and exceptions as Integer.parseInt
+    public int getInt(int column) {
+        fieldChecker(column);
+        int start = this.fieldStarts[column];
+        int end = this.fieldEnds[column];
+        boolean negative = false;
+        if (start < end && this.line[start] == '-') {
+            negative = true;
+            start++;
+        }
+        //up to 9 digits can't overflow, everything else is handled by Integer.parseInt
+        if (start == end || end - start > 9)
+            return Integer.parseInt(getString(column));
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = this.line[i];
+            if (c < '0' || c > '9')
+                return Integer.parseInt(getString(column));
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    //same result and exceptions as Double.parseDouble
+    //plain decimal numbers with up to 15 digits are parsed directly: the digits and the power of ten are exact doubles, so one division gives the correctly rounded value
+    public double getDouble(int column) {
+        fieldChecker(column);
+        int start = this.fieldStarts[column];
+        int end = this.fieldEnds[column];
+        boolean negative = false;
+        if (start < end && this.line[start] == '-') {
+            negative = true;
+            start++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            char c = this.line[i];
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9')
+                return Double.parseDouble(getString(column));
+            digits = digits * 10 + (c - '0');
+            digitCount++;
+            if (decimals >= 0)
+                decimals++;
+        }
+        if (digitCount == 0 || digitCount > 15 || decimals >= POWERS_OF_TEN.length)
+            return Double.parseDouble(getString(column));
+        double value = digits;
+        if (decimals > 0)
+            value /= POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    private void fieldChecker(int column) {
+        if (column < 0 || column >= this.fieldCount)
+            throw new IllegalArgumentException("Column " + column + " does not exist in row " + this.rowNumber + "! Number of columns: " + this.fieldCount);
+    }
+
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+
+//table of diagnostic ions (reporter ions, immonium ions, cleaved label fragments, ...) with their ppm windows, calculated once
+    //the ions are kept sorted by mass; all the windows have the same ppm deviation, so lower and upper bounds are sorted as well
+    //diagnosticIonFinder resolves all the ions in one sweep: binary search to the first window, then peaks and windows are walked through together
+    //the table can be extended until it is used; it is not synchronized, share it between threads only after all ions are added
+public class DiagnosticIonTable {
+    private String labelName;
+    private double ppmDev;
+    private ArrayList<String> ionNames = new ArrayList<>();
+    private double[] ionMasses = new double[0];
+    private double[] lowerBounds = new double[0];
+    private double[] upperBounds = new double[0];
+
+    public DiagnosticIonTable(String labelNameIn, double ppmDevIn) {
+        if (ppmDevIn < 0)
+            throw new IllegalArgumentException("Mass deviation can't be negative! Deviation: "+ppmDevIn);
+        this.labelName = labelNameIn;
+        this.ppmDev = ppmDevIn;
+    }
+
+    //table with the reporter ions Rep0 and Rep1 of the label (TMT or EC), as searched by PeakCompare.reporterFinder
+    public static DiagnosticIonTable reporterTableCreator(String labelName, double ppmDev) {
+        if (!labelName.equals("EC")&&!labelName.equals("TMT"))
+            throw new IllegalArgumentException("Label unknown! Please use TMT or EC! Unknown Label: "+labelName);
+        DiagnosticIonTable table = new DiagnosticIonTable(labelName, ppmDev);
+        //set reporter masses
+        if (labelName.equals("TMT")){
+            table.diagnosticIonAdder("Rep0", 126.12773);
+            table.diagnosticIonAdder("Rep1", 127.13108);
+        }
+        if (labelName.equals("EC")){
+            table.diagnosticIonAdder("Rep0", 179.08487);
+            table.diagnosticIonAdder("Rep1", 180.08823);
+        }
+        return table;
+    }
+
+    //adds an ion with its m/z; ions with the same mass keep the order in which they were added
+    public void diagnosticIonAdder(String ionName, double ionMass) {
+        int position = PeakCompare.lowerBoundIndex(this.ionMasses, ionMass);
+        while (position < this.ionMasses.length && this.ionMasses[position] == ionMass)
+            position++;
+        double[] massRange = DeviationCalc.ppmRangeCalc(this.ppmDev, ionMass);
+        this.ionNames.add(position, ionName);
+        this.ionMasses = arrayInserter(this.ionMasses, position, ionMass);
+        this.lowerBounds = arrayInserter(this.lowerBounds, position, massRange[0]);
+        this.upperBounds = arrayInserter(this.upperBounds, position, massRange[1]);
+    }
+
+    //immonium ion of the amino acid (including its modification): residue - CO + H+
+    public void immoniumIonAdder(AminoAcid acidIn) {
+        double immoniumMass = acidIn.getwaterLossMass() - AtomicMasses.getCMASS() - AtomicMasses.getOMASS() + AtomicMasses.getPROTON();
+        diagnosticIonAdder("Immonium " + acidIn.get1Let(), immoniumMass);
+    }
+
+    private static double[] arrayInserter(double[] arrayIn, int position, double value) {
+        double[] arrayOut = new double[arrayIn.length + 1];
+        System.arraycopy(arrayIn, 0, arrayOut, 0, position);
+        arrayOut[position] = value;
+        System.arraycopy(arrayIn, position, arrayOut, position + 1, arrayIn.length - position);
+        return arrayOut;
+    }
+
+    //all the peaks within the window of an ion, in the order of the peaks; a peak in several windows gives one match per ion, in the order of the ion masses
+    //the name of the ion is the rep name of the ReporterMatch
+    public ArrayList<ReporterMatch> diagnosticIonFinder(MySpectrum spectrumIn) {
+        ArrayList<ReporterMatch> matches = new ArrayList<>();
+        if (this.ionMasses.length == 0)
+            return matches;
+        double[] peakMasses = spectrumIn.getMzArray();
+        int firstIon = 0;
+        for (int p = PeakCompare.lowerBoundIndex(peakMasses, this.lowerBounds[0]); p < peakMasses.length; p++) {
+            double mass = peakMasses[p];
+            //windows below the peak can't match any later peak
+            while (firstIon < this.ionMasses.length && this.upperBounds[firstIon] < mass)
+                firstIon++;
+            if (firstIon == this.ionMasses.length)
+                break;
+            for (int i = firstIon; i < this.ionMasses.length && this.lowerBounds[i] <= mass; i++) {
+                if (mass <= this.upperBounds[i])
+                    matches.add(new ReporterMatch(spectrumIn.getPeak(p), this.ionMasses[i], this.labelName, this.ionNames.get(i)));
+            }
+        }
+        return matches;
+    }
+
+    public String getLabelName() {
+        return this.labelName;
+    }
+
+    public double getPpmDev() {
+        return this.ppmDev;
+    }
+
+    public int getIonCount() {
+        return this.ionMasses.length;
+    }
+
+    public String getIonName(int index) {
+        return this.ionNames.get(index);
+    }
+
+    public double getIonMass(int index) {
+        return this.ionMasses[index];
+    }
+}
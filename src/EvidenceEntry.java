@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+
+//one row (PSM) of the MaxQuant evidence.txt with the columns needed for the whole run analysis
+public class EvidenceEntry {
+    private String sequence;
+    private String modifiedSequence;
+    private String modifications;
+    private String leadingProteins;
+    private String scanNumberString;
+    private int scanNumber;
+    private int reporterCount;
+    //"Raw file" column; empty if the evidence.txt has no such column
+    private String rawFile = "";
+
+    public EvidenceEntry(String sequenceIn, String modSequenceIn, String modificationsIn, String leadingProteinsIn, String scanNumberIn, String reporterCountIn){
+        this.sequence = sequenceIn;
+        this.modifiedSequence = modSequenceIn;
+        this.modifications = modificationsIn;
+        this.leadingProteins = leadingProteinsIn;
+        this.scanNumberString = scanNumberIn;
+        this.reporterCount = Integer.parseInt(reporterCountIn);
+        //rows without reporter ions (e.g. matched between runs) can have an empty scan number
+        try {
+            this.scanNumber = Integer.parseInt(scanNumberIn);
+        } catch (NumberFormatException e) {
+            this.scanNumber = -1;
+        }
+    }
+
+    //row of an evidence.txt with several raw files
+    public EvidenceEntry(String sequenceIn, String modSequenceIn, String modificationsIn, String leadingProteinsIn, String scanNumberIn, String reporterCountIn,
+                         String rawFileIn){
+        this(sequenceIn, modSequenceIn, modificationsIn, leadingProteinsIn, scanNumberIn, reporterCountIn);
+        this.rawFile = rawFileIn;
+    }
+
+    //creates the list of modifications for the label checkers
+    //static carbamidomethylation on cysteine residues and variable methionine-oxidation from the modified sequence
+    public ArrayList<Modification> getModificationList(){
+        ArrayList<Modification> mods = new ArrayList<>();
+        if (this.modifications.equals("Unmodified")) {
+            if (this.sequence.contains("C")) {
+                mods.add(Modification.carbamidomethylation());
+            }
+            return mods;
+        }
+
+        String modSequence = this.modifiedSequence.replace("_", "");
+        while (modSequence.contains("(")) {
+            int methPointer = 0;
+            for (int a = 0; a < modSequence.length(); a++) {
+                char current = modSequence.charAt(a);
+                if (current == '(') {
+                    //Methionine is at position a, because modifications start counting at 1
+                    methPointer = a;
+                    break;
+                }
+            }
+            if (methPointer != 0)
+                mods.add(Modification.oxidation(methPointer));
+
+            //remove occurence of brackets handled
+            if (methPointer + 5 >= modSequence.length())
+                break;
+            String firstPart = modSequence.substring(0, methPointer - 1);
+            String secondPart = modSequence.substring(methPointer + 5, modSequence.length());
+            modSequence = firstPart + secondPart;
+        }
+
+        if (this.sequence.contains("C")) {
+            mods.add(Modification.carbamidomethylation());
+        }
+        return mods;
+    }
+
+    public String getSequence() {return this.sequence;}
+    public String getModifiedSequence() {return this.modifiedSequence;}
+    public String getModifications() {return this.modifications;}
+    public String getLeadingProteins() {return this.leadingProteins;}
+    public String getScanNumberString() {return this.scanNumberString;}
+    public int getScanNumber() {return this.scanNumber;}
+    public int getReporterCount() {return this.reporterCount;}
+    public String getRawFile() {return this.rawFile;}
+}
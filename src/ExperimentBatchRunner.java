@@ -0,0 +1,183 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLParsingException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+//Sections 1 to 5 (see WholeRunPipeline) for all the raw files of an experiment with one MaxQuant evidence.txt
+    //the evidence rows are divided by their "Raw file" column; the spectra of raw file X are read from X.mzXML in the mzXML directory
+    //up to maxOpenFiles raw files are analyzed at the same time, every one with threadsPerFile worker threads
+    //an MzXMLFile is only opened when the analysis of its raw file starts and released afterwards, so at most maxOpenFiles mzXML indices are in memory
+    //every raw file gets its own files in the output directory (X.csv, X_statistics.csv, X_reporterIons.csv, X_complementaryClusters_5rel.csv)
+    //afterwards, the files of all the raw files are merged into experimentName_complete.csv, _statistics.csv, _reporterIons.csv and _complementaryClusters_5rel.csv,
+    //in the order of the raw files in the evidence.txt; the merged files have the additional last column "Raw File"
+public class ExperimentBatchRunner {
+    //endings of the files of one raw file, as created by WholeRunPipeline, and of the merged files
+    private static final String[] RUN_FILE_ENDINGS = {".csv", "_statistics.csv", "_reporterIons.csv", "_complementaryClusters_5rel.csv"};
+    private static final String[] MERGED_FILE_ENDINGS = {"_complete.csv", "_statistics.csv", "_reporterIons.csv", "_complementaryClusters_5rel.csv"};
+
+    public static void experimentRunner(File evidence, File mzXMLDirectory, String outputDirectory, String experimentName, ArrayList<AminoAcid> aminoAcids,
+                                        double accuracy, String labelIn, double reporterPpmDev, boolean streamSpectra, int maxOpenFiles, int threadsPerFile)
+            throws IOException, JMzReaderException, MzXMLParsingException {
+        if (maxOpenFiles < 1 || threadsPerFile < 1)
+            throw new IllegalArgumentException("At least 1 open file and 1 thread per file are needed! Open files: "+maxOpenFiles+", threads per file: "+threadsPerFile);
+        LinkedHashMap<String, ArrayList<EvidenceEntry>> rawFileEntries = rawFilePartitioner(CSVReader.evidenceParse(evidence));
+        //all the mzXML-files are checked before the first one is analyzed
+        ArrayList<String> rawFiles = new ArrayList<>(rawFileEntries.keySet());
+        for (String rawFile : rawFiles) {
+            File mzXML = mzXMLFileFinder(mzXMLDirectory, rawFile);
+            if (!mzXML.isFile())
+                throw new IllegalArgumentException("No .mzXML-file for raw file " + rawFile + ": " + mzXML.getAbsolutePath());
+        }
+        AnalysisLog.info("Raw files in the evidence.txt: " + rawFiles.size());
+
+        ExecutorService fileWorkers = null;
+        if (maxOpenFiles > 1 && rawFiles.size() > 1)
+            fileWorkers = Executors.newFixedThreadPool(Math.min(maxOpenFiles, rawFiles.size()));
+        ArrayList<Future<String>> fileTasks = new ArrayList<>();
+        //the raw files are counted as one run, so the metrics are not reset between them
+        RunMetrics.getRunMetrics().runStarter(0, 0);
+        try {
+            for (String rawFile : rawFiles) {
+                fileTasks.add(rawFileTask(fileWorkers, rawFile, rawFileEntries.get(rawFile), mzXMLFileFinder(mzXMLDirectory, rawFile),
+                        runFilePath(outputDirectory, rawFile), aminoAcids, accuracy, labelIn, reporterPpmDev, streamSpectra, threadsPerFile));
+            }
+            for (Future<String> fileTask : fileTasks) {
+                AnalysisLog.info("Raw file analyzed: " + rawFileResult(fileTask));
+            }
+        }
+        finally {
+            if (fileWorkers != null)
+                fileWorkers.shutdownNow();
+            RunMetrics.getRunMetrics().runFinisher();
+        }
+
+        for (int i = 0; i < RUN_FILE_ENDINGS.length; i++) {
+            String mergedPath = new File(outputDirectory, experimentName + MERGED_FILE_ENDINGS[i]).getPath();
+            runFilesMerger(outputDirectory, rawFiles, RUN_FILE_ENDINGS[i], mergedPath);
+        }
+        AnalysisLog.info("Experiment complete! Raw files analyzed: " + rawFiles.size());
+    }
+
+    //evidence rows per raw file, in the order of the first row of every raw file; the rows of a raw file keep their order
+    static LinkedHashMap<String, ArrayList<EvidenceEntry>> rawFilePartitioner(ArrayList<EvidenceEntry> entriesIn) {
+        LinkedHashMap<String, ArrayList<EvidenceEntry>> rawFileEntries = new LinkedHashMap<>();
+        for (EvidenceEntry entry : entriesIn) {
+            if (entry.getRawFile().isEmpty())
+                throw new IllegalArgumentException("Evidence row without raw file! The evidence.txt needs the column \"Raw file\". Sequence: " + entry.getSequence());
+            ArrayList<EvidenceEntry> entries = rawFileEntries.get(entry.getRawFile());
+            if (entries == null) {
+                entries = new ArrayList<>();
+                rawFileEntries.put(entry.getRawFile(), entries);
+            }
+            entries.add(entry);
+        }
+        return rawFileEntries;
+    }
+
+    private static File mzXMLFileFinder(File mzXMLDirectory, String rawFile) {
+        return new File(mzXMLDirectory, rawFile + ".mzXML");
+    }
+
+    //path of the complete .csv-file of the raw file; the other files of the raw file are created next to it
+    private static String runFilePath(String outputDirectory, String rawFile) {
+        return new File(outputDirectory, rawFile + ".csv").getPath();
+    }
+
+    //creates the task which analyzes one raw file and returns its name; without workers, the task is run directly
+    private static Future<String> rawFileTask(ExecutorService fileWorkers, final String rawFile, final ArrayList<EvidenceEntry> entries, final File mzXML,
+                                              final String completeCSVPath, final ArrayList<AminoAcid> aminoAcids, final double accuracy, final String labelIn,
+                                              final double reporterPpmDev, final boolean streamSpectra, final int threadsPerFile) {
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() throws IOException, JMzReaderException, MzXMLParsingException {
+                //the index of the mzXML-file is only referenced by this task
+                MzXMLFile run = new MzXMLFile(mzXML);
+                WholeRunPipeline.pipelineRunner(CSVReader.mzXMLSpectrumSourceCreator(run, streamSpectra), streamSpectra, entries, aminoAcids, accuracy,
+                        completeCSVPath, labelIn, reporterPpmDev, threadsPerFile);
+                return rawFile;
+            }
+        };
+        if (fileWorkers == null) {
+            FutureTask<String> directTask = new FutureTask<>(task);
+            directTask.run();
+            return directTask;
+        }
+        return fileWorkers.submit(task);
+    }
+
+    //waits for the raw file and passes on exceptions thrown by its analysis
+    private static String rawFileResult(Future<String> fileTask) throws IOException, JMzReaderException, MzXMLParsingException {
+        try {
+            return fileTask.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the raw file analysis!", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof JMzReaderException)
+                throw (JMzReaderException) cause;
+            if (cause instanceof MzXMLParsingException)
+                throw (MzXMLParsingException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Raw file analysis failed!", cause);
+        }
+    }
+
+    //appends the files with the ending of all the raw files into one file; the header is written once and every line gets the raw file as last column
+    private static void runFilesMerger(String outputDirectory, ArrayList<String> rawFiles, String fileEnding, String mergedPath) throws IOException {
+        PrintWriter mergedWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mergedPath)), 1 << 16));
+        try {
+            boolean headerWritten = false;
+            for (String rawFile : rawFiles) {
+                File runFile = new File(outputDirectory, rawFile + fileEnding);
+                BufferedReader runReader = new BufferedReader(new InputStreamReader(new FileInputStream(runFile)), 1 << 16);
+                try {
+                    String header = runReader.readLine();
+                    if (header == null)
+                        continue;
+                    if (!headerWritten) {
+                        mergedWriter.write(header + ",Raw File\n");
+                        headerWritten = true;
+                    }
+                    String line;
+                    while ((line = runReader.readLine()) != null) {
+                        mergedWriter.write(line + "," + rawFile + "\n");
+                    }
+                }
+                finally {
+                    runReader.close();
+                }
+            }
+        }
+        finally {
+            mergedWriter.close();
+        }
+        if (mergedWriter.checkError())
+            throw new IOException("Could not write the merged .csv-file: " + mergedPath);
+        AnalysisLog.info(".csv File created from " + rawFiles.size() + " raw files: " + mergedPath);
+    }
+}
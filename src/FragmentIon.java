@@ -11,9 +11,11 @@ public class FragmentIon extends Ion {
     private String precursorSequence;
     private char ionSeries;
     private int ionNumber;
-    private boolean isModified;
+    //amino acids of the whole precursor peptide, the composition of the fragment ion is only created if it is needed
+    private ArrayList<AminoAcid> precursorAminoAcids;
     //implement new variables for modifications
     private ArrayList<AminoAcid> aminoAcidsList;
+    private SumFormula formula;
 
 
 
@@ -21,13 +23,15 @@ public class FragmentIon extends Ion {
     private static DecimalFormat fiveDec = new DecimalFormat("0.00000");
 
 
-    public FragmentIon(SumFormula sumFormulaIn, int chargeIn, Peptide peptideIn, char ionSeriesIn, int ionNumberIn, boolean modificationStatus, ArrayList<AminoAcid> aaCompositionIn){
-        super(sumFormulaIn, chargeIn);
+    //exactMassIn is the mass of the fragment ion including the protons, as calculated by the fragment ladder of the peptide
+    public FragmentIon(Peptide peptideIn, char ionSeriesIn, int ionNumberIn, int chargeIn, double exactMassIn){
+        super(exactMassIn, chargeIn);
+        if (chargeIn == 0)
+            throw new IllegalArgumentException("Charge state of Fragment Ions can't be 0!");
         this.precursorSequence = peptideIn.getSequence();
         this.ionSeries = ionSeriesIn;
         this.ionNumber = ionNumberIn;
-        this.isModified = modificationStatus;
-        this.aminoAcidsList = aaCompositionIn;
+        this.precursorAminoAcids = peptideIn.getAminoAcidsList();
     }
 
 
@@ -36,14 +40,52 @@ public class FragmentIon extends Ion {
     public char getIonSeries(){return this.ionSeries;}
     public int getIonNumber(){return this.ionNumber;}
     public String getCompleteIon(){return ""+this.ionSeries+this.ionNumber;}
-    public boolean getModificationStatus(){return this.isModified;}
-    public ArrayList<AminoAcid> getAminoAcidsList(){return this.aminoAcidsList;}
+
+    //a fragment ion is modified if one of its amino acids is modified
+    public boolean getModificationStatus(){
+        for (AminoAcid aa : this.getAminoAcidsList()){
+            if (aa.getModificationStatus())
+                return true;
+        }
+        return false;
+    }
+
+    //amino acids of the fragment ion: b-ions from the N-terminus, y-ions from the C-terminus on (reversed sequence)
+    public ArrayList<AminoAcid> getAminoAcidsList(){
+        if (this.aminoAcidsList == null) {
+            ArrayList<AminoAcid> composition = new ArrayList<>(this.ionNumber);
+            int precursorLength = this.precursorAminoAcids.size();
+            for (int i = 0; i < this.ionNumber; i++) {
+                if (this.ionSeries == 'y')
+                    composition.add(this.precursorAminoAcids.get(precursorLength - 1 - i));
+                else
+                    composition.add(this.precursorAminoAcids.get(i));
+            }
+            this.aminoAcidsList = composition;
+        }
+        return this.aminoAcidsList;
+    }
+
+    //sum formula of the fragment ion: protons, the waterloss formulas of the amino acids and water for y-ions
+    @Override
+    public SumFormula getFormula(){
+        if (this.formula == null) {
+            SumFormula runningFormula = new SumFormula("H+" + this.getCharge());
+            if (this.ionSeries == 'y')
+                runningFormula = SumFormula.sumFormulaJoiner(runningFormula, SumFormula.getWaterFormula());
+            for (AminoAcid aa : this.getAminoAcidsList()) {
+                runningFormula = SumFormula.sumFormulaJoiner(runningFormula, aa.getWaterLossFormula());
+            }
+            this.formula = runningFormula;
+        }
+        return this.formula;
+    }
 
     //getter for fragment ion label properties
     //does the fragment ion has a label at all?
     public boolean getLabelStatus(){
         boolean hasLabel = false;
-        for (AminoAcid aa : this.aminoAcidsList){
+        for (AminoAcid aa : this.getAminoAcidsList()){
             if(aa.getModification()!=null) {
                 if (aa.getModification().getLabelStatus())
                     hasLabel = true;
@@ -54,7 +96,7 @@ public class FragmentIon extends Ion {
     //how many labels are there in the fragment ion
     public int getLabelQuantity(){
         int labelQuantity = 0;
-        for (AminoAcid aa : this.aminoAcidsList) {
+        for (AminoAcid aa : this.getAminoAcidsList()) {
             if (aa.getModification() != null) {
                 if (aa.getModification().getLabelStatus())
                     labelQuantity++;
@@ -65,7 +107,7 @@ public class FragmentIon extends Ion {
     //returns the labeled amino acids
      public ArrayList<AminoAcid> getLabelAAs(){
         ArrayList<AminoAcid> labeledAAs = new ArrayList<>();
-         for (AminoAcid aa : this.aminoAcidsList) {
+         for (AminoAcid aa : this.getAminoAcidsList()) {
              if (aa.getModification() != null) {
                  if (aa.getModification().getLabelStatus())
                      labeledAAs.add(aa);
@@ -79,7 +121,7 @@ public class FragmentIon extends Ion {
     public String getAASequence(){
 
         String sequence = "";
-        for (AminoAcid acid : this.aminoAcidsList){
+        for (AminoAcid acid : this.getAminoAcidsList()){
             sequence += acid.get1Let();
         }
         if (this.getIonSeries() == 'y')
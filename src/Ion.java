@@ -38,6 +38,7 @@ public class Ion {
         }
         else {
             this.chargeStateKnown = true;
+            this.massToCharge = this.exactMass/this.charge;
         }
     }
     //sumformula known
@@ -0,0 +1,64 @@
+//aggregated isotope distribution: abundance per number of additional neutrons, relative to the monoisotopic composition
+    //firstOffset is the number of neutrons of the first entry; it is negative if lighter isotopes than the monoisotopic ones are possible (impure 13C label carbons)
+    //abundances are fractions of all molecules, so the envelope of a single atom adds up to 1; pruned entries are missing and not redistributed
+public class IsotopeEnvelope {
+    private int firstOffset;
+    private double[] abundances;
+
+    public IsotopeEnvelope(int firstOffsetIn, double[] abundancesIn) {
+        this.firstOffset = firstOffsetIn;
+        this.abundances = abundancesIn;
+    }
+
+    //abundance of the molecules with the given number of additional neutrons; 0 if this number is not part of the envelope
+    public double getAbundance(int neutrons) {
+        int index = neutrons - this.firstOffset;
+        if (index < 0 || index >= this.abundances.length)
+            return 0;
+        return this.abundances[index];
+    }
+
+    public int getFirstOffset() {
+        return this.firstOffset;
+    }
+
+    public int getLastOffset() {
+        return this.firstOffset + this.abundances.length - 1;
+    }
+
+    //envelope of the combination of two compositions: every pair of entries adds its neutrons and multiplies its abundances
+    //entries above maxOffset are not calculated; afterwards, entries at both ends below pruningThreshold times the highest abundance are removed
+    //maxOffset is only exact if no entries with negative offsets are combined with the result later
+    public static IsotopeEnvelope envelopeConvolver(IsotopeEnvelope envelopeA, IsotopeEnvelope envelopeB, int maxOffset, double pruningThreshold) {
+        int firstOffset = envelopeA.firstOffset + envelopeB.firstOffset;
+        int length = Math.min(envelopeA.abundances.length + envelopeB.abundances.length - 1, maxOffset - firstOffset + 1);
+        if (length < 1)
+            return new IsotopeEnvelope(0, new double[0]);
+        double[] combined = new double[length];
+        for (int a = 0; a < envelopeA.abundances.length && a < length; a++) {
+            double abundanceA = envelopeA.abundances[a];
+            int maxB = Math.min(envelopeB.abundances.length, length - a);
+            for (int b = 0; b < maxB; b++) {
+                combined[a + b] += abundanceA * envelopeB.abundances[b];
+            }
+        }
+
+        //pruning
+        double maxAbundance = 0;
+        for (double abundance : combined) {
+            maxAbundance = Math.max(maxAbundance, abundance);
+        }
+        double minAbundance = maxAbundance * pruningThreshold;
+        int start = 0;
+        int end = combined.length;
+        while (start < end && combined[start] < minAbundance)
+            start++;
+        while (end > start && combined[end - 1] < minAbundance)
+            end--;
+        if (start == 0 && end == combined.length)
+            return new IsotopeEnvelope(firstOffset, combined);
+        double[] pruned = new double[end - start];
+        System.arraycopy(combined, start, pruned, 0, end - start);
+        return new IsotopeEnvelope(firstOffset + start, pruned);
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//bounded cache of isotope pattern factors (IsotopicDistributer.abundanceAddNeutron), keyed by the sum formula String
+    //a hit saves parsing the String into a SumFormula; the factor itself is cheap to calculate
+    //lookups take no lock, so the worker threads of the parallel ratio calculation don't wait for each other
+    //there is no least recently used order to maintain: if the cache is full, it is emptied and filled again with the factors used from then on
+    //hits and misses are counted, so the benefit can be checked after a run
+    //can be used by several threads
+public class IsotopeFactorCache {
+    private int maxEntries;
+    private ConcurrentHashMap<String, Double> factors = new ConcurrentHashMap<>();
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    public IsotopeFactorCache(int maxEntriesIn) {
+        if (maxEntriesIn < 1)
+            throw new IllegalArgumentException("Cache needs at least one entry! Max. entries: "+maxEntriesIn);
+        this.maxEntries = maxEntriesIn;
+    }
+
+    public double factorGetter(String sumFormulaIn) {
+        Double factor = this.factors.get(sumFormulaIn);
+        if (factor != null) {
+            this.hits.increment();
+            return factor;
+        }
+        this.misses.increment();
+        //if two threads miss the same formula, both store the same value
+        double calculatedFactor = IsotopicDistributer.abundanceAddNeutron(new SumFormula(sumFormulaIn));
+        if (this.factors.size() >= this.maxEntries)
+            this.factors.clear();
+        this.factors.put(sumFormulaIn, calculatedFactor);
+        return calculatedFactor;
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public int getSize() {
+        return this.factors.size();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    //removes all factors and resets the counters
+    public void clear() {
+        this.factors.clear();
+        this.hits.reset();
+        this.misses.reset();
+    }
+}
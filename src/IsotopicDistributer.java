@@ -13,6 +13,13 @@ public class IsotopicDistributer {
     private static final Double S32 = 0.9504074;
     private static final Double S33 = 0.0074869;
 
+    //factors of the sum formulas used in the ratio calculation, keyed by the sum formula String (the elemental composition in the order of SumFormula)
+    private static final IsotopeFactorCache FACTOR_CACHE = new IsotopeFactorCache(8192);
+
+    //relative abundance of the M+1 peak (one additional neutron) compared to the monoisotopic peak
+    //every term of the binomial expansion is (quantity * heavy * light^(quantity-1) * other elements^quantity); divided by the monoisotopic term (all elements^quantity),
+    //in log space only log(quantity) + log(heavy) - log(light) stays of every term, so the abundance is the sum of quantity * heavy / light
+    //no powers are needed and large fragments can't underflow
     public static double abundanceAddNeutron (SumFormula sumFormulaIn){
         double abundance = 0;
         //get elemental quantities
@@ -22,22 +29,18 @@ public class IsotopicDistributer {
         int quantO = sumFormulaIn.getONumber();
         int quantS = sumFormulaIn.getSNumber();
 
-        double normalizationFactor = Math.pow(C12, quantC) * Math.pow(H1, quantH) * Math.pow(N14, quantN) * Math.pow(O16, quantO) * Math.pow(S32, quantS);
-        double cTerm = quantC * C13 * Math.pow(C12, quantC - 1) * Math.pow(H1, quantH) * Math.pow(N14, quantN) * Math.pow(S32, quantS) * Math.pow(O16, quantO);
-        double hTerm = quantH * H2 * Math.pow(H1, quantH - 1) * Math.pow(C12, quantC) * Math.pow(N14, quantN) * Math.pow(S32, quantS) * Math.pow(O16, quantO);
-        double nTerm = quantN * N15 * Math.pow(N14, quantN - 1) * Math.pow(H1, quantH) * Math.pow(C12, quantC) * Math.pow(S32, quantS) * Math.pow(O16, quantO);
-        double oTerm = quantO * O17 * Math.pow(O16, quantO - 1) * Math.pow(H1, quantH) * Math.pow(N14, quantN) * Math.pow(C12, quantC) * Math.pow(S32, quantS);
-        double sTerm = quantS * S33 * Math.pow(S32, quantS - 1) * Math.pow(C12, quantC) * Math.pow(N14, quantN) * Math.pow(H1, quantH) * Math.pow(O16, quantO);
-
-        double combinedTerms = cTerm + hTerm + nTerm + oTerm + sTerm;
+        abundance = quantC * (C13 / C12) + quantH * (H2 / H1) + quantN * (N15 / N14) + quantO * (O17 / O16) + quantS * (S33 / S32);
 
+        return abundance;
+    }
 
-        if (normalizationFactor == 0){
-            throw new IllegalArgumentException("Normalization factor is 0!");
-        }
-
-        abundance = combinedTerms / normalizationFactor;
+    //same factor for a sum formula String; the same fragments occur in many scans, so the factor is looked up in FACTOR_CACHE first
+    //on a hit, neither the String is parsed nor the factor calculated
+    public static double abundanceAddNeutron (String sumFormulaIn){
+        return FACTOR_CACHE.factorGetter(sumFormulaIn);
+    }
 
-        return abundance;
+    public static IsotopeFactorCache getFactorCache() {
+        return FACTOR_CACHE;
     }
 }
@@ -0,0 +1,131 @@
+//calculates the aggregated isotope distribution (M+0, M+1, ... M+n) of any sum formula, including the label carbon Cx
+    //the envelope of n atoms of one element is the n-fold convolution of the isotope abundances of the element
+    //the envelopes of 1, 2, 4, 8, ... atoms are calculated once per element (repeated squaring); any number of atoms is then the convolution of the envelopes of its binary digits
+    //all the SumFormulas share these envelopes, so one envelope needs only a few short convolutions and can be calculated for every fragment ion of a run
+    //natural abundances as in IsotopicDistributer, so M+1/M+0 is the same as IsotopicDistributer.abundanceAddNeutron for formulas without Cx
+    //Cx is 13C with the given enrichment; the rest is 12C and appears one neutron below the monoisotopic peak (M-1)
+    //the calculator is immutable after construction and can be used by several threads
+public class IsotopicEnvelopeCalculator {
+    //isotope abundances per element, the index is the number of additional neutrons compared to the lightest isotope
+    private static final double[] C_ABUNDANCES = {0.988922, 0.011078};
+    private static final double[] H_ABUNDANCES = {0.99984427, 0.00015575};
+    private static final double[] N_ABUNDANCES = {0.996337, 0.003663};
+    //16O, 17O, 18O
+    private static final double[] O_ABUNDANCES = {0.9976206, 0.000379, 0.0020004};
+    //32S, 33S, 34S, -, 36S
+    private static final double[] S_ABUNDANCES = {0.9504074, 0.0074869, 0.0419599, 0, 0.0001458};
+    //isotopic impurity of the SOT179 reagent (see ComplementaryCluster): 0.42% of the label carbons are 12C
+    public static final double DEFAULT_CX_ENRICHMENT = 1 - 0.0042;
+    //entries below this fraction of the highest abundance are removed after every convolution
+    public static final double DEFAULT_PRUNING_THRESHOLD = 1e-9;
+    //envelopes can be calculated up to M+(MAX_PEAKS-1)
+    public static final int MAX_PEAKS = 32;
+    //the cached envelopes are calculated up to this number of additional neutrons
+    private static final int CACHED_NEUTRONS = 96;
+    //envelopes of 2^0 to 2^(POWER_LEVELS-1) atoms are cached, so up to 2^POWER_LEVELS - 1 atoms per element are possible
+    private static final int POWER_LEVELS = 16;
+    //order of the elements in the cached envelopes
+    private static final int[] ELEMENTS = {SumFormula.C, SumFormula.H, SumFormula.N, SumFormula.O, SumFormula.S};
+    private static final IsotopicEnvelopeCalculator DEFAULT_CALCULATOR = new IsotopicEnvelopeCalculator(DEFAULT_CX_ENRICHMENT, DEFAULT_PRUNING_THRESHOLD);
+
+    private double cxEnrichment;
+    private double pruningThreshold;
+    private IsotopeEnvelope[][] elementPowers;
+    private IsotopeEnvelope[] cxPowers;
+
+    public IsotopicEnvelopeCalculator(double cxEnrichmentIn, double pruningThresholdIn) {
+        if (cxEnrichmentIn <= 0 || cxEnrichmentIn > 1)
+            throw new IllegalArgumentException("Cx enrichment has to be between 0 and 1! Enrichment: "+cxEnrichmentIn);
+        if (pruningThresholdIn < 0 || pruningThresholdIn >= 1)
+            throw new IllegalArgumentException("Pruning threshold has to be at least 0 and below 1! Threshold: "+pruningThresholdIn);
+        this.cxEnrichment = cxEnrichmentIn;
+        this.pruningThreshold = pruningThresholdIn;
+
+        double[][] elementAbundances = {C_ABUNDANCES, H_ABUNDANCES, N_ABUNDANCES, O_ABUNDANCES, S_ABUNDANCES};
+        this.elementPowers = new IsotopeEnvelope[ELEMENTS.length][];
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            this.elementPowers[i] = powersCreator(new IsotopeEnvelope(0, elementAbundances[i]), CACHED_NEUTRONS);
+        }
+        //Cx only has entries at or below 0 neutrons
+        this.cxPowers = powersCreator(new IsotopeEnvelope(-1, new double[]{1 - cxEnrichmentIn, cxEnrichmentIn}), 0);
+    }
+
+    //calculator with DEFAULT_CX_ENRICHMENT and DEFAULT_PRUNING_THRESHOLD
+    public static IsotopicEnvelopeCalculator getDefaultCalculator() {
+        return DEFAULT_CALCULATOR;
+    }
+
+    //envelopes of 1, 2, 4, ... atoms
+    private IsotopeEnvelope[] powersCreator(IsotopeEnvelope singleAtom, int maxOffset) {
+        IsotopeEnvelope[] powers = new IsotopeEnvelope[POWER_LEVELS];
+        powers[0] = singleAtom;
+        for (int level = 1; level < POWER_LEVELS; level++) {
+            powers[level] = IsotopeEnvelope.envelopeConvolver(powers[level - 1], powers[level - 1], maxOffset, this.pruningThreshold);
+        }
+        return powers;
+    }
+
+    //envelope of the given number of atoms, combined from the cached envelopes of its binary digits
+    private IsotopeEnvelope atomsEnvelope(IsotopeEnvelope[] powers, int atoms, int maxOffset) {
+        if (atoms >= 1 << POWER_LEVELS)
+            throw new IllegalArgumentException("Too many atoms of one element for the isotope envelope! Atoms: "+atoms);
+        IsotopeEnvelope envelope = new IsotopeEnvelope(0, new double[]{1});
+        for (int level = 0; atoms >> level != 0; level++) {
+            if ((atoms >> level & 1) == 1)
+                envelope = IsotopeEnvelope.envelopeConvolver(envelope, powers[level], maxOffset, this.pruningThreshold);
+        }
+        return envelope;
+    }
+
+    //complete envelope of the sum formula up to M+(peaksIn-1)
+    //protons (H+) are counted as hydrogen, as in IsotopicDistributer; fluorine has only one isotope
+    public IsotopeEnvelope envelopeCreator(SumFormula formulaIn, int peaksIn) {
+        if (peaksIn < 1 || peaksIn > MAX_PEAKS)
+            throw new IllegalArgumentException("Number of peaks has to be between 1 and "+MAX_PEAKS+"! Peaks: "+peaksIn);
+        int[] atoms = {formulaIn.getCNumber(), formulaIn.getHNumber(), formulaIn.getNNumber(), formulaIn.getONumber(), formulaIn.getSNumber()};
+
+        //the label carbons first: their lighter isotopes move entries of the other elements down,
+        //so those have to be calculated up to correspondingly more neutrons
+        IsotopeEnvelope cxEnvelope = atomsEnvelope(this.cxPowers, formulaIn.getElementCount(SumFormula.CX), 0);
+        int maxOffset = peaksIn - 1 - cxEnvelope.getFirstOffset();
+        if (maxOffset > CACHED_NEUTRONS)
+            throw new IllegalArgumentException("Too many label carbons for an exact isotope envelope! Cx atoms: "+formulaIn.getElementCount(SumFormula.CX));
+
+        IsotopeEnvelope envelope = new IsotopeEnvelope(0, new double[]{1});
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            if (atoms[i] > 0)
+                envelope = IsotopeEnvelope.envelopeConvolver(envelope, atomsEnvelope(this.elementPowers[i], atoms[i], maxOffset), maxOffset, this.pruningThreshold);
+        }
+        return IsotopeEnvelope.envelopeConvolver(envelope, cxEnvelope, peaksIn - 1, this.pruningThreshold);
+    }
+
+    //abundances of M+0 to M+(peaksIn-1), as fractions of all molecules
+    public double[] envelopeCalculator(SumFormula formulaIn, int peaksIn) {
+        IsotopeEnvelope envelope = envelopeCreator(formulaIn, peaksIn);
+        double[] abundances = new double[peaksIn];
+        for (int i = 0; i < peaksIn; i++) {
+            abundances[i] = envelope.getAbundance(i);
+        }
+        return abundances;
+    }
+
+    //abundances of M+0 to M+(peaksIn-1), relative to M+0 (M+1 is then the isotope pattern factor of IsotopicDistributer)
+    public double[] relativeEnvelopeCalculator(SumFormula formulaIn, int peaksIn) {
+        double[] abundances = envelopeCalculator(formulaIn, peaksIn);
+        double monoisotopic = abundances[0];
+        if (monoisotopic == 0)
+            throw new IllegalArgumentException("Monoisotopic abundance is 0! Sum formula: "+formulaIn.getSumFormula());
+        for (int i = 0; i < abundances.length; i++) {
+            abundances[i] /= monoisotopic;
+        }
+        return abundances;
+    }
+
+    public double getCxEnrichment() {
+        return this.cxEnrichment;
+    }
+
+    public double getPruningThreshold() {
+        return this.pruningThreshold;
+    }
+}
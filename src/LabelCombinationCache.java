@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//bounded cache of LabelCombinationModels (label combinations and fragment ladders), keyed by sequence, label and the other modifications
+    //the same modified peptide is identified in many scans (other charge states, fractions, repeated identifications), but its model is only created once
+    //the fragment charge states are not part of the key: the ladders are uncharged, the m/z values of the charges of a spectrum are calculated while matching
+    //a model is only used for the amino acid list it was created with; with another list it is created again
+    //if the cache is full, the least recently used model is removed; hits and misses are counted
+    //can be used by several threads
+public class LabelCombinationCache {
+    private static final LabelCombinationCache DEFAULT_CACHE = new LabelCombinationCache(4096);
+
+    private int maxEntries;
+    private LinkedHashMap<String, LabelCombinationModel> models;
+    private long hits;
+    private long misses;
+
+    public LabelCombinationCache(final int maxEntriesIn) {
+        if (maxEntriesIn < 1)
+            throw new IllegalArgumentException("Cache needs at least one entry! Max. entries: "+maxEntriesIn);
+        this.maxEntries = maxEntriesIn;
+        //access order: get() moves the entry to the end, the first entry is the least recently used one
+        this.models = new LinkedHashMap<String, LabelCombinationModel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LabelCombinationModel> eldest) {
+                return size() > maxEntriesIn;
+            }
+        };
+    }
+
+    //cache used by LabelFragmentIonChecker
+    public static LabelCombinationCache getDefaultCache() {
+        return DEFAULT_CACHE;
+    }
+
+    public LabelCombinationModel modelGetter(String sequenceIn, ArrayList<AminoAcid> acids, ArrayList<Modification> modsIn, String labelIn) {
+        String key = modelKeyCreator(sequenceIn, modsIn, labelIn);
+        synchronized (this) {
+            LabelCombinationModel model = this.models.get(key);
+            if (model != null && model.getSourceAcids() == acids) {
+                this.hits++;
+                return model;
+            }
+            this.misses++;
+        }
+        //created outside of the lock; if two threads miss the same peptide, both create an identical model
+        LabelCombinationModel model = new LabelCombinationModel(sequenceIn, acids, modsIn, labelIn);
+        synchronized (this) {
+            this.models.put(key, model);
+        }
+        return model;
+    }
+
+    //sequence, label and every modification with name, sum formula, position or amino acid and label status, in the order of the list
+    static String modelKeyCreator(String sequenceIn, ArrayList<Modification> modsIn, String labelIn) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(sequenceIn).append("|").append(labelIn);
+        for (Modification mod : modsIn) {
+            sb.append("|").append(mod.getModificationName()).append(";").append(mod.getModificationFormula().getSumFormula()).append(";");
+            if (mod.getPositionType())
+                sb.append(mod.getPositionNumber());
+            else
+                sb.append(mod.getAminoAcidName());
+            sb.append(";").append(mod.getLabelStatus()).append(";").append(mod.getCleavedStatus());
+        }
+        return sb.toString();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized int getSize() {
+        return this.models.size();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    //removes all models and resets the counters
+    public synchronized void clear() {
+        this.models.clear();
+        this.hits = 0;
+        this.misses = 0;
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+
+//all the label combinations of one peptide sequence, as created by modCreatorEC/modCreatorTMT
+    //label sites are the N-terminus and every lysine; every site can be in one of the label states of the used label
+    //EC: 0 = ECDuplex_intact, 1 = EC179_cleaved, 2 = EC180_cleaved (EC179 and EC180 are never cleaved in the same combination)
+    //TMT: 0 = TMTDuplex_intact, 1 = TMTduplex_cleaved
+    //the labeled amino acids are created once per site and state, the combinations only point to them
+    //the b- and y-ion ladders of all the combinations are calculated once, so a cached model (see LabelCombinationCache) can be used for every scan of the peptide
+    //immutable after construction, can be used by several threads
+public class LabelCombinationModel {
+    private String sequence;
+    private String labelName;
+    private int stateCount;
+    //amino acids of the peptide with all the other modifications (e.g. Cam, Ox.), but without label
+    private ArrayList<AminoAcid> baseAcids;
+    //index of the labeled amino acid for every site, site 0 is the N-terminus
+    private int[] sitePositions;
+    //label states of every site for every combination, in the order of modCreatorEC/modCreatorTMT
+    private ArrayList<int[]> combinations;
+    //labeled amino acids: for every site, the first site at the same position and the acids for all state combinations of the sites at this position
+    private int[] firstSiteAtPosition;
+    private AminoAcid[][] labeledAcids;
+    //cumulative residue masses of every combination, see Peptide.fragmentLadderCalculator
+    private double[][] bLadders;
+    private double[][] yLadders;
+    //amino acid list the model was created with
+    private ArrayList<AminoAcid> sourceAcids;
+
+    public LabelCombinationModel(String sequenceIn, ArrayList<AminoAcid> acids, ArrayList<Modification> modsIn, String labelIn) {
+        if (labelIn.equals("EC"))
+            this.stateCount = 3;
+        else if (labelIn.equals("TMT"))
+            this.stateCount = 2;
+        else
+            throw new IllegalArgumentException("Unknown label: "+labelIn+"! Please use TMT or EC");
+        this.labelName = labelIn;
+        this.sourceAcids = acids;
+        //the other modifications are applied first, as in the modification lists of modCreatorEC/modCreatorTMT
+        Peptide basePeptide = new Peptide(sequenceIn, acids).peptideModifier(modsIn);
+        this.baseAcids = basePeptide.getAminoAcidsList();
+        this.sequence = basePeptide.getUnmodifiedSequence();
+
+        //N-terminus and lysines
+        int lysCount = 0;
+        for (AminoAcid acid : this.baseAcids) {
+            if (acid.get1Let() == 'K')
+                lysCount++;
+        }
+        this.sitePositions = new int[lysCount + 1];
+        int sitePointer = 1;
+        for (int a = 0; a < this.baseAcids.size(); a++) {
+            if (this.baseAcids.get(a).get1Let() == 'K') {
+                this.sitePositions[sitePointer] = a;
+                sitePointer++;
+            }
+        }
+        labeledAcidCreator();
+        combinationCreator();
+        ladderCreator();
+    }
+
+    private void ladderCreator() {
+        this.bLadders = new double[this.combinations.size()][this.baseAcids.size()];
+        this.yLadders = new double[this.combinations.size()][this.baseAcids.size()];
+        for (int c = 0; c < this.combinations.size(); c++) {
+            Peptide.fragmentLadderCalculator(getCombinationAcids(c), this.bLadders[c], this.yLadders[c]);
+        }
+    }
+
+    //creates the labeled amino acid for every state of every site
+    //if the first amino acid is a lysine, N-terminal and lysine label are stacked on the same amino acid
+    private void labeledAcidCreator() {
+        this.firstSiteAtPosition = new int[this.sitePositions.length];
+        this.labeledAcids = new AminoAcid[this.sitePositions.length][];
+        for (int site = 0; site < this.sitePositions.length; site++) {
+            int firstSite = site;
+            while (firstSite > 0 && this.sitePositions[firstSite - 1] == this.sitePositions[site])
+                firstSite--;
+            this.firstSiteAtPosition[site] = firstSite;
+            if (firstSite != site)
+                continue;
+            int sitesAtPosition = 1;
+            while (site + sitesAtPosition < this.sitePositions.length && this.sitePositions[site + sitesAtPosition] == this.sitePositions[site])
+                sitesAtPosition++;
+            int stateCombinations = 1;
+            for (int i = 0; i < sitesAtPosition; i++)
+                stateCombinations *= this.stateCount;
+            this.labeledAcids[site] = new AminoAcid[stateCombinations];
+            for (int code = 0; code < stateCombinations; code++) {
+                AminoAcid currentAcid = this.baseAcids.get(this.sitePositions[site]);
+                int remainingCode = code;
+                for (int i = 0; i < sitesAtPosition; i++) {
+                    Modification label = labelCreator(remainingCode % this.stateCount, this.sitePositions[site] + 1);
+                    currentAcid = Peptide.modifiedAcidCreator(currentAcid, label);
+                    remainingCode /= this.stateCount;
+                }
+                this.labeledAcids[site][code] = currentAcid;
+            }
+        }
+    }
+
+    private Modification labelCreator(int state, int pos) {
+        if (this.labelName.equals("EC"))
+            return LabelFragmentIonChecker.modChooserEC(state, pos);
+        return LabelFragmentIonChecker.modChooserTMT(state, pos);
+    }
+
+    //counts through all the states, the last site changes fastest (same order as listMultiplierEC/listMultiplierTMT)
+    //EC: combinations with EC179 and EC180 cleaved labels at the same time are left out
+    private void combinationCreator() {
+        this.combinations = new ArrayList<>();
+        int[] states = new int[this.sitePositions.length];
+        while (true) {
+            if (!this.labelName.equals("EC") || !mixedCleavedLabels(states))
+                this.combinations.add(states.clone());
+            int site = states.length - 1;
+            while (site >= 0 && states[site] == this.stateCount - 1) {
+                states[site] = 0;
+                site--;
+            }
+            if (site < 0)
+                break;
+            states[site]++;
+        }
+    }
+
+    private static boolean mixedCleavedLabels(int[] states) {
+        int cleavedState = 0;
+        for (int state : states) {
+            if (state == 0)
+                continue;
+            if (cleavedState != 0 && state != cleavedState)
+                return true;
+            cleavedState = state;
+        }
+        return false;
+    }
+
+    public int getCombinationCount() {
+        return this.combinations.size();
+    }
+
+    public int[] getCombinationStates(int combination) {
+        return this.combinations.get(combination).clone();
+    }
+
+    //amino acids of the peptide with the labels of the combination
+    public ArrayList<AminoAcid> getCombinationAcids(int combination) {
+        int[] states = this.combinations.get(combination);
+        ArrayList<AminoAcid> combinationAcids = new ArrayList<>(this.baseAcids);
+        for (int site = 0; site < this.sitePositions.length; site++) {
+            int firstSite = this.firstSiteAtPosition[site];
+            if (firstSite != site)
+                continue;
+            int code = 0;
+            int factor = 1;
+            for (int i = firstSite; i < this.sitePositions.length && this.sitePositions[i] == this.sitePositions[firstSite]; i++) {
+                code += states[i] * factor;
+                factor *= this.stateCount;
+            }
+            combinationAcids.set(this.sitePositions[site], this.labeledAcids[site][code]);
+        }
+        return combinationAcids;
+    }
+
+    //the fragment ions of a combination are the same as in an earlier combination if all the sites outside of the fragment ion are intact in the earlier one
+    //since intact is state 0 and the combinations count up, every fragment ion is new exactly in the first combination where the sites outside of it are intact
+
+    //smallest b-ion number which was not already part of an earlier combination
+    public int firstNewBIon(int combination) {
+        int[] states = this.combinations.get(combination);
+        for (int site = states.length - 1; site >= 0; site--) {
+            if (states[site] != 0)
+                return this.sitePositions[site] + 1;
+        }
+        return 1;
+    }
+
+    //smallest y-ion number which was not already part of an earlier combination
+    //y-ions without any label site are left out
+    public int firstNewYIon(int combination) {
+        int[] states = this.combinations.get(combination);
+        for (int site = 0; site < states.length; site++) {
+            if (states[site] != 0)
+                return this.baseAcids.size() - this.sitePositions[site];
+        }
+        return this.baseAcids.size() - this.sitePositions[this.sitePositions.length - 1];
+    }
+
+    //b-ion ladder of the combination: index i belongs to b(i+1); the array is shared and must not be changed
+    public double[] getBLadder(int combination) {
+        return this.bLadders[combination];
+    }
+
+    //y-ion ladder of the combination: index i belongs to y(i+1); the array is shared and must not be changed
+    public double[] getYLadder(int combination) {
+        return this.yLadders[combination];
+    }
+
+    public ArrayList<AminoAcid> getSourceAcids() {
+        return this.sourceAcids;
+    }
+
+    public String getSequence() {
+        return this.sequence;
+    }
+
+    public String getLabelName() {
+        return this.labelName;
+    }
+
+    public int getSequenceLength() {
+        return this.baseAcids.size();
+    }
+}
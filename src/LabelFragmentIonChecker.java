@@ -3,6 +3,7 @@ import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 
 /**
  * Created by micha on 6/27/2017.
@@ -18,39 +19,30 @@ public class LabelFragmentIonChecker {
                                                                        ArrayList<Modification> modsIn,
                                                                        String spectrumID, MzXMLFile completeFileIn,
                                                                        double accuracy, String leadProtsIn) throws JMzReaderException {
-        ArrayList<IonMatch> successfulMatches = new ArrayList<>();
         //generate spectrum to look at:
         MySpectrum spectrumToCheck = MzXMLReadIn.mzXMLToMySpectrum(completeFileIn, spectrumID);
+        return compClusterCheckerEC(acids, SequenceIn, modsIn, spectrumToCheck, accuracy, leadProtsIn);
+    }
+
+    //same check for a spectrum which was already read in, e.g. by a SpectrumSource
+    public static ArrayList<CompClusterIonMatch> compClusterCheckerEC (ArrayList<AminoAcid> acids,
+                                                                       String SequenceIn,
+                                                                       ArrayList<Modification> modsIn,
+                                                                       MySpectrum spectrumToCheck,
+                                                                       double accuracy, String leadProtsIn) {
+        ArrayList<IonMatch> successfulMatches = new ArrayList<>();
         String spectrumHeader = spectrumToCheck.getScanHeader();
 
 
-        //create unmodified peptide
-        Peptide idPeptide = new Peptide(SequenceIn, acids);
-        //determine how many EC modifications are present
-        int lysCount = 0;
-        ArrayList<AminoAcid> sequence = new ArrayList<>();
-        sequence.addAll(idPeptide.getAminoAcidsList());
-        for (AminoAcid acid : sequence){
-            if (acid.get1Let() == 'K')
-                lysCount++;
-        }
-        int countTag = lysCount+1;
-        //create different mods for the different possibilities (cleaved/noncleaved)
-        ArrayList<ArrayList<Modification>> allMods = new ArrayList<>();
-        allMods = modCreatorEC(idPeptide, countTag, modsIn);
-
-        //generate List of different modified peptides to check for every possibility (EC cleaved/EC not cleaved)
-        ArrayList<Peptide> modifiedPeptides = new ArrayList<>();
-        for (ArrayList<Modification> modList : allMods){
-            Peptide modifiedPeptide = new Peptide(SequenceIn, acids);
-            modifiedPeptides.add(modifiedPeptide.peptideModifier(modList));
-        }
+        //all the possibilities for EC modifications (cleaved/noncleaved) on N-terminus and lysines
+        //the labeled amino acids are shared by all the combinations and every fragment ion is only compared once (see LabelCombinationModel)
+        //the model of a peptide is created once and then taken from the LabelCombinationCache
+        long candidateStart = System.nanoTime();
+        LabelCombinationModel labelCombinations = LabelCombinationCache.getDefaultCache().modelGetter(SequenceIn, acids, modsIn, "EC");
+        long matchingStart = System.nanoTime();
+        RunMetrics.getRunMetrics().getCandidateLatency().valueAdder(matchingStart - candidateStart);
         //invoke PeakCompare function and store result matches in List of IonMatches
-        for (Peptide modPeptide : modifiedPeptides){
-            //System.out.println("Peptide: "+modPeptide.getSequence());
-            successfulMatches.addAll(PeakCompare.peakCompare(spectrumToCheck, modPeptide, accuracy));
-            //System.out.println();
-        }
+        successfulMatches.addAll(PeakCompare.labelCombinationCompare(spectrumToCheck, labelCombinations, accuracy));
 
 
 
@@ -59,10 +51,12 @@ public class LabelFragmentIonChecker {
         ArrayList<CompClusterIonMatch> relevantMatches = new ArrayList<>();
         relevantMatches = relevantMatchesPicker(successfulMatches, spectrumHeader, leadProtsIn);
 
-        //relevantMatches still contains multiple instances of the same modification, since the fragment ions from different modified peptides can be the same
+        //identical fragment ions of different combinations are already left out
+        //the consolidator still merges the same fragment ion with the same labels in different charge states, and fragment ions with several labels and the same mass
 
         ArrayList<CompClusterIonMatch> noDuplicateMatches = new ArrayList<>();
         noDuplicateMatches = matchesConsolidator(relevantMatches);
+        RunMetrics.getRunMetrics().getMatchingLatency().valueAdder(System.nanoTime() - matchingStart);
 
         return noDuplicateMatches;
     }
@@ -154,7 +148,7 @@ public class LabelFragmentIonChecker {
 
 
 
-    private static Modification modChooserEC(int modChooser, int pos){
+    static Modification modChooserEC(int modChooser, int pos){
         Modification mod = null;
         switch(modChooser){
             case 0:
@@ -221,37 +215,35 @@ public class LabelFragmentIonChecker {
 
 
     //this function removes the multiple entries (same fragment ions from different theoretical precursors) from the relevantMatchesList
+    //a match is a duplicate if a match which was already kept has
+    //- the same fragment ion (ion series + number), cleavage status and label names, or
+    //- the same exact mass, if the match contains more than one label
+    //the first match is kept, the order of the list stays the same
     private static ArrayList<CompClusterIonMatch> matchesConsolidator(ArrayList<CompClusterIonMatch> listIn){
         ArrayList<CompClusterIonMatch> reducedList = new ArrayList<>();
-        //int duplicateNumber = 0;
+        HashSet<String> keptIons = new HashSet<>();
+        //masses of the kept matches are only collected if a match with more than one label has to be checked
+        HashSet<Double> keptMasses = new HashSet<>();
+        int massesCollected = 0;
 
         for (CompClusterIonMatch oldMatch : listIn){
-            boolean duplicate = false;
-            if (!reducedList.isEmpty()) {
-
-                for (CompClusterIonMatch newMatch: reducedList){
-                    //check if match is already in the list
-                    //things to check: ion series + number, modifications
-                    if (oldMatch.getFragmentIon().getCompleteIon().equals(newMatch.getFragmentIon().getCompleteIon())
-                            &&oldMatch.getMixedLabels() == newMatch.getMixedLabels()
-                            &&oldMatch.getIsCleaved() == newMatch.getIsCleaved()
-                            &&oldMatch.getLabelName().equals(newMatch.getLabelName())) {
-                        duplicate = true;
-                       // duplicateNumber++;
-                    }
-                    if (oldMatch.getFragmentIon().getLabelQuantity()>1){
-                        if (oldMatch.getFragmentIon().getExactMass() == newMatch.getFragmentIon().getExactMass()){
-                            duplicate = true;
-                           // duplicateNumber++;
-                        }
-                    }
+            String ionKey = oldMatch.getFragmentIon().getCompleteIon()
+                    + "|" + oldMatch.getMixedLabels()
+                    + "|" + oldMatch.getIsCleaved()
+                    + "|" + oldMatch.getLabelName();
+            boolean duplicate = keptIons.contains(ionKey);
+            if (!duplicate && oldMatch.getFragmentIon().getLabelQuantity()>1){
+                for (; massesCollected < reducedList.size(); massesCollected++){
+                    keptMasses.add(reducedList.get(massesCollected).getFragmentIon().getFormula().getExactMass());
                 }
+                //the mass of the sum formula does not depend on the order of the amino acids, the mass of the fragment ladder can
+                duplicate = keptMasses.contains(oldMatch.getFragmentIon().getFormula().getExactMass());
             }
             if (!duplicate) {
                 reducedList.add(oldMatch);
+                keptIons.add(ionKey);
             }
         }
-       // System.out.println(""+ duplicateNumber+" Matches removed (duplicates)!");
         return reducedList;
     }
 
@@ -264,39 +256,28 @@ public class LabelFragmentIonChecker {
                                                                        ArrayList<Modification> modsIn,
                                                                        String spectrumID, MzXMLFile completeFileIn,
                                                                        double accuracy, String leadProtsIn) throws JMzReaderException {
-        ArrayList<IonMatch> successfulMatches = new ArrayList<>();
         //generate spectrum to look at:
         MySpectrum spectrumToCheck = MzXMLReadIn.mzXMLToMySpectrum(completeFileIn, spectrumID);
+        return compClusterCheckerTMT(acids, SequenceIn, modsIn, spectrumToCheck, accuracy, leadProtsIn);
+    }
+
+    //same check for a spectrum which was already read in, e.g. by a SpectrumSource
+    public static ArrayList<CompClusterIonMatch> compClusterCheckerTMT (ArrayList<AminoAcid> acids,
+                                                                        String SequenceIn,
+                                                                        ArrayList<Modification> modsIn,
+                                                                        MySpectrum spectrumToCheck,
+                                                                        double accuracy, String leadProtsIn) {
+        ArrayList<IonMatch> successfulMatches = new ArrayList<>();
         String spectrumHeader = spectrumToCheck.getScanHeader();
 
 
-        //create unmodified peptide
-        Peptide idPeptide = new Peptide(SequenceIn, acids);
-        //determine how many TMT modifications are present
-        int lysCount = 0;
-        ArrayList<AminoAcid> sequence = new ArrayList<>();
-        sequence.addAll(idPeptide.getAminoAcidsList());
-        for (AminoAcid acid : sequence){
-            if (acid.get1Let() == 'K')
-                lysCount++;
-        }
-        int countTag = lysCount+1;
-        //create different mods for the different possibilities (cleaved/noncleaved)
-        ArrayList<ArrayList<Modification>> allMods = new ArrayList<>();
-        allMods = modCreatorTMT(idPeptide, countTag, modsIn);
-
-        //generate List of different modified peptides to check for every possibility (TMT cleaved/TMT not cleaved)
-        ArrayList<Peptide> modifiedPeptides = new ArrayList<>();
-        for (ArrayList<Modification> modList : allMods){
-            Peptide modifiedPeptide = new Peptide(SequenceIn, acids);
-            modifiedPeptides.add(modifiedPeptide.peptideModifier(modList));
-        }
+        //all the possibilities for TMT modifications (cleaved/noncleaved) on N-terminus and lysines, see LabelCombinationModel
+        long candidateStart = System.nanoTime();
+        LabelCombinationModel labelCombinations = LabelCombinationCache.getDefaultCache().modelGetter(SequenceIn, acids, modsIn, "TMT");
+        long matchingStart = System.nanoTime();
+        RunMetrics.getRunMetrics().getCandidateLatency().valueAdder(matchingStart - candidateStart);
         //invoke PeakCompare function and store result matches in List of IonMatches
-        for (Peptide modPeptide : modifiedPeptides){
-            //System.out.println("Peptide: "+modPeptide.getSequence());
-            successfulMatches.addAll(PeakCompare.peakCompare(spectrumToCheck, modPeptide, accuracy));
-            //System.out.println();
-        }
+        successfulMatches.addAll(PeakCompare.labelCombinationCompare(spectrumToCheck, labelCombinations, accuracy));
 
         //relevant Matches Picker doesn't change in regard to EC
         ArrayList<CompClusterIonMatch> relevantMatches = new ArrayList<>();
@@ -306,6 +287,7 @@ public class LabelFragmentIonChecker {
         //same matches Consolidator Method can be utilized
         ArrayList<CompClusterIonMatch> noDuplicateMatches = new ArrayList<>();
         noDuplicateMatches = matchesConsolidator(relevantMatches);
+        RunMetrics.getRunMetrics().getMatchingLatency().valueAdder(System.nanoTime() - matchingStart);
 
         return noDuplicateMatches;
     }
@@ -344,7 +326,7 @@ public class LabelFragmentIonChecker {
         return completeList;
     }
 
-    private static Modification modChooserTMT(int modChooser, int pos){
+    static Modification modChooserTMT(int modChooser, int pos){
         Modification mod = null;
         switch(modChooser){
             case 0:
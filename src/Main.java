@@ -12,6 +12,7 @@ import uk.ac.ebi.pride.tools.mzxml_parser.mzxml.model.Scan;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -36,7 +37,7 @@ public class Main {
 
 
 
-    public static void main(String[] args) throws MzXMLParsingException, JMzReaderException, FileNotFoundException {
+    public static void main(String[] args) throws MzXMLParsingException, JMzReaderException, IOException {
         DecimalFormat fiveDec = new DecimalFormat("0.00000");
 
         //The provided amino acids list is read.
@@ -53,6 +54,9 @@ public class Main {
         //File completemzXMLSource = new File(filePathSpectrum);
         //generating the MzXMLFile object might take a few minutes and will display some warnings.
         //MzXMLFile completemzXML = new MzXMLFile(completemzXMLSource);
+        //optional: instead, convert the MS2 scans once into a binary spectrum cache next to the mzXML-file; later runs open the cache within milliseconds
+        //the cache is created again if the mzXML-file is newer than the cache
+        //BinarySpectrumCache spectrumCache = BinarySpectrumCache.cacheOpener(completemzXMLSource, new File(filePathSpectrum + ".spectra"));
 
 
         //In this section, you have to supply the evidence.txt file from your MaxQuant analysis.
@@ -70,7 +74,34 @@ public class Main {
         //it creates multiple .csv-Files (one for 500 analyzed spectra each) in the specified directory, containing all matched label-containing fragment ions
         //TODO: change the max. allowed mass deviation in ppm. Currently: 5 ppm; 4th entry
         //TODO: change the used label: use "EC" for the SOT-duplex or "TMT" for the TMT-duplex
+        //optional: add true as 8th entry to read the spectra in one forward pass instead of random access (faster for large files, rows are then ordered by scan number)
+        //optional: add the number of worker threads as 9th entry (e.g. Runtime.getRuntime().availableProcessors()) to check the spectra in parallel; the .csv-files stay the same
+        //every thread needs memory for its own peptide candidates, so the heap size (-Xmx) might have to be raised
         //CSVReader.wholeRunCICChecker(completemzXML, evidence, aminoAcidsList, 5, 250, csvOutPath, "EC");
+        //with the binary spectrum cache (last entry: number of worker threads):
+        //CSVReader.wholeRunCICChecker(spectrumCache, evidence, aminoAcidsList, 5, 250, csvOutPath, "EC", 1);
+        //optional: write all the matches directly into the complete .csv-file, then Section 2 is not needed
+        //the 2nd entry of the CompClusterCSVWriter sets after how many spectra the file is forced to disk
+        //CompClusterCSVWriter csvSink = new CompClusterCSVWriter(csvOutPath + "Analysis_complete.csv", 250);
+        //CSVReader.wholeRunCICChecker(completemzXML, evidence, aminoAcidsList, 5, csvSink, "EC", false, 1);
+        //csvSink.close();
+        //if the run was interrupted, add true as 3rd entry of the CompClusterCSVWriter: the analysis continues after the last checkpoint (written with every sync)
+        //optional: write the matches into a compressed columnar file instead (about 1/7 of the .csv size); Sections 3 to 5 can read it directly instead of the .csv-file
+        //ColumnarMatchWriter columnarSink = new ColumnarMatchWriter(csvOutPath + "SOT_EC_HEK_EColiSpikeIn_1to1.ccm");
+        //CSVReader.wholeRunCICChecker(completemzXML, evidence, aminoAcidsList, 5, columnarSink, "EC", false, 1);
+        //columnarSink.close();
+        //convert between the formats: ColumnarMatchWriter.columnarFileCreator(new File(completeCSV), ccmPath) and ColumnarMatchReader.csvFileCreator(new File(ccmPath), csvPath)
+        //optional: Sections 1 to 5 in one pass; writes the complete .csv-file and the _statistics, _reporterIons and _complementaryClusters_5rel files next to it
+        //entries: as above, then the path of the complete .csv-file, the label, the reporter ion mass deviation [ppm], stream spectra, number of worker threads
+        //WholeRunPipeline.wholeRunPipeline(completemzXML, evidence, aminoAcidsList, 5, csvOutPath + "SOT_EC_HEK_EColiSpikeIn_1to1.csv", "EC", 5, false, 1);
+        //optional: for an experiment with several raw files and one evidence.txt (with the column "Raw file"), all the raw files are analyzed like this
+        //the .mzXML-files have to be named like the raw files (e.g. RawFile01.mzXML) and be in one directory; the files of every raw file and the merged files are written into csvOutPath
+        //entries: evidence, mzXML directory, output directory, experiment name, amino acids, max. deviation [ppm], label, reporter ion deviation [ppm], stream spectra,
+        //number of raw files analyzed at the same time (every one needs the memory of its mzXML index), number of worker threads per raw file
+        //ExperimentBatchRunner.experimentRunner(evidence, new File("C:\\Programmierordner\\SOT_HEK_EColi\\mzXML\\"), csvOutPath, "SOT_EC_HEK_EColi", aminoAcidsList, 5, "EC", 5, false, 2, 2);
+        //the progress (spectra/s, latencies of the stages, matches per spectrum) is printed every 10 seconds; start with -DrunMetricsPeriod=60 to change the period
+        //the lines for every spectrum and fragment ion match are only printed with -DanalysisLog=DEBUG; the metrics can also be watched with JConsole (MBean NiceSpectraAnalyzer:type=RunMetrics)
+        //RunMetrics.getRunMetrics().setReportLogPath(csvOutPath + "metrics.log");
         //TODO: after compilation, the files should be created! Put section 1 in a comment block!
 
 
@@ -80,6 +111,8 @@ public class Main {
         //This line combines the created .csv Files to generate 1 complete file
         //TODO: Remove the comments from this section and put them in front of Section 1
         //CSVCreator.csvFileCombiner(csvOutPath);
+        //optional: add true and the number of threads to write the complete file compressed as _complete.csv.gz, e.g. CSVCreator.csvFileCombiner(csvOutPath, true, 4);
+        //Sections 3 to 5 read the .csv.gz-file directly (e.g. CSVAnalyzer.cicStatistics(csvOutPath + "Analysis_complete.csv.gz") creates Analysis_complete_statistics.csv)
 
 
 
@@ -92,20 +125,29 @@ public class Main {
 
         String toAnalyze = "C:\\Programmierordner\\SOT_HEK_EColi\\Analysis\\SOT_EC_HEK_EColiSpikeIn_1to1.csv";
         //CSVAnalyzer.cicStatistics(toAnalyze);
+        //a columnar file (.ccm) can be analyzed the same way, e.g. ...SOT_EC_HEK_EColiSpikeIn_1to1.ccm creates ...SOT_EC_HEK_EColiSpikeIn_1to1_statistics.csv
 
 
         //Section 4
         //in this section, you can analyse the reporter ion intensities of the files
         //TODO:Remove the comments from this section and be sure that there are comments before and after sections 1, 2 and 3
         //TODO: You can specify the allowed reporter ion mass deviation [ppm]. Standard parameter is 5 ppm; 3rd entry
+        //optional: add true as 4th entry to read the spectra in one forward pass, the row order of the output stays the same
         String statisticsFilePath = "C:\\Programmierordner\\SOT_HEK_EColi\\Analysis\\SOT_EC_HEK_EColiSpikeIn_1to1_statistics.csv";
         //File statisticsFile = new File(statisticsFilePath);
         //CSVReader.wholeRunRepFinder(completemzXML, statisticsFile ,5);
+        //with the binary spectrum cache:
+        //CSVReader.wholeRunRepFinder(spectrumCache, statisticsFile ,5);
+        //optional: write a checkpoint every 500 rows (4th entry); with true as 5th entry, an interrupted run continues after its last checkpoint
+        //CSVReader.wholeRunRepFinder(completemzXML, statisticsFile ,5, 500, true);
+        //optional: pass the columnar file (.ccm) instead of the statistics file; the statistics rows are then calculated from its matches, Section 3 is not needed
 
         //Section 5
         //Complementary Ion Cluster analysis
         String fragmentIonFilePath = "C:\\Programmierordner\\SOT_HEK_EColi\\Analysis\\SOT_EC_HEK_EColiSpikeIn_1to1.csv";
        // CSVAnalyzer.cicRatioCalculator(fragmentIonFilePath);
+        //optional: add the number of worker threads as 2nd entry to calculate the ratios in parallel; the .csv-file stays the same
+        //the fragment ion file can also be the columnar file (.ccm)
 
         String testFilePath = "C:\\Programmierordner\\BSA_MS1Diff_Analysis\\TMT\\20171009_stamch_NEB_BSA_TMT_1to1_2uL.mzXML";
         //File testFileSource = new File(testFilePath);
@@ -128,10 +170,17 @@ public class Main {
 
         /*ArrayList<Double> massDiffList = new ArrayList<>();
         massDiffList = PrecursorMassDiffBinner.precursorMassDiffBinner(testmzXML, peptidesToCheck, aminoAcidsList);
+        //or with the precursor information of a binary spectrum cache: PrecursorMassDiffBinner.precursorMassDiffBinner(spectrumCache, peptidesToCheck, aminoAcidsList);
         System.out.println("List size: "+massDiffList.size());
         String csvMassDiffOut = "C:\\Programmierordner\\BSA_MS1Diff_Analysis\\TMT\\";
         CSVCreator.createMassDiffCSV(massDiffList, csvMassDiffOut);
         System.out.println("MS2-scans: "+testmzXML.getMS2ScanCount());*/
+        //for many scans and peptides, count the mass shifts in a histogram instead: here from 0 to 500 Da in bins of 0.01 Da, with 1 worker thread
+        //MassShiftHistogram.ppmHistogramCreator(0, 500, 10, 1500) creates bins of 10 ppm at 1500 Da instead
+        /*MassShiftHistogram massShifts = PrecursorMassDiffBinner.precursorMassShiftHistogram(testmzXML, peptidesToCheck, aminoAcidsList, new MassShiftHistogram(0, 500, 0.01), 1);
+        CSVCreator.createMassShiftHistogramCSV(massShifts, csvMassDiffOut);
+        //enriched shifts: at least 20 shifts in the bin and 5 times the mean count of the 50 bins on both sides
+        CSVCreator.createMassShiftPeaksCSV(massShifts.peakPicker(50, 5, 20), csvMassDiffOut);*/
 
         String ir7String = "IEAKGER";
         Peptide ir7 = new Peptide(ir7String, aminoAcidsList);
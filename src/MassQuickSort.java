@@ -5,13 +5,67 @@ import java.util.Collections;
  * Created by Michael Stadlmeier on 6/27/2017.
  */
 
-//class to sort a Peak List with ascending masses
+//class to sort a Peak List (or the peak columns of a spectrum) with ascending masses
 public class MassQuickSort {
     public static ArrayList<Peak> peakListQuickSort (ArrayList<Peak> peakListIn){
         qSort(peakListIn, 0, peakListIn.size()-1);
         return peakListIn;
     }
 
+    //sorts the parallel peak columns of a MySpectrum by ascending masses, the other columns are moved along
+    public static void peakArrayQuickSort (double[] mzIn, double[] intensityIn, byte[] chargeIn){
+        //peak lists from the mzXML-files are usually already sorted, don't touch them in that case
+        boolean sorted = true;
+        for (int i = 1; i < mzIn.length && sorted; i++){
+            if (mzIn[i] < mzIn[i-1])
+                sorted = false;
+        }
+        if (!sorted)
+            arrayQSort(mzIn, intensityIn, chargeIn, 0, mzIn.length-1);
+    }
+
+    private static void arrayQSort(double[] mzIn, double[] intensityIn, byte[] chargeIn, int left, int right){
+        //recursion only on the smaller part, the bigger part is handled in the loop to keep the stack small
+        while (right > left){
+            //middle element as pivot, so that almost sorted columns don't end up quadratic
+            double pivot = mzIn[(left + right) >>> 1];
+            int l = left;
+            int r = right;
+            while (l <= r){
+                while (mzIn[l] < pivot){
+                    l++;
+                }
+                while (mzIn[r] > pivot){
+                    r--;
+                }
+                if (l <= r){
+                    arraySwap(mzIn, intensityIn, chargeIn, l, r);
+                    l++;r--;
+                }
+            }
+            if (r - left < right - l){
+                arrayQSort(mzIn, intensityIn, chargeIn, left, r);
+                left = l;
+            }
+            else {
+                arrayQSort(mzIn, intensityIn, chargeIn, l, right);
+                right = r;
+            }
+        }
+    }
+
+    private static void arraySwap(double[] mzIn, double[] intensityIn, byte[] chargeIn, int a, int b){
+        double mz = mzIn[a];
+        mzIn[a] = mzIn[b];
+        mzIn[b] = mz;
+        double intensity = intensityIn[a];
+        intensityIn[a] = intensityIn[b];
+        intensityIn[b] = intensity;
+        byte charge = chargeIn[a];
+        chargeIn[a] = chargeIn[b];
+        chargeIn[b] = charge;
+    }
+
     private static void qSort(ArrayList<Peak> peakListIn, int left, int right){
         if(right > left){
             double pivot = peakListIn.get(right).getMass();
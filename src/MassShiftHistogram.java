@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+
+//histogram of precursor mass shifts (uncharged precursor mass - peptide mass) with bins of fixed width in Da
+    //covers the shifts from minShift (included) to maxShift (excluded); other shifts are only counted as out of range
+    //the counts are kept in a long[], so memory does not grow with the number of scans and peptides
+    //not synchronized: every thread fills its own histogram (emptyCopy), which are merged afterwards (histogramMerger)
+public class MassShiftHistogram {
+    private double minShift;
+    private double maxShift;
+    private double binWidth;
+    private long[] bins;
+    private long outOfRange;
+
+    public MassShiftHistogram(double minShiftIn, double maxShiftIn, double binWidthIn) {
+        if (binWidthIn <= 0)
+            throw new IllegalArgumentException("Bin width has to be positive! Bin width: "+binWidthIn);
+        if (maxShiftIn <= minShiftIn)
+            throw new IllegalArgumentException("Max. shift has to be above min. shift! Min. shift: "+minShiftIn+", max. shift: "+maxShiftIn);
+        long binCount = (long) Math.ceil((maxShiftIn - minShiftIn) / binWidthIn);
+        if (binCount > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many bins for the mass shift histogram! Bins: "+binCount);
+        this.minShift = minShiftIn;
+        this.maxShift = maxShiftIn;
+        this.binWidth = binWidthIn;
+        this.bins = new long[(int) binCount];
+    }
+
+    //bins with a width of ppmWidth at the reference mass (e.g. the mean mass of the queried peptides)
+    //fixed bins need one width in Da, so the ppm width is only exact at the reference mass
+    public static MassShiftHistogram ppmHistogramCreator(double minShiftIn, double maxShiftIn, double ppmWidth, double referenceMass) {
+        if (ppmWidth <= 0 || referenceMass <= 0)
+            throw new IllegalArgumentException("Ppm width and reference mass have to be positive! Ppm width: "+ppmWidth+", reference mass: "+referenceMass);
+        return new MassShiftHistogram(minShiftIn, maxShiftIn, ppmWidth * referenceMass / 1000000);
+    }
+
+    //histogram with the same bins, but without counts
+    public MassShiftHistogram emptyCopy() {
+        return new MassShiftHistogram(this.minShift, this.maxShift, this.binWidth);
+    }
+
+    //index of the bin of the shift, -1 if the shift is out of range
+    public int binIndex(double shiftIn) {
+        if (!(shiftIn >= this.minShift && shiftIn < this.maxShift))
+            return -1;
+        //rounding can put shifts just below maxShift behind the last bin
+        return Math.min((int) ((shiftIn - this.minShift) / this.binWidth), this.bins.length - 1);
+    }
+
+    public void shiftAdder(double shiftIn) {
+        int index = binIndex(shiftIn);
+        if (index < 0)
+            this.outOfRange++;
+        else
+            this.bins[index]++;
+    }
+
+    //counts shifts as out of range without computing them, e.g. the pairs outside the window searched in the sorted peptide masses
+    public void outOfRangeAdder(long countIn) {
+        if (countIn < 0)
+            throw new IllegalArgumentException("Number of shifts can't be negative! Number: "+countIn);
+        this.outOfRange += countIn;
+    }
+
+    //adds the counts of a histogram with the same bins
+    public void histogramMerger(MassShiftHistogram histogramIn) {
+        if (histogramIn.minShift != this.minShift || histogramIn.binWidth != this.binWidth || histogramIn.bins.length != this.bins.length)
+            throw new IllegalArgumentException("Only histograms with the same bins can be merged!");
+        for (int i = 0; i < this.bins.length; i++) {
+            this.bins[i] += histogramIn.bins[i];
+        }
+        this.outOfRange += histogramIn.outOfRange;
+    }
+
+    //local maxima which are enriched compared to the bins around them
+    //background: mean count of the bins up to windowBins away, without the peak bin and its direct neighbours
+    //a peak needs at least minCount shifts in its bin and minEnrichment times the background (the background is at least 1)
+    //the shift of the peak is the weighted mean of the peak bin and its neighbours
+    public ArrayList<MassShiftPeak> peakPicker(int windowBins, double minEnrichment, long minCount) {
+        if (windowBins < 2)
+            throw new IllegalArgumentException("The window has to contain more than the direct neighbours! Window: "+windowBins);
+        ArrayList<MassShiftPeak> peaks = new ArrayList<>();
+        for (int i = 0; i < this.bins.length; i++) {
+            long count = this.bins[i];
+            if (count < minCount || count == 0)
+                continue;
+            //plateaus: only the first bin is a maximum
+            if (i > 0 && this.bins[i - 1] >= count)
+                continue;
+            if (i < this.bins.length - 1 && this.bins[i + 1] > count)
+                continue;
+
+            long backgroundSum = 0;
+            int backgroundBins = 0;
+            for (int j = Math.max(0, i - windowBins); j <= Math.min(this.bins.length - 1, i + windowBins); j++) {
+                if (Math.abs(j - i) <= 1)
+                    continue;
+                backgroundSum += this.bins[j];
+                backgroundBins++;
+            }
+            double background = backgroundBins == 0 ? 0 : (double) backgroundSum / backgroundBins;
+            double enrichment = count / Math.max(background, 1);
+            if (enrichment < minEnrichment)
+                continue;
+
+            double weightedShift = 0;
+            long weights = 0;
+            for (int j = Math.max(0, i - 1); j <= Math.min(this.bins.length - 1, i + 1); j++) {
+                weightedShift += this.bins[j] * getBinCenter(j);
+                weights += this.bins[j];
+            }
+            peaks.add(new MassShiftPeak(weightedShift / weights, count, background, enrichment));
+        }
+        return peaks;
+    }
+
+    public double getBinLowerEdge(int index) {
+        return this.minShift + index * this.binWidth;
+    }
+
+    public double getBinCenter(int index) {
+        return this.minShift + (index + 0.5) * this.binWidth;
+    }
+
+    public long getBinCount(int index) {
+        return this.bins[index];
+    }
+
+    public int getNumberOfBins() {
+        return this.bins.length;
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (long count : this.bins) {
+            total += count;
+        }
+        return total;
+    }
+
+    //number of shifts (scan-peptide pairs) below minShift or from maxShift on
+    public long getOutOfRange() {
+        return this.outOfRange;
+    }
+
+    public double getMinShift() {
+        return this.minShift;
+    }
+
+    public double getMaxShift() {
+        return this.maxShift;
+    }
+
+    public double getBinWidth() {
+        return this.binWidth;
+    }
+}
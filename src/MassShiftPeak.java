@@ -0,0 +1,33 @@
+//enriched precursor mass shift, as found by MassShiftHistogram.peakPicker
+public class MassShiftPeak {
+    private double shift;
+    private long count;
+    private double background;
+    private double enrichment;
+
+    public MassShiftPeak(double shiftIn, long countIn, double backgroundIn, double enrichmentIn) {
+        this.shift = shiftIn;
+        this.count = countIn;
+        this.background = backgroundIn;
+        this.enrichment = enrichmentIn;
+    }
+
+    //mass shift [Da]
+    public double getShift() {
+        return this.shift;
+    }
+
+    //shifts in the peak bin
+    public long getCount() {
+        return this.count;
+    }
+
+    //mean count of the bins around the peak
+    public double getBackground() {
+        return this.background;
+    }
+
+    public double getEnrichment() {
+        return this.enrichment;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//histogram of non-negative long values (e.g. latencies in ns or matches per spectrum) with one bin per power of two
+    //bin 0 holds 0, bin i holds the values from 2^(i-1) to 2^i - 1; percentiles are the upper end of their bin (at most the maximum), so they are at most 2x too high
+    //values can be added by several threads at the same time without locks
+public class MetricHistogram {
+    private static final int BINS = 64;
+
+    private String name;
+    private AtomicLongArray bins = new AtomicLongArray(BINS);
+    private AtomicLong count = new AtomicLong();
+    private AtomicLong sum = new AtomicLong();
+    private AtomicLong max = new AtomicLong();
+
+    public MetricHistogram(String nameIn) {
+        this.name = nameIn;
+    }
+
+    public void valueAdder(long valueIn) {
+        if (valueIn < 0)
+            throw new IllegalArgumentException("Histogram values can't be negative! Value: "+valueIn);
+        this.bins.incrementAndGet(binIndex(valueIn));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(valueIn);
+        long currentMax = this.max.get();
+        while (valueIn > currentMax && !this.max.compareAndSet(currentMax, valueIn)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    private static int binIndex(long valueIn) {
+        return 64 - Long.numberOfLeadingZeros(valueIn);
+    }
+
+    private static long binUpperEnd(int binIndex) {
+        if (binIndex == 0)
+            return 0;
+        if (binIndex == BINS - 1)
+            return Long.MAX_VALUE;
+        return (1L << binIndex) - 1;
+    }
+
+    //value below which the given percentage of the values are; 0 if the histogram is empty
+    public long percentileCalculator(double percentIn) {
+        if (percentIn < 0 || percentIn > 100)
+            throw new IllegalArgumentException("Percentile has to be between 0 and 100! Percentile: "+percentIn);
+        long total = this.count.get();
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentIn / 100));
+        long counted = 0;
+        for (int i = 0; i < BINS; i++) {
+            counted += this.bins.get(i);
+            if (counted >= rank)
+                return Math.min(binUpperEnd(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long total = this.count.get();
+        if (total == 0)
+            return 0;
+        return (double) this.sum.get() / total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BINS; i++) {
+            this.bins.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+}
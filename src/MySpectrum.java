@@ -4,12 +4,19 @@ import java.util.ArrayList;
 /**
  * Created by Michael Stadlmeier on 6/20/2017.
  */
-// uses an ArrayList of Peaks to create a spectrum
+// stores the peaks of a spectrum in parallel primitive arrays (columnar), sorted by ascending mass
+// Peak objects are only created as lightweight views if a single peak is requested (e.g. for a match)
 public class MySpectrum {
-    private ArrayList<Peak> peakList;
+    private double[] mz;
+    private double[] intensity;
+    private byte[] charge;
     private int numberOfPeaks;
     private int scanNumber;
     private String scanHeader;
+    //intensity of the base peak, used to derive the rel. intensities
+    private double highestIntensity;
+    private int basePeakIndex;
+    private int[] chargeStateDistribution;
     //various Decimal Formats for Printer
     private DecimalFormat fourDec = new DecimalFormat("0.0000");
     private DecimalFormat twoDec = new DecimalFormat("0.00");
@@ -18,108 +25,110 @@ public class MySpectrum {
     public MySpectrum(ArrayList<Peak> peaksIn, int scanNumberIn, String scanHeaderIn){
         this.scanNumber = scanNumberIn;
         this.scanHeader = scanHeaderIn;
-        //make sure that peakList is ordered
-        //implemented QuickSort Algorithm
-        peaksIn = MassQuickSort.peakListQuickSort(peaksIn);
-        this.peakList = peakPacker(peaksIn);
-        this.numberOfPeaks = this.peakList.size();
+        //sort out all the peaks which don't belong to spectrum and copy the rest into the columns
+        int belongingPeaks = 0;
+        for (Peak peak : peaksIn){
+            if (peak.getScanNumber() == scanNumberIn)
+                belongingPeaks++;
+        }
+        double[] mzIn = new double[belongingPeaks];
+        double[] intensityIn = new double[belongingPeaks];
+        byte[] chargeIn = new byte[belongingPeaks];
+        int pointer = 0;
+        for (Peak peak : peaksIn){
+            if (peak.getScanNumber() != scanNumberIn)
+                continue;
+            mzIn[pointer] = peak.getMass();
+            intensityIn[pointer] = peak.getIntensity();
+            chargeIn[pointer] = (byte) peak.getCharge();
+            pointer++;
+        }
+        peakPacker(mzIn, intensityIn, chargeIn);
+    }
 
+    //columnar constructor: the arrays are taken over by the spectrum (not copied) and sorted in place
+    //chargeIn can be null if the charge states of the peaks are unknown
+    public MySpectrum(double[] mzIn, double[] intensityIn, byte[] chargeIn, int scanNumberIn, String scanHeaderIn){
+        if (mzIn.length != intensityIn.length || (chargeIn != null && chargeIn.length != mzIn.length))
+            throw new IllegalArgumentException("Peak columns differ in length! m/z: "+mzIn.length+" intensity: "+intensityIn.length);
+        this.scanNumber = scanNumberIn;
+        this.scanHeader = scanHeaderIn;
+        if (chargeIn == null)
+            chargeIn = new byte[mzIn.length];
+        peakPacker(mzIn, intensityIn, chargeIn);
     }
 
 
-    //use this function to remove peaks not wanted in spectrum and to assign rel Intensities and base peak
-    private ArrayList<Peak> peakPacker (ArrayList<Peak> peaksToPack){
-        ArrayList<Peak> packedPeaks = new ArrayList<>();
-        //set scanNumber from respective MySpectrum
-        int scanNumber = this.scanNumber;
-        double highestInt = 0;
-        double currentInt;
-        double relIntCalc;
-        int wrongScanNumber = 0;
-        int peakNumber = peaksToPack.size();
-//sort out all the peaks which don't belong to spectrum
-        for (int a = 0; a < peakNumber; a++) {
-            if (scanNumber != peaksToPack.get(a).getScanNumber()) {
-                peaksToPack.remove(a);
-                peakNumber = peakNumber -1;
-                wrongScanNumber++;
-            }
-        }
+    //use this function to sort the columns and to determine base peak and charge state distribution
+    private void peakPacker (double[] mzIn, double[] intensityIn, byte[] chargeIn){
+        //make sure that the peaks are ordered
+        MassQuickSort.peakArrayQuickSort(mzIn, intensityIn, chargeIn);
+        this.mz = mzIn;
+        this.intensity = intensityIn;
+        this.charge = chargeIn;
+        this.numberOfPeaks = mzIn.length;
         //find highest intensity
-        for (Peak peak : peaksToPack){
-            currentInt = peak.getIntensity();
-            if (currentInt > highestInt){
-                highestInt = currentInt;
+        this.highestIntensity = 0;
+        for (double currentInt : intensityIn){
+            if (currentInt > this.highestIntensity){
+                this.highestIntensity = currentInt;
             }
         }
-        //calculate rel Intensities
-        for (Peak peak : peaksToPack){
-            relIntCalc = (peak.getIntensity()/highestInt)*100;
-            peak.setRelInt(relIntCalc);
-            if (relIntCalc == 100){
-                peak.setBasePeak();
-            }
+        //base peak is the (last) peak with a rel. Intensity of 100
+        this.basePeakIndex = 0;
+        for (int i = 0; i < this.numberOfPeaks; i++){
+            if (getRelIntensity(i) == 100)
+                this.basePeakIndex = i;
         }
+        //charge state distribution is needed for every peptide compared with this spectrum, so it is counted once
+        this.chargeStateDistribution = new int[6];
+        for (byte current : chargeIn){
+            if (current >= 0 && current <= 4)
+                this.chargeStateDistribution[current]++;
+            else
+                this.chargeStateDistribution[5]++;
+        }
+    }
 
-        /*System.out.println("");
-        System.out.println("Generating Peak list:");
-        System.out.println("");
 
-        System.out.println(""+wrongScanNumber+" peak(s) were removed(different scan number).");
-        System.out.println("");*/
 
-        return peaksToPack;
-    }
 
+    //column getter, the arrays are shared and must not be changed
+    public double[] getMzArray(){return this.mz;}
+    public double[] getIntensityArray(){return this.intensity;}
+    public byte[] getChargeArray(){return this.charge;}
 
+    //single peak getter
+    public double getMz(int index){return this.mz[index];}
+    public double getIntensity(int index){return this.intensity[index];}
+    public int getCharge(int index){return this.charge[index];}
+    public double getRelIntensity(int index){return (this.intensity[index]/this.highestIntensity)*100;}
 
+    //creates a Peak view of the peak at the given index
+    public Peak getPeak(int index){
+        Peak peak = new Peak(this.mz[index], this.intensity[index], this.charge[index], this.scanNumber);
+        double relInt = getRelIntensity(index);
+        peak.setRelInt(relInt);
+        if (relInt == 100)
+            peak.setBasePeak();
+        return peak;
+    }
 
-    public ArrayList<Peak> getPeakList(){ return this.peakList;}
+    //creates Peak views for all the peaks; use the column getters in loops over the whole spectrum
+    public ArrayList<Peak> getPeakList(){
+        ArrayList<Peak> peakList = new ArrayList<>(this.numberOfPeaks);
+        for (int i = 0; i < this.numberOfPeaks; i++){
+            peakList.add(getPeak(i));
+        }
+        return peakList;
+    }
     public int getScanNumber(){return   this.scanNumber;}
     public int getNumberOfPeaks(){return this.numberOfPeaks;}
     public String getScanHeader(){return this.scanHeader;}
-    public int getBasePeakIndex(){
-        int index = 0;
-        for (int i = 0; i<this.numberOfPeaks;i++){
-            if (this.peakList.get(i).getBasePeak())
-                index = i;
-        }
-        return index;
-    }
+    public int getBasePeakIndex(){return this.basePeakIndex;}
 
     public int[] getChargeStateDistributionNumber(){
-        int chargeUnknown=0;
-        int charge1=0;
-        int charge2=0;
-        int charge3=0;
-        int charge4=0;
-        int chargeHigher=0;
-        for (Peak peak : this.peakList){
-            int current = peak.getCharge();
-            switch(current){
-                case 0: chargeUnknown++;
-                break;
-                case 1: charge1++;
-                break;
-                case 2: charge2++;
-                break;
-                case 3: charge3++;
-                break;
-                case 4: charge4++;
-                break;
-                default:
-                    chargeHigher++;
-                    break;
-            }
-        }
-int[] chargeStateDistri = new int[6];
-        chargeStateDistri[0] = chargeUnknown;
-        chargeStateDistri[1] = charge1;
-        chargeStateDistri[2] = charge2;
-        chargeStateDistri[3] = charge3;
-        chargeStateDistri[4] = charge4;
-        chargeStateDistri[5] = chargeHigher;
-        return chargeStateDistri;
+        return this.chargeStateDistribution.clone();
     }
 
     public void spectrumPrinter(){
@@ -128,39 +137,45 @@ int[] chargeStateDistri = new int[6];
         System.out.println("Scan Header: "+this.scanHeader);
         System.out.println("Scan Number: "+this.scanNumber);
         double summedIntensity = 0;
-        for (Peak peak : this.peakList){
-            System.out.println("Peak mass: "+fourDec.format(peak.getMass())
-                    +"   Charge: "+peak.getCharge()
-                    +"   Rel. Int.: "+twoDec.format(peak.getRelIntensity())
-                    +"   Base Peak: "+peak.getBasePeak());
-            summedIntensity += peak.getRelIntensity();
+        for (int i = 0; i < this.numberOfPeaks; i++){
+            System.out.println("Peak mass: "+fourDec.format(this.mz[i])
+                    +"   Charge: "+this.charge[i]
+                    +"   Rel. Int.: "+twoDec.format(getRelIntensity(i))
+                    +"   Base Peak: "+(getRelIntensity(i) == 100));
+            summedIntensity += getRelIntensity(i);
         }
         System.out.println("");
         System.out.println("General spectra properties:");
         System.out.println("");
-        System.out.println("Number of Peaks: "+this.peakList.size());
-        System.out.println("Mean rel. Intensity: "+twoDec.format((summedIntensity / this.peakList.size()))+"%");
-        int basePeakIndex = this.getBasePeakIndex();
-        double maxInt = this.peakList.get(basePeakIndex).getIntensity();
+        System.out.println("Number of Peaks: "+this.numberOfPeaks);
+        System.out.println("Mean rel. Intensity: "+twoDec.format((summedIntensity / this.numberOfPeaks))+"%");
+        double maxInt = this.intensity[this.basePeakIndex];
         System.out.println("Base peak Intensity: "+scientific.format(maxInt));
         System.out.println("End of spectrum analysis!");
         System.out.println("");
     }
 
     public void smallIntensitiesRemover (){
-        ArrayList<Peak> convolutedList = this.peakList;
-        ArrayList<Peak> deconvolutedList = new ArrayList<>();
-        int removedPeaks = 0;
-        for (Peak p : convolutedList){
-            if (p.getIntensity() != 0){
-                deconvolutedList.add(p);
-                removedPeaks++;
+        int keptPeaks = 0;
+        for (double currentInt : this.intensity){
+            if (currentInt != 0)
+                keptPeaks++;
+        }
+        double[] mzIn = new double[keptPeaks];
+        double[] intensityIn = new double[keptPeaks];
+        byte[] chargeIn = new byte[keptPeaks];
+        int pointer = 0;
+        for (int i = 0; i < this.numberOfPeaks; i++){
+            if (this.intensity[i] != 0){
+                mzIn[pointer] = this.mz[i];
+                intensityIn[pointer] = this.intensity[i];
+                chargeIn[pointer] = this.charge[i];
+                pointer++;
             }
         }
-        System.out.println("Number of removed Peaks with low intensity: "+removedPeaks);
+        System.out.println("Number of removed Peaks with low intensity: "+(this.numberOfPeaks - keptPeaks));
 
-        this.peakList = peakPacker(deconvolutedList);
-        this.numberOfPeaks = this.peakList.size();
+        peakPacker(mzIn, intensityIn, chargeIn);
     }
 
 }
@@ -3,7 +3,6 @@ import uk.ac.ebi.pride.tools.jmzreader.model.Spectrum;
 import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.Map;
 
 /**
@@ -14,35 +13,51 @@ import java.util.Map;
     //provided by Griss J, Reisinger F, Hermjakob H, Vizcaíno JA. jmzReader: A Java parser library to process and visualize multiple text and XML-based mass spectrometry data formats. Proteomics. 2012 Mar;12(6):795-8.
     //converts one read out mzXML spectrum into Peak- and MySpectrum objects
 public class MzXMLReadIn {
-    private static DecimalFormat fourDec = new DecimalFormat("0.0000");
-
     //use of this class: get a mzXML spectrum with the specified Index
     //get the peak List as a map
-    //parse the peak list into an new MySpectrum were additional parameters are assigned (rel Int, charge State)
+    //parse the peak list into the columns of a new MySpectrum were additional parameters are assigned (rel Int, charge State)
     public static MySpectrum mzXMLToMySpectrum(MzXMLFile completeMzXML, String scanNumberIn) throws JMzReaderException {
+        Spectrum currentSpectrum = completeMzXML.getSpectrumById(scanNumberIn);
+        //scan Number is set
+        int scanNumber = Integer.parseInt(scanNumberIn);
+        return spectrumToMySpectrum(currentSpectrum, scanNumber);
+    }
+
+    //converts an already read mzXML spectrum (random access or from a scan iterator) into a MySpectrum
+    public static MySpectrum spectrumToMySpectrum(Spectrum currentSpectrum, int scanNumber) {
         //MySpectrum requires PeakList, scan number as int and scan header
         //Peak requires: mass, intensity, scan number affiliation; charge is optional
-        Spectrum currentSpectrum = completeMzXML.getSpectrumById(scanNumberIn);
         //scan Header shows precursor M/z and charge of precursor
+        String scanHeader = scanHeaderCreator(currentSpectrum.getPrecursorMZ(), currentSpectrum.getPrecursorCharge());
+        //get the peakList and write it directly into the peak columns of the spectrum
+        //charge states of the peaks are unknown in the mzXML
+        Map<Double, Double> mzXMLPeakList = currentSpectrum.getPeakList();
+        double[] masses = new double[mzXMLPeakList.size()];
+        double[] intensities = new double[mzXMLPeakList.size()];
+        int pointer = 0;
+        for (Map.Entry<Double, Double> peak : mzXMLPeakList.entrySet()){
+            masses[pointer] = peak.getKey();
+            intensities[pointer] = peak.getValue();
+            pointer++;
+        }
+        MySpectrum spectrumOut = new MySpectrum(masses, intensities, null, scanNumber, scanHeader);
+
+        return spectrumOut;
+    }
+
+    //scan header as "precursor m/z;precursor charge+", "NA;NA+" if the precursor m/z is missing
+    //a missing charge is written as null
+    public static String scanHeaderCreator(Double precursorMZ, Integer precursorCharge) {
+        //DecimalFormat is not thread safe, so every call uses its own
+        DecimalFormat fourDec = new DecimalFormat("0.0000");
         String scanHeader = "";
         try {
-            scanHeader += fourDec.format(currentSpectrum.getPrecursorMZ()) + ";" + currentSpectrum.getPrecursorCharge();
+            scanHeader += fourDec.format(precursorMZ) + ";" + precursorCharge;
         }
         catch (IllegalArgumentException e){
             scanHeader = "NA;NA";
         }
         scanHeader+= "+";
-        //scan Number is set
-        int scanNumber = Integer.parseInt(scanNumberIn);
-        //get the peakList for creation of the Peak Objects
-        ArrayList<Peak> peakList = new ArrayList<>();
-        Map<Double, Double> mzXMLPeakList = currentSpectrum.getPeakList();
-        for (Double mass : mzXMLPeakList.keySet()){
-            Double intensity = mzXMLPeakList.get(mass);
-            peakList.add(new Peak(mass, intensity, scanNumber));
-        }
-        MySpectrum spectrumOut = new MySpectrum(peakList, scanNumber, scanHeader);
-
-        return spectrumOut;
+        return scanHeader;
     }
 }
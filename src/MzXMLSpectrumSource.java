@@ -0,0 +1,22 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+import uk.ac.ebi.pride.tools.jmzreader.model.Spectrum;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
+
+//random access to the spectra of a mzXML-file, every request is a lookup with getSpectrumById
+    //scan numbers can be requested in any order
+    //can be shared by several threads: only the lookup in the mzXML-file is done one at a time, the conversion into MySpectrum runs in parallel
+public class MzXMLSpectrumSource implements SpectrumSource {
+    private MzXMLFile mzXMLFile;
+
+    public MzXMLSpectrumSource(MzXMLFile mzXMLFileIn){
+        this.mzXMLFile = mzXMLFileIn;
+    }
+
+    public MySpectrum getSpectrum(int scanNumber) throws JMzReaderException {
+        Spectrum spectrum;
+        synchronized (this.mzXMLFile) {
+            spectrum = this.mzXMLFile.getSpectrumById(Integer.toString(scanNumber));
+        }
+        return MzXMLReadIn.spectrumToMySpectrum(spectrum, scanNumber);
+    }
+}
@@ -0,0 +1,67 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLParsingException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLSpectrum;
+import uk.ac.ebi.pride.tools.mzxml_parser.mzxml.model.Scan;
+
+//reads the MS2 scans of a mzXML-file in one forward pass with the MS2 scan iterator
+    //scan numbers have to be requested in ascending order (e.g. evidence rows sorted by "MS/MS Scan Number")
+    //scans in between are skipped without creating a spectrum, so only one spectrum is held in memory at a time
+    //if a requested scan number is missing, the scan read after it is kept, so it can still be requested next
+public class MzXMLSpectrumStream implements SpectrumSource {
+    private MzXMLFile.MzXMLScanIterator ms2Iterator;
+    private MySpectrum lastSpectrum;
+    //scan number of the last scan taken from the iterator
+    private long lastScanNumber = -1;
+    private long lastRequestedScanNumber = -1;
+    //scan which was read after a requested scan number which is missing; it is returned when it is requested next
+    private Scan pendingScan;
+
+    public MzXMLSpectrumStream(MzXMLFile mzXMLFileIn){
+        this.ms2Iterator = mzXMLFileIn.getMS2ScanIterator();
+    }
+
+    public MySpectrum getSpectrum(int scanNumber) throws JMzReaderException {
+        //the same scan can be requested for multiple evidence rows in a row
+        if (this.lastSpectrum != null && this.lastSpectrum.getScanNumber() == scanNumber)
+            return this.lastSpectrum;
+        if (scanNumber < this.lastRequestedScanNumber)
+            throw new JMzReaderException("Scan number "+scanNumber+" was requested after scan number "+this.lastRequestedScanNumber+"! Sort the requests by scan number.");
+        this.lastRequestedScanNumber = scanNumber;
+
+        if (this.pendingScan != null) {
+            if (this.pendingScan.getNum() > scanNumber)
+                throw new JMzReaderException("No MS2 scan with scan number "+scanNumber+" found! Next MS2 scan: "+this.pendingScan.getNum());
+            Scan currentScan = this.pendingScan;
+            this.pendingScan = null;
+            if (currentScan.getNum() == scanNumber)
+                return spectrumCreator(currentScan, scanNumber);
+        }
+        //the scan was already read from the iterator: it is missing or could not be parsed
+        else if (scanNumber <= this.lastScanNumber)
+            throw new JMzReaderException("No MS2 scan with scan number "+scanNumber+" found!");
+
+        while (this.ms2Iterator.hasNext()){
+            Scan currentScan = this.ms2Iterator.next();
+            this.lastScanNumber = currentScan.getNum();
+            //skip scans which are not requested
+            if (this.lastScanNumber < scanNumber)
+                continue;
+            if (this.lastScanNumber > scanNumber) {
+                this.pendingScan = currentScan;
+                throw new JMzReaderException("No MS2 scan with scan number "+scanNumber+" found! Next MS2 scan: "+this.lastScanNumber);
+            }
+            return spectrumCreator(currentScan, scanNumber);
+        }
+        throw new JMzReaderException("No MS2 scan with scan number "+scanNumber+" found!");
+    }
+
+    private MySpectrum spectrumCreator(Scan scanIn, int scanNumber) throws JMzReaderException {
+        try {
+            this.lastSpectrum = MzXMLReadIn.spectrumToMySpectrum(new MzXMLSpectrum(scanIn), scanNumber);
+        } catch (MzXMLParsingException e) {
+            throw new JMzReaderException("Could not parse scan number "+scanNumber+"!", e);
+        }
+        return this.lastSpectrum;
+    }
+}
@@ -1,10 +1,12 @@
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 
 /**
  * Created by micha on 6/14/2017.
  */
 
+//single peak with basic information
+//peaks of a MySpectrum are stored in columns, MySpectrum.getPeak creates a Peak as a view of one of them
+
 public class Peak {
     private double mass;
     private int charge;
@@ -13,7 +15,6 @@ public class Peak {
     private boolean isBasePeak;
     private int scanNumberAffil;
     private boolean chargeStateKnown;
-    DecimalFormat twoDec = new DecimalFormat("0.00");
 
 
     //initial constructor for peaks
@@ -90,6 +91,8 @@ public class Peak {
 
 
     public void peakPrinter (){
+        //own format, since peaks are printed by several threads
+        DecimalFormat twoDec = new DecimalFormat("0.00");
         System.out.println("Mass: "+this.mass);
         System.out.println("Charge: "+this.charge);
         System.out.println("Intensity: "+this.intensity);
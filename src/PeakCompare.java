@@ -2,6 +2,7 @@ import com.sun.javaws.exceptions.InvalidArgumentException;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by micha on 6/21/2017.
@@ -11,80 +12,145 @@ import java.util.ArrayList;
     //utilizes Deviation Calc to generate the appropriate ppm windows
 public class PeakCompare {
     private DecimalFormat twoDec = new DecimalFormat("0.00");
-    private static DecimalFormat fiveDec = new DecimalFormat("0.00000");
+    //reporter tables of reporterFinder, by label and deviation
+    private static final ConcurrentHashMap<String, DiagnosticIonTable> REPORTER_TABLES = new ConcurrentHashMap<>();
 
     public static ArrayList<IonMatch> peakCompare(MySpectrum spectrumIn, Peptide peptideIn, double ppmDev) {
+        //local formats, peakCompare is called from several threads at once
         DecimalFormat twoDec = new DecimalFormat("0.00");
+        DecimalFormat fiveDec = new DecimalFormat("0.00000");
         ArrayList<IonMatch> matches = new ArrayList<>();
-        ArrayList<Peak> peakList = spectrumIn.getPeakList();
+        double[] peakMasses = spectrumIn.getMzArray();
         //check if many multiple charged peaks are contained in the spectrum (>2.5%)
         //if that's the case, invoke addition of fragment ion charge states
-        int[] chargeStateDistro = spectrumIn.getChargeStateDistributionNumber();
-        for (int i = 0; i<chargeStateDistro.length; i++){
-            double percentChargeState = ((double) chargeStateDistro[i])/spectrumIn.getNumberOfPeaks()*100;
-            if (percentChargeState > 2.5){
-                //charge state 1 is already initialized
-                //more than z = +5 is unrealistic
-                if (i>1 && i<5)
-                peptideIn.createAddFragmentIonChargestate(i);
-            }
+        for (int charge : additionalFragmentCharges(spectrumIn)){
+            peptideIn.createAddFragmentIonChargestate(charge);
         }
-        ArrayList<FragmentIon> fragmentIonsList = new ArrayList<>();
-        fragmentIonsList.addAll(peptideIn.getbIons());
-        fragmentIonsList.addAll(peptideIn.getyIons());
-        for (FragmentIon fragment : fragmentIonsList){
-            double[] massRange = DeviationCalc.ppmRangeCalc(ppmDev, fragment.getMToZ());
-            for (Peak peak : peakList){
-                if (peak.getMass() >= massRange[0]&& peak.getMass()<= massRange[1]){
-                    double deviation = DeviationCalc.ppmDeviationCalc(fragment.getMToZ(), peak.getMass());
-                    matches.add(new IonMatch(fragment, peak, deviation));
-                    System.out.println("Match! Ion: "+fragment.getCompleteIon()
-                            +" "+fragment.getCharge()+"+"
-                            +"  Mass found: "+fiveDec.format(peak.getMass()) + " m/z"
-                            +"   Deviation: " +twoDec.format(deviation)+" ppm"
-                            +"  rel. Int.: "+twoDec.format(peak.getRelIntensity())+"%"+
-                    "        is modfied: "+fragment.getModificationStatus());
+        //the fragment ions are checked in the order b-ions (all charge states), then y-ions (all charge states)
+        //only the m/z values of the fragment ion ladder are used, FragmentIon objects are only created for ions with a matching peak
+        //the peak masses are sorted by MySpectrum, so only the peaks inside the ppm window have to be visited
+        //binary search gives the first peak of the window, then walk up until the upper border is passed
+        //Peak objects are only created for matched peaks
+        char[] ionSeries = {'b', 'y'};
+        for (char series : ionSeries){
+            for (int charge : peptideIn.getFragmentCharges()){
+                double[] fragmentMToZ = peptideIn.getFragmentMToZ(series, charge);
+                for (int f = 0; f < fragmentMToZ.length; f++){
+                    double[] massRange = DeviationCalc.ppmRangeCalc(ppmDev, fragmentMToZ[f]);
+                    FragmentIon fragment = null;
+                    for (int p = lowerBoundIndex(peakMasses, massRange[0]); p < peakMasses.length; p++){
+                        if (peakMasses[p] > massRange[1])
+                            break;
+                        if (fragment == null)
+                            fragment = peptideIn.fragmentIonCreator(series, f + 1, charge);
+                        matches.add(ionMatchCreator(fragment, spectrumIn, p, twoDec, fiveDec));
+                    }
                 }
             }
-
         }
 
         return matches;
     }
 
-    public static ArrayList<ReporterMatch> reporterFinder(MySpectrum spectrumIn, String labelName, double ppmDev){
-        ArrayList<ReporterMatch> matchedReporters = new ArrayList<>();
-        double rep0Mass = 0;
-        double rep1Mass = 0;
-        if (!labelName.equals("EC")&&!labelName.equals("TMT"))
-            throw new IllegalArgumentException("Label unknown! Please use TMT or EC! Unknown Label: "+labelName);
-
-        //set reporter masses
-        if (labelName.equals("TMT")){
-            rep0Mass = 126.12773;
-            rep1Mass = 127.13108;
+    //compares all the label combinations of the model with the spectrum
+    //gives the same matches as peakCompare for every modified peptide of modCreatorEC/modCreatorTMT, one after another,
+    //but every fragment ion is only checked in the first combination it occurs in; later, identical fragment ions are left out, as are y-ions without label
+    public static ArrayList<IonMatch> labelCombinationCompare(MySpectrum spectrumIn, LabelCombinationModel modelIn, double ppmDev) {
+        DecimalFormat twoDec = new DecimalFormat("0.00");
+        DecimalFormat fiveDec = new DecimalFormat("0.00000");
+        ArrayList<IonMatch> matches = new ArrayList<>();
+        double[] peakMasses = spectrumIn.getMzArray();
+        //modified peptides have fragment ions with charge 1 and 2, further charge states are added if the spectrum contains many multiple charged peaks
+        ArrayList<Integer> charges = new ArrayList<>();
+        charges.add(1);
+        charges.add(2);
+        for (int charge : additionalFragmentCharges(spectrumIn)){
+            if (!charges.contains(charge))
+                charges.add(charge);
         }
+        int sequenceLength = modelIn.getSequenceLength();
+        char[] ionSeries = {'b', 'y'};
+        for (int c = 0; c < modelIn.getCombinationCount(); c++){
+            //the peptide is only created if one of its fragment ions matches
+            Peptide combinationPeptide = null;
+            for (char series : ionSeries){
+                double[] ladder = modelIn.getBLadder(c);
+                int firstNewIon = modelIn.firstNewBIon(c);
+                if (series == 'y'){
+                    ladder = modelIn.getYLadder(c);
+                    firstNewIon = modelIn.firstNewYIon(c);
+                }
+                for (int charge : charges){
+                    for (int ionNumber = firstNewIon; ionNumber <= sequenceLength; ionNumber++){
+                        double[] massRange = DeviationCalc.ppmRangeCalc(ppmDev, Peptide.fragmentMToZ(ladder[ionNumber - 1], charge));
+                        FragmentIon fragment = null;
+                        for (int p = lowerBoundIndex(peakMasses, massRange[0]); p < peakMasses.length; p++){
+                            if (peakMasses[p] > massRange[1])
+                                break;
+                            if (combinationPeptide == null)
+                                combinationPeptide = Peptide.modifiedPeptideCreator(modelIn.getSequence(), modelIn.getCombinationAcids(c));
+                            if (fragment == null)
+                                fragment = combinationPeptide.fragmentIonCreator(series, ionNumber, charge);
+                            matches.add(ionMatchCreator(fragment, spectrumIn, p, twoDec, fiveDec));
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
 
-        if (labelName.equals("EC")){
-            rep0Mass = 179.08487;
-            rep1Mass = 180.08823;
+    //fragment ion charge states above 1 which are present in more than 2.5% of the peaks
+    //charge state 1 is always initialized, more than z = +5 is unrealistic
+    public static ArrayList<Integer> additionalFragmentCharges(MySpectrum spectrumIn){
+        ArrayList<Integer> charges = new ArrayList<>();
+        int[] chargeStateDistro = spectrumIn.getChargeStateDistributionNumber();
+        for (int i = 0; i<chargeStateDistro.length; i++){
+            double percentChargeState = ((double) chargeStateDistro[i])/spectrumIn.getNumberOfPeaks()*100;
+            if (percentChargeState > 2.5 && i>1 && i<5)
+                charges.add(i);
         }
-        //calculate mass Ranges
-        double[] massRangeRep0 = DeviationCalc.ppmRangeCalc(ppmDev, rep0Mass);
-        double[] massRangeRep1 = DeviationCalc.ppmRangeCalc(ppmDev, rep1Mass);
+        return charges;
+    }
 
-        //check Spectrum if peaks match
-        ArrayList<Peak> peakList = spectrumIn.getPeakList();
+    private static IonMatch ionMatchCreator(FragmentIon fragment, MySpectrum spectrumIn, int peakIndex, DecimalFormat twoDec, DecimalFormat fiveDec){
+        Peak peak = spectrumIn.getPeak(peakIndex);
+        double deviation = DeviationCalc.ppmDeviationCalc(fragment.getMToZ(), peak.getMass());
+        if (AnalysisLog.isDebugEnabled())
+            AnalysisLog.debug("Match! Ion: "+fragment.getCompleteIon()
+                    +" "+fragment.getCharge()+"+"
+                    +"  Mass found: "+fiveDec.format(peak.getMass()) + " m/z"
+                    +"   Deviation: " +twoDec.format(deviation)+" ppm"
+                    +"  rel. Int.: "+twoDec.format(peak.getRelIntensity())+"%"+
+            "        is modfied: "+fragment.getModificationStatus());
+        return new IonMatch(fragment, peak, deviation);
+    }
 
-        for (Peak peak : peakList){
-            if (peak.getMass()>=massRangeRep0[0] && peak.getMass() <= massRangeRep0[1])
-                matchedReporters.add(new ReporterMatch(peak, rep0Mass, labelName, "Rep0"));
-            if (peak.getMass()>=massRangeRep1[0] && peak.getMass() <= massRangeRep1[1])
-                matchedReporters.add(new ReporterMatch(peak, rep1Mass, labelName, "Rep1"));
-            if (peak.getMass() > (rep1Mass+20))
-                break;
+    //returns the index of the first peak with a mass >= massIn, or the number of peaks if there is none
+    //the peak masses have to be sorted ascending (see MassQuickSort)
+    public static int lowerBoundIndex(double[] sortedMassesIn, double massIn){
+        int low = 0;
+        int high = sortedMassesIn.length;
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (sortedMassesIn[middle] < massIn)
+                low = middle + 1;
+            else
+                high = middle;
         }
+        return low;
+    }
 
-        return matchedReporters;
+    //searches Rep0 and Rep1 of the label (TMT or EC) with the reporter table of the label and deviation
+    //the tables are created once and kept, since the same label and deviation are used for every spectrum of a run
+    public static ArrayList<ReporterMatch> reporterFinder(MySpectrum spectrumIn, String labelName, double ppmDev){
+        String tableKey = labelName + ";" + ppmDev;
+        DiagnosticIonTable reporterTable = REPORTER_TABLES.get(tableKey);
+        if (reporterTable == null){
+            //if two threads create the same table, both tables are the same
+            reporterTable = DiagnosticIonTable.reporterTableCreator(labelName, ppmDev);
+            REPORTER_TABLES.put(tableKey, reporterTable);
+        }
+        return reporterTable.diagnosticIonFinder(spectrumIn);
     }
 }
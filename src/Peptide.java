@@ -9,58 +9,45 @@ public class Peptide {
     private int sequenceLength;
     private double exactMass;
     private SumFormula sumFormula;
-    private ArrayList<FragmentIon> bIons;
-    private ArrayList<FragmentIon> yIons;
+    //fragment ion ladder, see ladderBuilder
+    private double[] bLadderMasses;
+    private double[] yLadderMasses;
+    private ArrayList<Integer> fragmentCharges;
+    private ArrayList<double[]> bIonMToZ;
+    private ArrayList<double[]> yIonMToZ;
     private boolean hasModification;
     private ArrayList<AminoAcid> aminoAcidsList;
     private String unmodifiedSequence;
 
+    private static final double WATER_MASS = SumFormula.getWaterFormula().getExactMass();
+
     private DecimalFormat fiveDec = new DecimalFormat("0.00000");
 
     //ArrayList<AminoAcid> acids usually contains all 20 natural amino acids
     //ArrayList<AminoAcid> aminoAcidsList contains only aminoacids in the peptide, in order of the sequence
     public Peptide(String sequenceIn, ArrayList<AminoAcid> acids) {
+        this(sequenceIn, ResidueTable.residueTableGetter(acids));
+    }
+
+    //same peptide with the amino acids looked up in a ResidueTable
+    public Peptide(String sequenceIn, ResidueTable residuesIn) {
         this.sequence = sequenceIn.toUpperCase();
         this.unmodifiedSequence = sequenceIn.toUpperCase();
         this.sequenceLength = sequenceIn.length();
-        this.aminoAcidsList = new ArrayList<>();
-        boolean aaNotFound = true;
-        //first for loop: go through the whole Sequence
+        this.aminoAcidsList = new ArrayList<>(this.sequenceLength);
+        //unknown amino acids throw an IllegalArgumentException
         for (int a = 0; a < this.sequenceLength; a++) {
-            char current = this.sequence.charAt(a);
-            aaNotFound = true;
-            //second for loop: go through all the amino acids until you find the right one
-            //if the right one is found, aaNotFound = false and the loop exits prematurely
-            for (int b = 0; b < acids.size() && aaNotFound; b++) {
-                aaNotFound = true;
-                if (current == acids.get(b).get1Let()) {
-                    //create elongated SumFormula
-                    AminoAcid currentAcid = acids.get(b);
-                    this.aminoAcidsList.add(currentAcid);
-                    aaNotFound = false;
-                }
-                //handling of unknown amino acids
-                if (b == acids.size() - 1 && aaNotFound) {
-                    throw new IllegalArgumentException("Amino Acid unknown: " + current);
-                }
-            }
+            this.aminoAcidsList.add(residuesIn.residueGetter(this.sequence.charAt(a)));
         }
         //now, amino acids are elements in a list, creating the peptide
         //SumFormula of Peptide is created and exact mass is calculated
         //to do so, Water is added to waterloss_sumformulas
         //at the same time, AminoAcids are checked for modification
-        SumFormula addFormula = SumFormula.getWaterFormula();
         this.hasModification = false;
-        for (AminoAcid aa : this.aminoAcidsList) {
-            addFormula = SumFormula.sumFormulaJoiner(addFormula, aa.getWaterLossFormula());
-        }
-        this.sumFormula = addFormula;
-        this.exactMass = this.sumFormula.getExactMass();
+        formulaBuilder();
         //create Fragment ions
-        this.bIons = new ArrayList<>();
-        this.yIons = new ArrayList<>();
-        bIonBuilder(1);
-        yIonBuilder(1);
+        ladderBuilder();
+        fragmentChargeAdder(1);
 
     }
     //implement new constructor, specifically for modified peptides
@@ -70,141 +57,154 @@ public class Peptide {
         this.sequenceLength = sequenceIn.length();
         this.unmodifiedSequence = sequenceIn;
         //construct new Sequence which annotates modified AminoAcid with *
-        String[] modPos = new String[sequenceIn.length()];
+        StringBuilder modSequence = new StringBuilder();
         for (int a = 0; a < this.sequenceLength; a++) {
-            modPos[a] = "" + aminoAcidsListIn.get(a).get1Let();
+            modSequence.append(aminoAcidsListIn.get(a).get1Let());
             //write Modification name in brackets
             //write EC in brackets if you have isobaric Label modification
             if (aminoAcidsListIn.get(a).getModificationStatus()) {
 
                 if (aminoAcidsListIn.get(a).getModification().getLabelStatus()) {
                     if (aminoAcidsListIn.get(a).getModification().getModificationName().contains("EC"))
-                        modPos[a] += "(EC)";
+                        modSequence.append("(EC)");
                     if (aminoAcidsListIn.get(a).getModification().getModificationName().contains("TMT"))
-                        modPos[a] += "(TMT)";
+                        modSequence.append("(TMT)");
                 } else {
-                    modPos[a] += "(" + aminoAcidsListIn.get(a).getModification().getModificationName() + ")";
+                    modSequence.append("(").append(aminoAcidsListIn.get(a).getModification().getModificationName()).append(")");
 
                 }
             }
-            this.sequence = "";
-            for (String aa : modPos) {
-                this.sequence += aa;
-            }
-            //aminoAcids List is just the list supplied by modification method
-            this.aminoAcidsList = aminoAcidsListIn;
-            //calculate SumFormula and exact masses
-            //for peptide, sum up waterloss masses and waterFormula
-            SumFormula addFormula = SumFormula.getWaterFormula();
-            for (AminoAcid aa : this.aminoAcidsList) {
-                addFormula = SumFormula.sumFormulaJoiner(addFormula, aa.getWaterLossFormula());
-            }
-            this.sumFormula = addFormula;
-            this.exactMass = this.sumFormula.getExactMass();
-            //create b- and y-ions
-            this.bIons = new ArrayList<>();
-            this.yIons = new ArrayList<>();
-            bIonBuilder(1);
-            yIonBuilder(1);
-            bIonBuilder(2);
-            yIonBuilder(2);
-
         }
+        this.sequence = modSequence.toString();
+        //aminoAcids List is just the list supplied by modification method
+        this.aminoAcidsList = aminoAcidsListIn;
+        //calculate SumFormula and exact masses
+        formulaBuilder();
+        //create b- and y-ions
+        ladderBuilder();
+        fragmentChargeAdder(1);
+        fragmentChargeAdder(2);
     }
 
 
+    //for peptide, sum up waterloss formulas and waterFormula
+    private void formulaBuilder() {
+        SumFormula[] formulas = new SumFormula[this.aminoAcidsList.size() + 1];
+        formulas[0] = SumFormula.getWaterFormula();
+        for (int a = 0; a < this.aminoAcidsList.size(); a++) {
+            formulas[a + 1] = this.aminoAcidsList.get(a).getWaterLossFormula();
+        }
+        this.sumFormula = SumFormula.sumFormulaJoiner(formulas);
+        this.exactMass = this.sumFormula.getExactMass();
+    }
 
-    private ArrayList<FragmentIon> bIonBuilder(int chargeState) {
-        if (chargeState == 0)
-            throw new IllegalArgumentException("Charge state of Fragment Ions can't be 0!");
+    //cumulative residue masses: bLadderMasses[i] is the mass of the first i+1 residues, yLadderMasses[i] the mass of the last i+1 residues plus water
+    //the fragment ion masses of every charge state are derived from these two arrays
+    private void ladderBuilder() {
+        this.bLadderMasses = new double[this.sequenceLength];
+        this.yLadderMasses = new double[this.sequenceLength];
+        fragmentLadderCalculator(this.aminoAcidsList, this.bLadderMasses, this.yLadderMasses);
+        this.fragmentCharges = new ArrayList<>();
+        this.bIonMToZ = new ArrayList<>();
+        this.yIonMToZ = new ArrayList<>();
+    }
 
-        //one Proton is added to not create empty sum formula
-        SumFormula runningFormula = new SumFormula("H+");
-        //this loop determines charge state; starts at 1 because one proton has already been added
-        for (int a = 1; a < chargeState; a++) {
-            runningFormula = SumFormula.sumFormulaJoiner(runningFormula, SumFormula.getProtonFormula());
+    //fills the cumulative residue masses of the amino acids into bLadderOut and yLadderOut (both as long as the list of amino acids)
+    public static void fragmentLadderCalculator(ArrayList<AminoAcid> acidsIn, double[] bLadderOut, double[] yLadderOut) {
+        int length = acidsIn.size();
+        double runningMass = 0;
+        for (int i = 0; i < length; i++) {
+            runningMass += acidsIn.get(i).getwaterLossMass();
+            bLadderOut[i] = runningMass;
         }
-        //implement knowledge about modification status
-        boolean isModified = false;
-
-        //this loop goes through all the amino acids
-        ArrayList<AminoAcid> aminoAcidsComposition = new ArrayList<>();
-        for (int i = 0; i < this.sequenceLength; i++) {
-            runningFormula = SumFormula.sumFormulaJoiner(runningFormula, this.aminoAcidsList.get(i).getWaterLossFormula());
-            aminoAcidsComposition.add(this.aminoAcidsList.get(i));
-            if (this.aminoAcidsList.get(i).getModificationStatus())
-                isModified = true;
-            ArrayList<AminoAcid> completeAAComp = new ArrayList<>();
-            completeAAComp.addAll(aminoAcidsComposition);
-            this.bIons.add(new FragmentIon(runningFormula, chargeState, this, 'b', i + 1, isModified, completeAAComp));
+        runningMass = WATER_MASS;
+        for (int i = 0; i < length; i++) {
+            runningMass += acidsIn.get(length - 1 - i).getwaterLossMass();
+            yLadderOut[i] = runningMass;
         }
-        return bIons;
     }
 
-    private ArrayList<FragmentIon> yIonBuilder(int chargeState) {
+    //m/z of a fragment ion with the mass ladderMassIn (without protons) and the charge chargeIn
+    public static double fragmentMToZ(double ladderMassIn, int chargeIn) {
+        return (ladderMassIn + chargeIn * AtomicMasses.getPROTON()) / chargeIn;
+    }
+
+    //adds the m/z values of all b- and y-ions with the charge state: index i belongs to b(i+1) and y(i+1)
+    private void fragmentChargeAdder(int chargeState) {
         if (chargeState == 0)
             throw new IllegalArgumentException("Charge state of Fragment Ions can't be 0!");
-
-        SumFormula runningFormula = SumFormula.getWaterFormula();
-        //this loop determines charge state; can start from 0, no proton in yet
-        for (int a = 0; a < chargeState; a++) {
-            runningFormula = SumFormula.sumFormulaJoiner(runningFormula, SumFormula.getProtonFormula());
+        double[] bMToZ = new double[this.sequenceLength];
+        double[] yMToZ = new double[this.sequenceLength];
+        for (int i = 0; i < this.sequenceLength; i++) {
+            bMToZ[i] = fragmentMToZ(this.bLadderMasses[i], chargeState);
+            yMToZ[i] = fragmentMToZ(this.yLadderMasses[i], chargeState);
         }
-        //implement knowledge about modification status
-        boolean isModified = false;
-        int modPosition = 0;
-        boolean hasModAtAll = false;
-        for (int b = 0; b < this.aminoAcidsList.size(); b++) {
-            if (aminoAcidsList.get(b).getModificationStatus()) {
-                modPosition = b+1; //+1 because converting of index in real position
-                hasModAtAll = true;
+        this.fragmentCharges.add(chargeState);
+        this.bIonMToZ.add(bMToZ);
+        this.yIonMToZ.add(yMToZ);
+    }
+
+    //m/z values of the b- or y-ion ladder of one charge state, index i belongs to ion number i+1
+    //the array is shared and must not be changed
+    public double[] getFragmentMToZ(char ionSeriesIn, int chargeIn) {
+        int chargeIndex = this.fragmentCharges.indexOf(chargeIn);
+        if (chargeIndex == -1)
+            throw new IllegalArgumentException("Fragment ions with charge "+chargeIn+" were not created for peptide "+this.sequence);
+        if (ionSeriesIn == 'b')
+            return this.bIonMToZ.get(chargeIndex);
+        if (ionSeriesIn == 'y')
+            return this.yIonMToZ.get(chargeIndex);
+        throw new IllegalArgumentException("Unknown ion series: "+ionSeriesIn);
+    }
+
+    //charge states of the fragment ions, in the order they were created
+    public ArrayList<Integer> getFragmentCharges() {
+        return this.fragmentCharges;
+    }
+
+    //creates the FragmentIon object for one entry of the ladder, e.g. if the ion matched a peak
+    public FragmentIon fragmentIonCreator(char ionSeriesIn, int ionNumberIn, int chargeIn) {
+        double mass;
+        if (ionSeriesIn == 'b')
+            mass = this.bLadderMasses[ionNumberIn - 1];
+        else if (ionSeriesIn == 'y')
+            mass = this.yLadderMasses[ionNumberIn - 1];
+        else
+            throw new IllegalArgumentException("Unknown ion series: "+ionSeriesIn);
+        return new FragmentIon(this, ionSeriesIn, ionNumberIn, chargeIn, mass + chargeIn * AtomicMasses.getPROTON());
+    }
+
+    private ArrayList<FragmentIon> fragmentIonListCreator(char ionSeriesIn) {
+        ArrayList<FragmentIon> fragmentIons = new ArrayList<>();
+        for (int charge : this.fragmentCharges) {
+            for (int i = 1; i <= this.sequenceLength; i++) {
+                fragmentIons.add(fragmentIonCreator(ionSeriesIn, i, charge));
             }
         }
-        //this loop goes through all the amino acids
-        ArrayList<AminoAcid> aaComposition = new ArrayList<>();
-        for (int i = this.sequenceLength - 1; i > -1; i--) {
-            runningFormula = SumFormula.sumFormulaJoiner(runningFormula, this.aminoAcidsList.get(i).getWaterLossFormula());
-            aaComposition.add(this.aminoAcidsList.get(i));
-            //at this point, all the other fragment ions are modified
-            if (i <modPosition && hasModAtAll)
-                isModified = true;
-            if (i>=modPosition)
-                isModified = false;
-            ArrayList<AminoAcid> completeAAComp = new ArrayList<>();
-            completeAAComp.addAll(aaComposition);
-            this.yIons.add(new FragmentIon(runningFormula, chargeState, this, 'y', this.sequenceLength - i, isModified, completeAAComp));
-        }
-        return yIons;
+        return fragmentIons;
     }
 
 
     //this method uses an ArrayList of Modifications to attach modifications to existing peptides
     public Peptide peptideModifier(ArrayList<Modification> modListIn) {
-        ArrayList<AminoAcid> modAAList = this.getAminoAcidsList();
+        //copy, the amino acids of this peptide stay unmodified
+        ArrayList<AminoAcid> modAAList = new ArrayList<>(this.getAminoAcidsList());
         boolean modStatus = false;
         for (Modification mod : modListIn) {
             boolean fixedModPosition = mod.getPositionType();
             if (fixedModPosition) {
-                if (mod.getPositionNumber() > this.aminoAcidsList.size()) {
+                if (mod.getPositionNumber() > modAAList.size()) {
                     break;
                 }
-                AminoAcid currentAcid = this.aminoAcidsList.get(mod.getPositionNumber());
-                SumFormula newFormula = SumFormula.sumFormulaJoiner(mod.getModificationFormula(), currentAcid.getSumFormula());
-                AminoAcid modAcid = new AminoAcid("" + currentAcid.getName() + mod.getModificationName(), currentAcid.get3Let(), "" + currentAcid.get1Let(), newFormula.getSumFormula());
-                modAAList.set(mod.getPositionNumber(), modAcid);
-                modAAList.get(mod.getPositionNumber()).setHasModification(true);
-                modAAList.get(mod.getPositionNumber()).setModification(mod);
+                AminoAcid currentAcid = modAAList.get(mod.getPositionNumber());
+                modAAList.set(mod.getPositionNumber(), modifiedAcidCreator(currentAcid, mod));
                 modStatus = true;
             }
             if (!fixedModPosition) {
                 for (int i = 0; i < modAAList.size(); i++) {
                     if (modAAList.get(i).get1Let() == mod.getAminoAcidName()) {
                         AminoAcid currentAcid = modAAList.get(i);
-                        SumFormula newFormula = SumFormula.sumFormulaJoiner(mod.getModificationFormula(), currentAcid.getSumFormula());
-                        AminoAcid modAcid = new AminoAcid("" + currentAcid.getName() + mod.getModificationName(), currentAcid.get3Let(), "" + currentAcid.get1Let(), newFormula.getSumFormula());
-                        modAAList.set(i, modAcid);
-                        modAAList.get(i).setHasModification(true);
-                        modAAList.get(i).setModification(mod);
+                        modAAList.set(i, modifiedAcidCreator(currentAcid, mod));
                         modStatus = true;
                     }
                 }
@@ -214,6 +214,27 @@ public class Peptide {
         return modPeptide;
     }
 
+    //creates a new amino acid carrying the modification; the formula of the modification is added to the formula of the amino acid
+    //if the amino acid is already modified, the new modification is stacked on top and replaces the old one as the amino acid's modification
+    public static AminoAcid modifiedAcidCreator(AminoAcid currentAcid, Modification mod) {
+        SumFormula newFormula = SumFormula.sumFormulaJoiner(mod.getModificationFormula(), currentAcid.getSumFormula());
+        AminoAcid modAcid = new AminoAcid("" + currentAcid.getName() + mod.getModificationName(), currentAcid.get3Let(), "" + currentAcid.get1Let(), newFormula.getSumFormula());
+        modAcid.setHasModification(true);
+        modAcid.setModification(mod);
+        return modAcid;
+    }
+
+    //creates the peptide for a list of amino acids which already carry their modifications (e.g. from LabelCombinationModel)
+    //sequenceIn is the unmodified sequence, as for peptides created by peptideModifier
+    public static Peptide modifiedPeptideCreator(String sequenceIn, ArrayList<AminoAcid> modifiedAcidsIn) {
+        boolean modStatus = false;
+        for (AminoAcid aa : modifiedAcidsIn) {
+            if (aa.getModificationStatus())
+                modStatus = true;
+        }
+        return new Peptide(sequenceIn.toUpperCase(), modifiedAcidsIn, modStatus);
+    }
+
 
     public String getSequence() {
         return this.sequence;
@@ -239,37 +260,21 @@ public class Peptide {
         return this.aminoAcidsList;
     }
 
+    //the FragmentIon objects are created on every call, use getFragmentMToZ to go through the ladder
     public ArrayList<FragmentIon> getbIons() {
-        return this.bIons;
+        return fragmentIonListCreator('b');
     }
 
     public ArrayList<FragmentIon> getyIons() {
-        return this.yIons;
+        return fragmentIonListCreator('y');
     }
 
     public String getUnmodifiedSequence() {return this.unmodifiedSequence;}
 
     public void createAddFragmentIonChargestate(int chargeIn) {
         //check if additional charge states were already created
-        boolean containsChargeStateB = false;
-        boolean containsChargeStateY = false;
-
-        for (FragmentIon fragmentIon : this.bIons) {
-            if (chargeIn == fragmentIon.getCharge())
-                containsChargeStateB = true;
-        }
-        for (FragmentIon fragmentIon : this.yIons) {
-            if (chargeIn == fragmentIon.getCharge())
-                containsChargeStateY = true;
-        }
-
-        if (!containsChargeStateB) {
-            this.bIonBuilder(chargeIn);
-        }
-        if (!containsChargeStateY) {
-            this.yIonBuilder(chargeIn);
-        }
-
+        if (!this.fragmentCharges.contains(chargeIn))
+            fragmentChargeAdder(chargeIn);
     }
 
     public void peptidePrinter(){
@@ -4,24 +4,195 @@ import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLSpectrum;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Created by Michael Stadlmeier on 10/8/2017.
  */
 
 //class to analyze the mass differences between unmodified Peptides (or Peptides with known modifications) and the picked precursor masses
+    //precursorMassDiffBinner keeps every positive difference; for many scans and peptides, use precursorMassShiftHistogram, which only keeps the counts per bin
 public class PrecursorMassDiffBinner {
     static DecimalFormat fourDec = new DecimalFormat("0.0000");
 
     public static ArrayList<Double> precursorMassDiffBinner(MzXMLFile mzXMLFileIn, ArrayList<String> peptidesToCheck, ArrayList<AminoAcid> aminoAcidsListIn) throws MzXMLParsingException {
         //only positive mass differences are stored, because modifications are concerned
         ArrayList<Double> massDiffList = new ArrayList<>();
+        ArrayList<Peptide> peptidesList = peptideListCreator(peptidesToCheck, aminoAcidsListIn);
+        //now, loop through the MS2-scans, determine the unprotonated mass and check the mass difference of all the peptides
+        MzXMLFile.MzXMLScanIterator ms2Iterator =  mzXMLFileIn.getMS2ScanIterator();
+        while (ms2Iterator.hasNext()){
+            MzXMLSpectrum currentSpectrum = new MzXMLSpectrum(ms2Iterator.next());
+            Double precursorMZ = currentSpectrum.getPrecursorMZ();
+            int precursorCharge = currentSpectrum.getPrecursorCharge();
+            massDiffAdder(precursorMZ, precursorCharge, peptidesList, massDiffList);
+            if (AnalysisLog.isDebugEnabled())
+                AnalysisLog.debug("Precursor Mass analyzed! Spectrum Number: "+currentSpectrum.getId());
+            currentSpectrum = null;
+        }
+        return massDiffList;
+    }
+
+    //same analysis with the precursor information of a binary spectrum cache, no peaks have to be read
+    //scans without precursor m/z or charge are skipped
+    public static ArrayList<Double> precursorMassDiffBinner(BinarySpectrumCache cacheIn, ArrayList<String> peptidesToCheck, ArrayList<AminoAcid> aminoAcidsListIn) {
+        ArrayList<Double> massDiffList = new ArrayList<>();
+        ArrayList<Peptide> peptidesList = peptideListCreator(peptidesToCheck, aminoAcidsListIn);
+        for (int i = 0; i < cacheIn.getScanCount(); i++){
+            Double precursorMZ = cacheIn.getPrecursorMZ(i);
+            Integer precursorCharge = cacheIn.getPrecursorCharge(i);
+            if (precursorMZ == null || precursorCharge == null){
+                if (AnalysisLog.isDebugEnabled())
+                    AnalysisLog.debug("No precursor information! Spectrum Number: "+cacheIn.getScanNumber(i));
+                continue;
+            }
+            massDiffAdder(precursorMZ, precursorCharge, peptidesList, massDiffList);
+            if (AnalysisLog.isDebugEnabled())
+                AnalysisLog.debug("Precursor Mass analyzed! Spectrum Number: "+cacheIn.getScanNumber(i));
+        }
+        return massDiffList;
+    }
+
+    //fills the histogram with the mass differences of all the MS2 scans and peptides; the histogram sets the range and the width of the bins
+    //the precursor masses are read first, then the scans are distributed over the threads, every thread fills its own histogram
+    //the peptides are sorted by mass, so for every scan only the peptides with a mass difference within the histogram range are looked at
+    //scans without precursor m/z or charge are skipped
+    public static MassShiftHistogram precursorMassShiftHistogram(MzXMLFile mzXMLFileIn, ArrayList<String> peptidesToCheck, ArrayList<AminoAcid> aminoAcidsListIn,
+                                                                 MassShiftHistogram histogramIn, int threads) throws MzXMLParsingException {
+        double[] precursorMasses = new double[1024];
+        int scans = 0;
+        MzXMLFile.MzXMLScanIterator ms2Iterator =  mzXMLFileIn.getMS2ScanIterator();
+        while (ms2Iterator.hasNext()){
+            MzXMLSpectrum currentSpectrum = new MzXMLSpectrum(ms2Iterator.next());
+            Double precursorMZ = currentSpectrum.getPrecursorMZ();
+            Integer precursorCharge = currentSpectrum.getPrecursorCharge();
+            if (precursorMZ == null || precursorCharge == null)
+                continue;
+            if (scans == precursorMasses.length)
+                precursorMasses = Arrays.copyOf(precursorMasses, scans * 2);
+            precursorMasses[scans] = unchargedMassCalc(precursorMZ, precursorCharge);
+            scans++;
+        }
+        return massShiftHistogramFiller(Arrays.copyOf(precursorMasses, scans), peptideListCreator(peptidesToCheck, aminoAcidsListIn), histogramIn, threads);
+    }
+
+    //same histogram with the precursor information of a binary spectrum cache
+    public static MassShiftHistogram precursorMassShiftHistogram(BinarySpectrumCache cacheIn, ArrayList<String> peptidesToCheck, ArrayList<AminoAcid> aminoAcidsListIn,
+                                                                 MassShiftHistogram histogramIn, int threads) {
+        double[] precursorMasses = new double[cacheIn.getScanCount()];
+        int scans = 0;
+        for (int i = 0; i < cacheIn.getScanCount(); i++){
+            Double precursorMZ = cacheIn.getPrecursorMZ(i);
+            Integer precursorCharge = cacheIn.getPrecursorCharge(i);
+            if (precursorMZ == null || precursorCharge == null)
+                continue;
+            precursorMasses[scans] = unchargedMassCalc(precursorMZ, precursorCharge);
+            scans++;
+        }
+        return massShiftHistogramFiller(Arrays.copyOf(precursorMasses, scans), peptideListCreator(peptidesToCheck, aminoAcidsListIn), histogramIn, threads);
+    }
+
+    private static MassShiftHistogram massShiftHistogramFiller(double[] precursorMasses, ArrayList<Peptide> peptidesList, MassShiftHistogram histogramIn, int threads) {
+        double[] peptideMasses = new double[peptidesList.size()];
+        for (int i = 0; i < peptideMasses.length; i++) {
+            peptideMasses[i] = peptidesList.get(i).getExactMass();
+        }
+        Arrays.sort(peptideMasses);
+
+        //one part of the scans per thread; with one thread, the task is run directly
+        ExecutorService workers = null;
+        int parts = 1;
+        if (threads > 1 && precursorMasses.length > 1) {
+            parts = Math.min(threads, precursorMasses.length);
+            workers = Executors.newFixedThreadPool(parts);
+        }
+        ArrayList<Future<MassShiftHistogram>> partTasks = new ArrayList<>();
+        try {
+            for (int part = 0; part < parts; part++) {
+                int from = (int) ((long) precursorMasses.length * part / parts);
+                int to = (int) ((long) precursorMasses.length * (part + 1) / parts);
+                partTasks.add(massShiftTask(workers, precursorMasses, from, to, peptideMasses, histogramIn.emptyCopy()));
+            }
+            for (Future<MassShiftHistogram> partTask : partTasks) {
+                histogramIn.histogramMerger(massShiftResult(partTask));
+            }
+        }
+        finally {
+            if (workers != null)
+                workers.shutdownNow();
+        }
+        AnalysisLog.info("Precursor masses analyzed: " + precursorMasses.length + ", peptides: " + peptideMasses.length
+                + ", mass shifts in range: " + histogramIn.getTotalCount() + ", out of range: " + histogramIn.getOutOfRange());
+        return histogramIn;
+    }
+
+    //creates the task which adds the mass shifts of the scans from (included) to (excluded); without workers, the task is run directly
+    private static Future<MassShiftHistogram> massShiftTask(ExecutorService workers, final double[] precursorMasses, final int from, final int to,
+                                                            final double[] peptideMasses, final MassShiftHistogram histogramIn) {
+        Callable<MassShiftHistogram> task = new Callable<MassShiftHistogram>() {
+            @Override
+            public MassShiftHistogram call() {
+                double minShift = histogramIn.getMinShift();
+                double maxShift = histogramIn.getMaxShift();
+                for (int s = from; s < to; s++) {
+                    double unchargedMass = precursorMasses[s];
+                    //peptides with minShift <= difference < maxShift
+                    int first = PeakCompare.lowerBoundIndex(peptideMasses, unchargedMass - maxShift);
+                    int p = first;
+                    for (; p < peptideMasses.length; p++) {
+                        double difference = unchargedMass - peptideMasses[p];
+                        if (difference < minShift)
+                            break;
+                        histogramIn.shiftAdder(difference);
+                    }
+                    //the peptides before and after the window are out of range
+                    histogramIn.outOfRangeAdder(first + peptideMasses.length - p);
+                }
+                return histogramIn;
+            }
+        };
+        if (workers == null) {
+            FutureTask<MassShiftHistogram> directTask = new FutureTask<>(task);
+            directTask.run();
+            return directTask;
+        }
+        return workers.submit(task);
+    }
+
+    //waits for the task and passes on exceptions thrown by the task
+    private static MassShiftHistogram massShiftResult(Future<MassShiftHistogram> partTask) {
+        try {
+            return partTask.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the mass shift histogram!", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("Mass shift histogram failed!", cause);
+        }
+    }
+
+    private static ArrayList<Peptide> peptideListCreator(ArrayList<String> peptidesToCheck, ArrayList<AminoAcid> aminoAcidsListIn) {
         //first, make the Strings into peptides to get the peptide masses
         //if necessary, modify the peptides
         ArrayList<Peptide> peptidesList = new ArrayList<>();
+        //the amino acids of all the peptides are looked up in one table
+        ResidueTable residues = new ResidueTable(aminoAcidsListIn);
         for (String peptideSequence : peptidesToCheck){
             try {
-                Peptide newPeptide = new Peptide(peptideSequence, aminoAcidsListIn);
+                Peptide newPeptide = new Peptide(peptideSequence, residues);
                 ArrayList<Modification> mods = new ArrayList<>();
                 if (peptideSequence.contains("C")){
                     mods.add(Modification.carbamidomethylation());
@@ -36,25 +207,23 @@ public class PrecursorMassDiffBinner {
                 System.out.println("Queried Peptide sequence '" + peptideSequence + "' can't be translated into a valid peptide!");
             }
         }
-        //now, loop through the MS2-scans, determine the unprotonated mass and check the mass difference of all the peptides
-        MzXMLFile.MzXMLScanIterator ms2Iterator =  mzXMLFileIn.getMS2ScanIterator();
-        while (ms2Iterator.hasNext()){
-            MzXMLSpectrum currentSpectrum = new MzXMLSpectrum(ms2Iterator.next());
-            Double precursorMZ = currentSpectrum.getPrecursorMZ();
-            int precursorCharge = currentSpectrum.getPrecursorCharge();
-            //uncharged Mass [M] of the Precursor
-            double unchargedMass = precursorMZ * precursorCharge - precursorCharge *AtomicMasses.getPROTON();
-            //loop through all the peptides
-            for (Peptide peptide : peptidesList){
-                Double difference = unchargedMass - peptide.getExactMass();
-                //only add difference to the list if difference is positive
-                if (difference > 0){
-                    massDiffList.add(difference);
-                }
+        return peptidesList;
+    }
+
+    private static void massDiffAdder(double precursorMZ, int precursorCharge, ArrayList<Peptide> peptidesList, ArrayList<Double> massDiffList) {
+        //uncharged Mass [M] of the Precursor
+        double unchargedMass = unchargedMassCalc(precursorMZ, precursorCharge);
+        //loop through all the peptides
+        for (Peptide peptide : peptidesList){
+            Double difference = unchargedMass - peptide.getExactMass();
+            //only add difference to the list if difference is positive
+            if (difference > 0){
+                massDiffList.add(difference);
             }
-            System.out.println("Precursor Mass analyzed! Spectrum Number: "+currentSpectrum.getId());
-            currentSpectrum = null;
         }
-        return massDiffList;
+    }
+
+    private static double unchargedMassCalc(double precursorMZ, int precursorCharge) {
+        return precursorMZ * precursorCharge - precursorCharge *AtomicMasses.getPROTON();
     }
 }
@@ -0,0 +1,75 @@
+import java.io.File;
+import java.util.ArrayList;
+
+//amino acids of an amino acid list (see CSVReader.aminoAcidParse), indexed by their one-letter code
+    //replaces the search through the list for every residue; if a letter is in the list several times, the first amino acid is used, as before
+    //residue masses and water loss formulas are taken over from the amino acids, which calculate them once
+    //immutable after construction, can be used by several threads
+public class ResidueTable {
+    private static final int TABLE_SIZE = 128;
+    //table of the last used amino acid list, see residueTableGetter
+    private static volatile ResidueTable lastTable;
+
+    private ArrayList<AminoAcid> sourceAcids;
+    private int sourceSize;
+    private AminoAcid[] residues = new AminoAcid[TABLE_SIZE];
+    private double[] waterLossMasses = new double[TABLE_SIZE];
+
+    public ResidueTable(ArrayList<AminoAcid> acidsIn) {
+        this.sourceAcids = acidsIn;
+        this.sourceSize = acidsIn.size();
+        for (AminoAcid acid : acidsIn) {
+            char oneLetter = acid.get1Let();
+            if (oneLetter >= TABLE_SIZE)
+                throw new IllegalArgumentException("Invalid One-letter Code: " + oneLetter);
+            if (this.residues[oneLetter] != null)
+                continue;
+            this.residues[oneLetter] = acid;
+            this.waterLossMasses[oneLetter] = acid.getwaterLossMass();
+        }
+    }
+
+    //reads the amino acid list and creates its table
+    public static ResidueTable residueTableParse(File aminoAcidsIn) {
+        ArrayList<AminoAcid> acids = CSVReader.aminoAcidParse(aminoAcidsIn);
+        if (acids == null)
+            throw new IllegalArgumentException("Could not read the amino acids list: " + aminoAcidsIn.getAbsolutePath());
+        return new ResidueTable(acids);
+    }
+
+    //table of the amino acid list; the table of the last list is kept, since usually all the peptides of a run use the same list
+    //a list which was changed since its table was created gets a new table
+    public static ResidueTable residueTableGetter(ArrayList<AminoAcid> acidsIn) {
+        ResidueTable table = lastTable;
+        if (table != null && table.sourceAcids == acidsIn && table.sourceSize == acidsIn.size())
+            return table;
+        table = new ResidueTable(acidsIn);
+        lastTable = table;
+        return table;
+    }
+
+    //amino acid with the one-letter code; throws an IllegalArgumentException for unknown amino acids
+    public AminoAcid residueGetter(char oneLetterIn) {
+        if (oneLetterIn >= TABLE_SIZE || this.residues[oneLetterIn] == null)
+            throw new IllegalArgumentException("Amino Acid unknown: " + oneLetterIn);
+        return this.residues[oneLetterIn];
+    }
+
+    public boolean isKnownResidue(char oneLetterIn) {
+        return oneLetterIn < TABLE_SIZE && this.residues[oneLetterIn] != null;
+    }
+
+    //residue mass (amino acid - water)
+    public double getWaterLossMass(char oneLetterIn) {
+        residueGetter(oneLetterIn);
+        return this.waterLossMasses[oneLetterIn];
+    }
+
+    public SumFormula getWaterLossFormula(char oneLetterIn) {
+        return residueGetter(oneLetterIn).getWaterLossFormula();
+    }
+
+    public ArrayList<AminoAcid> getSourceAcids() {
+        return this.sourceAcids;
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//counters and histograms of a whole run analysis (Section 1 and the WholeRunPipeline)
+    //stages of every spectrum: decode (reading the spectrum), candidates (label combinations of the peptide), matching (fragment ladders, peak comparison and consolidation), write (.csv rows)
+    //there is one instance for the program, as the analysis is static; CSVReader.cicCheckerRunner starts and finishes a run
+    //runs which overlap (e.g. the raw files of an ExperimentBatchRunner) are counted together; the metrics are reset when a run starts while no other run is active
+    //the metrics are printed periodically (every 10 s, -DrunMetricsPeriod=seconds, 0 switches it off) and can be watched with JConsole or VisualVM as MBean NiceSpectraAnalyzer:type=RunMetrics
+public class RunMetrics implements RunMetricsMXBean {
+    private static final RunMetrics RUN_METRICS = new RunMetrics();
+    private static final String MBEAN_NAME = "NiceSpectraAnalyzer:type=RunMetrics";
+
+    private AtomicLong spectraToCheck = new AtomicLong();
+    private AtomicLong processedSpectra = new AtomicLong();
+    private AtomicLong sortedOutSpectra = new AtomicLong();
+    private AtomicLong matches = new AtomicLong();
+    private volatile long startNanos = System.nanoTime();
+    private MetricHistogram decodeLatency = new MetricHistogram("decode");
+    private MetricHistogram candidateLatency = new MetricHistogram("candidates");
+    private MetricHistogram matchingLatency = new MetricHistogram("matching");
+    private MetricHistogram writeLatency = new MetricHistogram("write");
+    private MetricHistogram matchesPerSpectrum = new MetricHistogram("matches per spectrum");
+
+    private long reportPeriodSeconds = Long.getLong("runMetricsPeriod", 10);
+    //null: the reports are printed with AnalysisLog.info
+    private String reportLogPath;
+    private ScheduledExecutorService reporter;
+    private int activeRuns;
+
+    public static RunMetrics getRunMetrics() {
+        return RUN_METRICS;
+    }
+
+    //adds the spectra of a run; if no other run is active, the metrics are reset first and the clock for spectra/s is started
+    //every runStarter needs a runFinisher
+    public synchronized void runStarter(int spectraToCheckIn, int sortedOutIn) {
+        if (this.activeRuns == 0)
+            reset();
+        this.activeRuns++;
+        this.spectraToCheck.addAndGet(spectraToCheckIn);
+        this.sortedOutSpectra.addAndGet(sortedOutIn);
+    }
+
+    //when the last active run is finished, the periodic reports are stopped and the final report is written
+    public synchronized void runFinisher() {
+        if (this.activeRuns == 0)
+            throw new IllegalStateException("No run was started!");
+        this.activeRuns--;
+        if (this.activeRuns == 0)
+            periodicReporterStopper();
+    }
+
+    public void reset() {
+        this.spectraToCheck.set(0);
+        this.processedSpectra.set(0);
+        this.sortedOutSpectra.set(0);
+        this.matches.set(0);
+        this.decodeLatency.reset();
+        this.candidateLatency.reset();
+        this.matchingLatency.reset();
+        this.writeLatency.reset();
+        this.matchesPerSpectrum.reset();
+        this.startNanos = System.nanoTime();
+    }
+
+    //one spectrum is checked and written
+    public void processedSpectrumAdder(int matchesIn) {
+        this.processedSpectra.incrementAndGet();
+        this.matches.addAndGet(matchesIn);
+        this.matchesPerSpectrum.valueAdder(matchesIn);
+    }
+
+    //spectra which were already in a resumed .csv-file count as processed, but not for spectra/s
+    public void skippedSpectraAdder(int spectraIn) {
+        this.processedSpectra.addAndGet(spectraIn);
+    }
+
+    //one line with the progress, the throughput and the latencies of all stages
+    public String reportBuilder() {
+        DecimalFormat oneDec = new DecimalFormat("0.0");
+        DecimalFormat threeDec = new DecimalFormat("0.000");
+        StringBuilder sb = new StringBuilder();
+        long processed = this.processedSpectra.get();
+        long toCheck = this.spectraToCheck.get();
+        sb.append("Processed spectra: ").append(processed).append("/").append(toCheck);
+        if (toCheck > 0)
+            sb.append(" (").append(oneDec.format(100.0 * processed / toCheck)).append("%)");
+        sb.append(", ").append(oneDec.format(getSpectraPerSecond())).append(" spectra/s");
+        sb.append(", sorted out: ").append(this.sortedOutSpectra.get());
+        sb.append(", matches: ").append(this.matches.get());
+        sb.append(", matches/spectrum: mean ").append(oneDec.format(this.matchesPerSpectrum.getMean()))
+                .append(" p95 ").append(this.matchesPerSpectrum.percentileCalculator(95));
+        sb.append(", label combination cache hit rate: ").append(oneDec.format(getLabelCombinationCacheHitRate())).append("%");
+        for (MetricHistogram latency : new MetricHistogram[]{this.decodeLatency, this.candidateLatency, this.matchingLatency, this.writeLatency}) {
+            sb.append(", ").append(latency.getName()).append(" [ms]: mean ").append(threeDec.format(latency.getMean() / 1e6))
+                    .append(" p95 ").append(threeDec.format(latency.percentileCalculator(95) / 1e6))
+                    .append(" max ").append(threeDec.format(latency.getMax() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    //starts printing reportBuilder every reportPeriodSeconds in a background thread
+    public synchronized void periodicReporterStarter() {
+        if (this.reporter != null || this.reportPeriodSeconds <= 0)
+            return;
+        this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "RunMetrics reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                reportWriter();
+            }
+        }, this.reportPeriodSeconds, this.reportPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    //stops the periodic reports and writes the final report
+    public synchronized void periodicReporterStopper() {
+        if (this.reporter != null) {
+            this.reporter.shutdownNow();
+            this.reporter = null;
+        }
+        reportWriter();
+    }
+
+    private void reportWriter() {
+        String report = reportBuilder();
+        if (this.reportLogPath == null) {
+            AnalysisLog.info(report);
+            return;
+        }
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        try (PrintWriter logOut = new PrintWriter(new FileWriter(this.reportLogPath, true))) {
+            logOut.println(time + " " + report);
+        }
+        catch (IOException e) {
+            System.out.println("Could not write the metrics log - " + this.reportLogPath);
+        }
+    }
+
+    //registers the metrics once at the platform MBean server
+    public static void mxBeanRegistration() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            synchronized (RUN_METRICS) {
+                if (!server.isRegistered(name))
+                    server.registerMBean(RUN_METRICS, name);
+            }
+        }
+        catch (JMException e) {
+            System.out.println("Could not register the run metrics for JMX: " + e.getMessage());
+        }
+    }
+
+    //0 switches the periodic reports off
+    public synchronized void setReportPeriodSeconds(long periodIn) {
+        if (periodIn < 0)
+            throw new IllegalArgumentException("Report period can't be negative! Period: "+periodIn);
+        this.reportPeriodSeconds = periodIn;
+    }
+
+    //the reports are appended to this file instead of printed; null prints them again
+    public synchronized void setReportLogPath(String logPathIn) {
+        this.reportLogPath = logPathIn;
+    }
+
+    public double getSpectraPerSecond() {
+        double seconds = (System.nanoTime() - this.startNanos) / 1e9;
+        if (seconds <= 0)
+            return 0;
+        return this.matchesPerSpectrum.getCount() / seconds;
+    }
+
+    public long getSpectraToCheck() {
+        return this.spectraToCheck.get();
+    }
+
+    public long getProcessedSpectra() {
+        return this.processedSpectra.get();
+    }
+
+    public long getSortedOutSpectra() {
+        return this.sortedOutSpectra.get();
+    }
+
+    public long getMatches() {
+        return this.matches.get();
+    }
+
+    //hits of LabelCombinationCache.getDefaultCache() in % of all lookups since the cache was cleared
+    public double getLabelCombinationCacheHitRate() {
+        LabelCombinationCache cache = LabelCombinationCache.getDefaultCache();
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        if (lookups == 0)
+            return 0;
+        return 100.0 * hits / lookups;
+    }
+
+    public double getMeanMatchesPerSpectrum() {
+        return this.matchesPerSpectrum.getMean();
+    }
+
+    public double getMeanDecodeMillis() {
+        return this.decodeLatency.getMean() / 1e6;
+    }
+
+    public double getMeanCandidateMillis() {
+        return this.candidateLatency.getMean() / 1e6;
+    }
+
+    public double getMeanMatchingMillis() {
+        return this.matchingLatency.getMean() / 1e6;
+    }
+
+    public double getMeanWriteMillis() {
+        return this.writeLatency.getMean() / 1e6;
+    }
+
+    public double getP95MatchingMillis() {
+        return this.matchingLatency.percentileCalculator(95) / 1e6;
+    }
+
+    public MetricHistogram getDecodeLatency() {
+        return this.decodeLatency;
+    }
+
+    public MetricHistogram getCandidateLatency() {
+        return this.candidateLatency;
+    }
+
+    public MetricHistogram getMatchingLatency() {
+        return this.matchingLatency;
+    }
+
+    public MetricHistogram getWriteLatency() {
+        return this.writeLatency;
+    }
+
+    public MetricHistogram getMatchesPerSpectrum() {
+        return this.matchesPerSpectrum;
+    }
+}
@@ -0,0 +1,17 @@
+//attributes of RunMetrics as shown by JConsole or VisualVM (MBean NiceSpectraAnalyzer:type=RunMetrics)
+    //latencies in milliseconds per spectrum
+public interface RunMetricsMXBean {
+    long getSpectraToCheck();
+    long getProcessedSpectra();
+    long getSortedOutSpectra();
+    long getMatches();
+    double getSpectraPerSecond();
+    double getMeanMatchesPerSpectrum();
+    double getLabelCombinationCacheHitRate();
+    double getMeanDecodeMillis();
+    double getMeanCandidateMillis();
+    double getMeanMatchingMillis();
+    double getMeanWriteMillis();
+    double getP95MatchingMillis();
+    void reset();
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+//reads the rows of a _statistics.csv-file (Section 3) directly from the CompClusterMatch rows, without writing the statistics file
+    //every row is created by CSVAnalyzer.cicStatisticsLineBuilder from the match rows of one scan, as CSVAnalyzer.cicStatistics does
+    //used by CSVReader.wholeRunRepFinder, so Section 4 can read a columnar match file (ColumnarMatchWriter) instead of the statistics file
+public class ScanStatisticsReader implements TableRowReader {
+    private TableRowReader matchRows;
+    private boolean ec;
+    private int scanNumberPosition;
+    //the match reader is already on the first row of the next scan
+    private boolean rowPending;
+    private ArrayList<String[]> scanRows = new ArrayList<>();
+    private String[] header;
+    private HashMap<String, Integer> columnPositions = new HashMap<>();
+    private String[] fields;
+    //own format, so different readers can be used by different threads
+    private DecimalFormat twoDec = new DecimalFormat("0.00");
+
+    public ScanStatisticsReader(TableRowReader matchRowsIn, boolean ecIn) throws IOException {
+        this.matchRows = matchRowsIn;
+        this.ec = ecIn;
+        this.scanNumberPosition = matchRowsIn.columnIndex("Scan Number");
+        if (this.scanNumberPosition < 0)
+            throw new IllegalArgumentException("Match rows without caption \"Scan Number\"!");
+        String statisticsHeader = CSVAnalyzer.cicStatisticsHeaderBuilder(ecIn);
+        this.header = statisticsHeader.substring(0, statisticsHeader.length() - 1).split(",");
+        for (int i = 0; i < this.header.length; i++) {
+            this.columnPositions.put(this.header[i], i);
+        }
+        this.rowPending = matchRowsIn.nextRow();
+    }
+
+    //collects the match rows of the next scan and creates its statistics row; false after the last scan
+    public boolean nextRow() throws IOException {
+        if (!this.rowPending)
+            return false;
+        int scanNumber = this.matchRows.getInt(this.scanNumberPosition);
+        this.scanRows.clear();
+        do {
+            this.scanRows.add(this.matchRows.getFields());
+            this.rowPending = this.matchRows.nextRow();
+        } while (this.rowPending && this.matchRows.getInt(this.scanNumberPosition) == scanNumber);
+        String line = CSVAnalyzer.cicStatisticsLineBuilder(this.scanRows, this.ec, this.twoDec);
+        this.fields = line.substring(0, line.length() - 1).split(",", -1);
+        return true;
+    }
+
+    public String[] getHeader() {
+        return this.header.clone();
+    }
+
+    public int columnIndex(String caption) {
+        Integer position = this.columnPositions.get(caption);
+        if (position == null)
+            return -1;
+        return position;
+    }
+
+    public String getString(int column) {
+        if (this.fields == null)
+            throw new IllegalStateException("No row was read!");
+        if (column < 0 || column >= this.fields.length)
+            throw new IllegalArgumentException("Column " + column + " does not exist! Number of columns: " + this.fields.length);
+        return this.fields[column];
+    }
+
+    public int getInt(int column) {
+        return Integer.parseInt(getString(column));
+    }
+
+    public String[] getFields() {
+        if (this.fields == null)
+            throw new IllegalStateException("No row was read!");
+        return this.fields.clone();
+    }
+
+    public void close() throws IOException {
+        this.matchRows.close();
+    }
+}
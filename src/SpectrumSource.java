@@ -0,0 +1,7 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+
+//provides the MySpectrum of a scan number for the whole run analyses
+    //implementations: MzXMLSpectrumSource (random access) and MzXMLSpectrumStream (one forward pass)
+public interface SpectrumSource {
+    MySpectrum getSpectrum(int scanNumber) throws JMzReaderException;
+}
@@ -1,115 +1,164 @@
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
 
 
 /**
  * Created by Michael Stadlmeier on 6/15/2017.
  */
+//the sum formula is stored as the number of atoms for each supported element
+    //joining and subtracting only add up the counts, no Element objects or Strings are created
 public class SumFormula {
+    //positions of the elements in the count array
+    public static final int C = 0;
+    public static final int CX = 1;
+    public static final int H = 2;
+    public static final int H_PLUS = 3;
+    public static final int N = 4;
+    public static final int O = 5;
+    public static final int S = 6;
+    public static final int F = 7;
+    private static final int ELEMENT_COUNT = 8;
+    //order of the elements in the sum formula String, same as Element.elementsToString: C H N O S Cx F H+
+    private static final int[] STRING_ORDER = {C, H, N, O, S, CX, F, H_PLUS};
+    private static final String[] ELEMENT_NAMES = {"C", "Cx", "H", "H+", "N", "O", "S", "F"};
+    private static final double[] ELEMENT_MASSES = {AtomicMasses.getCMASS(), AtomicMasses.getCxMASS(), AtomicMasses.getHMASS(), AtomicMasses.getPROTON(),
+            AtomicMasses.getNMASS(), AtomicMasses.getOMASS(), AtomicMasses.getSMASS(), AtomicMasses.getFMASS()};
+
     private String sumFormula;
-    private ArrayList<Element> elements;
+    private int[] elementCounts;
     private double exactMass;
     private double[] isotopicDistribution;
 
     public SumFormula(String formulaIn) {
-        this.elements = new ArrayList<>();
+        this.elementCounts = new int[ELEMENT_COUNT];
         int length = formulaIn.length();
-        //create String[] with length = 2 and elementName in [0] and elementQuantity in [1]
-        String[] toElementAdder = new String[2];
-        String elementName = "";
-        String elementNumber = "";
+        StringBuilder elementName = new StringBuilder();
+        StringBuilder elementNumber = new StringBuilder();
         //loop through complete string
         for (int a = 0; a < length; a++) {
+            char current = formulaIn.charAt(a);
             //check if char is UpperCaseLetter and begins new element Name
-            if (formulaIn.charAt(a) >= 'A' && formulaIn.charAt(a) <= 'Z') {
-                //if there already is a upper case letter in elementName, then parse previous ElementName to elementAdder
-                if (!elementName.isEmpty()) {
-                    toElementAdder[0] = elementName;
-                    toElementAdder[1] = elementNumber; //if elementNumber is empty, e.g. in C H4, then elementAdder will take care of that
-                    elementAdder(toElementAdder);
-                    elementName = "";
-                    elementNumber = "";
-                    toElementAdder[0] = "";
-                    toElementAdder[1] = "";
+            if (current >= 'A' && current <= 'Z') {
+                //if there already is a upper case letter in elementName, then add the previous element
+                if (elementName.length() != 0) {
+                    elementAdder(elementName.toString(), elementNumber.toString()); //if elementNumber is empty, e.g. in C H4, then elementAdder will take care of that
+                    elementName.setLength(0);
+                    elementNumber.setLength(0);
                 }
-                elementName += formulaIn.charAt(a);
+                elementName.append(current);
             }
             //check for lower case letters
-            if (formulaIn.charAt(a) >= 'a' && formulaIn.charAt(a) <= 'z') {
-                elementName += formulaIn.charAt(a);
+            if (current >= 'a' && current <= 'z') {
+                elementName.append(current);
             }
-            if (formulaIn.charAt(a) == '+') {
-                elementName += formulaIn.charAt(a);
+            if (current == '+') {
+                elementName.append(current);
             }
             //check for numbers
-            if (formulaIn.charAt(a) >= '0' && formulaIn.charAt(a) <= '9') {
-                elementNumber += formulaIn.charAt(a);
+            if (current >= '0' && current <= '9') {
+                elementNumber.append(current);
             }
         }
-        //flush remaining list to element Adder
-        toElementAdder[0] = elementName;
-        toElementAdder[1] = elementNumber; //if elementNumber is empty, e.g. in C H4, then elementAdder will take care of that
-        elementAdder(toElementAdder);
+        //flush remaining element
+        elementAdder(elementName.toString(), elementNumber.toString());
+    }
 
-        for (Element element : this.elements) {
-            this.exactMass += element.getElementMass();
+    //counts are taken over, the exact mass is summed up atom by atom in the order of the sum formula String
+    //(same order and therefore same rounding as if the String was parsed again)
+    private SumFormula(int[] elementCountsIn) {
+        this.elementCounts = elementCountsIn;
+        for (int element : STRING_ORDER) {
+            for (int i = 0; i < elementCountsIn[element]; i++) {
+                this.exactMass += ELEMENT_MASSES[element];
+            }
         }
-        this.sumFormula = Element.elementsToString(this.elements);
     }
 
     public static SumFormula sumFormulaJoiner(SumFormula a, SumFormula b){
-        ArrayList<Element> joinedFormula = new ArrayList<>();
-        joinedFormula.addAll(a.getElements());
-        joinedFormula.addAll(b.getElements());
-        String sumFormula = Element.elementsToString(joinedFormula);
-        SumFormula newSumFormula = new SumFormula(sumFormula);
-    return newSumFormula;
+        int[] joinedCounts = new int[ELEMENT_COUNT];
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            joinedCounts[i] = a.elementCounts[i] + b.elementCounts[i];
+        }
+        return new SumFormula(joinedCounts);
     }
 
 
-    //to implement: error handling if element in b is not present anymore in a
-    public static SumFormula sumFormulaSubstractor(SumFormula a, SumFormula b){
-        if (a.getElements().size() < b.getElements().size())
-        {
-            throw new IllegalArgumentException("Sumformula "+b.getSumFormula()+" is bigger than Sumformula "+a.getSumFormula());
-        }
-        ArrayList<Element> joinedFormula = new ArrayList<>();
-        joinedFormula.addAll(a.getElements());
-        for (Element e : b.getElements()){
-            for (int i = joinedFormula.size()-1; i>0;i--){
-                if (e.getElementName().equals(joinedFormula.get(i).getElementName())){
-                    joinedFormula.remove(i);
-                    break;
-                }
+    //joins all the formulas at once; same counts and exact mass as joining them one after another, but the mass is only summed up once
+    public static SumFormula sumFormulaJoiner(SumFormula[] formulasIn){
+        int[] joinedCounts = new int[ELEMENT_COUNT];
+        for (SumFormula formula : formulasIn) {
+            for (int i = 0; i < ELEMENT_COUNT; i++) {
+                joinedCounts[i] += formula.elementCounts[i];
             }
+        }
+        return new SumFormula(joinedCounts);
+    }
 
 
+    public static SumFormula sumFormulaSubstractor(SumFormula a, SumFormula b){
+        int[] remainingCounts = new int[ELEMENT_COUNT];
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            remainingCounts[i] = a.elementCounts[i] - b.elementCounts[i];
+            if (remainingCounts[i] < 0)
+                throw new IllegalArgumentException("Sumformula "+b.getSumFormula()+" is bigger than Sumformula "+a.getSumFormula());
         }
-        String sumFormula = Element.elementsToString(joinedFormula);
-        SumFormula newSumFormula = new SumFormula(sumFormula);
-        return newSumFormula;
+        return new SumFormula(remainingCounts);
     }
 
 
 
-    private void elementAdder(String[] elementQuantity) {
-        if (elementQuantity.length != 2)
-            throw new IllegalArgumentException("elementQuantity was formated incorrectly! Length: " + elementQuantity.length);
+    //adds quantity atoms of the element to the counts, the exact mass is summed up atom by atom in parsing order
+    private void elementAdder(String element, String quantityIn) {
         int quantity = 0;
-        String element = elementQuantity[0];
-        if (elementQuantity[1].isEmpty())
-            elementQuantity[1] = "1";
+        if (quantityIn.isEmpty())
+            quantityIn = "1";
         try {
-            quantity = Integer.parseInt(elementQuantity[1]);
+            quantity = Integer.parseInt(quantityIn);
         } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("This is not a number: " + elementQuantity[1]);
+            throw new IllegalArgumentException("This is not a number: " + quantityIn);
         }
+        if (quantity == 0)
+            return;
+        int elementIndex = elementIndex(element);
+        this.elementCounts[elementIndex] += quantity;
         for (int i = 0; i < quantity; i++) {
-            Element e = new Element("" + elementQuantity[0]);
-            this.elements.add(e);
+            this.exactMass += ELEMENT_MASSES[elementIndex];
         }
     }
 
+    private static int elementIndex(String elementName) {
+        switch (elementName) {
+            case "C":
+                return C;
+            case "Cx":
+                return CX;
+            case "H":
+                return H;
+            case "H+":
+                return H_PLUS;
+            case "N":
+                return N;
+            case "O":
+                return O;
+            case "S":
+                return S;
+            case "F":
+                return F;
+            default:
+                throw new NoSuchElementException("Element unknown: " + elementName);
+        }
+    }
+
+    //the String is only built if it is needed, e.g. for the output files
     public String getSumFormula() {
+        if (this.sumFormula == null) {
+            StringBuilder sb = new StringBuilder();
+            for (int element : STRING_ORDER) {
+                if (this.elementCounts[element] != 0)
+                    sb.append(ELEMENT_NAMES[element]).append(this.elementCounts[element]);
+            }
+            this.sumFormula = sb.toString();
+        }
         return this.sumFormula;
     }
 
@@ -117,8 +166,20 @@ public class SumFormula {
         return this.exactMass;
     }
 
+    //number of atoms of the element at the given position (e.g. SumFormula.CX)
+    public int getElementCount(int element) {
+        return this.elementCounts[element];
+    }
+
+    //creates one Element per atom, use getElementCount if only the numbers are needed
     public ArrayList<Element> getElements() {
-        return this.elements;
+        ArrayList<Element> elements = new ArrayList<>();
+        for (int element : STRING_ORDER) {
+            for (int i = 0; i < this.elementCounts[element]; i++) {
+                elements.add(new Element(ELEMENT_NAMES[element]));
+            }
+        }
+        return elements;
     }
 
     public static SumFormula getWaterFormula(){
@@ -130,58 +191,24 @@ public class SumFormula {
         return protonFormula;
     }
     public int getProtonNumber(){
-        int protonNumber =0;
-
-        for (Element e : this.elements){
-            if (e.getElementName().equals("H+"))
-                protonNumber++;
-        }
-
-
-
-        return protonNumber;
+        return this.elementCounts[H_PLUS];
     }
 
     public int getCNumber(){
-        int cNumber = 0;
-        for (Element e : this.elements){
-            if (e.getElementName().equals("C"))
-                cNumber++;
-        }
-        return cNumber;
+        return this.elementCounts[C];
     }
     public int getHNumber(){
-        int hNumber = 0;
-        for (Element e : this.elements){
-            if (e.getElementName().equals("H") || e.getElementName().equals("H+"))
-                hNumber++;
-        }
-        return hNumber;
+        return this.elementCounts[H] + this.elementCounts[H_PLUS];
     }
 
     public int getNNumber(){
-        int nNumber = 0;
-        for (Element e : this.elements){
-            if (e.getElementName().equals("N"))
-                nNumber++;
-        }
-        return nNumber;
+        return this.elementCounts[N];
     }
     public int getONumber(){
-        int oNumber = 0;
-        for (Element e : this.elements){
-            if (e.getElementName().equals("O"))
-                oNumber++;
-        }
-        return oNumber;
+        return this.elementCounts[O];
     }
     public int getSNumber(){
-        int sNumber = 0;
-        for (Element e : this.elements){
-            if (e.getElementName().equals("S"))
-                sNumber++;
-        }
-        return sNumber;
+        return this.elementCounts[S];
     }
 
 }
@@ -0,0 +1,22 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+//reads a table with a header row by row
+    //implementations: DelimitedReader (.csv-files), ColumnarMatchReader (compressed CompClusterMatch files) and ScanStatisticsReader (statistics rows of a CompClusterMatch file)
+public interface TableRowReader extends Closeable {
+    //reads the next row; false at the end of the table
+    boolean nextRow() throws IOException;
+
+    String[] getHeader();
+
+    //index of the column with this caption in the header, -1 if there is none
+    int columnIndex(String caption);
+
+    String getString(int column);
+
+    //same result and exceptions as Integer.parseInt of getString
+    int getInt(int column);
+
+    //all the fields of the current row
+    String[] getFields();
+}
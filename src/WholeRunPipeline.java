@@ -0,0 +1,148 @@
+import uk.ac.ebi.pride.tools.jmzreader.JMzReaderException;
+import uk.ac.ebi.pride.tools.mzxml_parser.MzXMLFile;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//Sections 1 to 5 in one pass over the run
+    //the matches of every spectrum are written into the complete .csv-file (as with a CompClusterCSVWriter) and kept in memory until the scan number changes
+    //then the statistics (Section 3), the reporter ions (Section 4, with the spectrum which is still in memory) and the complementary clusters (Section 5) of this scan are written
+    //the same rows and files are created as by Sections 1 to 5, without reading the complete .csv-file, the statistics file and the spectra again
+    //rows without precursor mass or charge (NA) are written into the complete .csv-file, but are not analyzed further, since Sections 3 to 5 can't handle them
+    //EC or TMT columns are chosen with labelIn instead of the file name
+public class WholeRunPipeline implements Closeable {
+    private PrintWriter statisticsWriter;
+    private PrintWriter reporterWriter;
+    private PrintWriter clusterWriter;
+    private boolean ec;
+    private String labelName;
+    private double reporterPpmDev;
+    private HashMap<String, Integer> captionPositions;
+    //rows of the scan which is not finished yet
+    private ArrayList<String[]> scanRows = new ArrayList<>();
+    private int activeScanNumber;
+    private MySpectrum activeSpectrum;
+    private int analyzedScans;
+    private int skippedSpectra;
+    //own formats, so different pipelines can be run by different threads
+    private DecimalFormat twoDec = new DecimalFormat("0.00");
+    private DecimalFormat scientific = new DecimalFormat("0.00E0");
+
+    //completeCSVPathIn: path of the complete .csv-file, the other files are created next to it with the names used by Sections 3 to 5
+    public WholeRunPipeline(String completeCSVPathIn, String labelIn, double reporterPpmDevIn) throws IOException {
+        if (!labelIn.equals("TMT") && !labelIn.equals("EC"))
+            throw new IllegalArgumentException("Unknown label: "+labelIn+"! Please use TMT or EC");
+        this.ec = labelIn.equals("EC");
+        this.labelName = labelIn;
+        this.reporterPpmDev = reporterPpmDevIn;
+        this.captionPositions = CSVAnalyzer.cicCaptionPositions(CSVCreator.compClusterHeaderBuilder().split(","));
+
+        String statisticsPath = completeCSVPathIn.replace(".csv", "_") + "statistics.csv";
+        String reporterPath = new File(statisticsPath).getAbsolutePath().replace("_statistics.csv", "") + "_reporterIons.csv";
+        String clusterPath = completeCSVPathIn.replace(".csv", "_") + "complementaryClusters_5rel.csv";
+        this.statisticsWriter = writerCreator(statisticsPath);
+        this.reporterWriter = writerCreator(reporterPath);
+        this.clusterWriter = writerCreator(clusterPath);
+        this.statisticsWriter.write(CSVAnalyzer.cicStatisticsHeaderBuilder(this.ec));
+        this.reporterWriter.write(CSVReader.reporterHeaderBuilder());
+        this.clusterWriter.write(CSVAnalyzer.cicRatioHeaderBuilder());
+    }
+
+    //runs the whole analysis of one run
+    //streamSpectra and threads: see CSVReader.wholeRunCICChecker; with streamSpectra, all the files are ordered by scan number
+    public static void wholeRunPipeline(MzXMLFile runIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, String completeCSVPath, String labelIn,
+                                        double reporterPpmDev, boolean streamSpectra, int threads) throws JMzReaderException, IOException {
+        pipelineRunner(CSVReader.mzXMLSpectrumSourceCreator(runIn, streamSpectra), streamSpectra, CSVReader.evidenceParse(evidence), aminoAcids, accuracy, completeCSVPath, labelIn,
+                reporterPpmDev, threads);
+    }
+
+    //same analysis with spectra from a random access source, e.g. a BinarySpectrumCache
+    public static void wholeRunPipeline(SpectrumSource spectraIn, File evidence, ArrayList<AminoAcid> aminoAcids, double accuracy, String completeCSVPath, String labelIn,
+                                        double reporterPpmDev, int threads) throws JMzReaderException, IOException {
+        pipelineRunner(spectraIn, false, CSVReader.evidenceParse(evidence), aminoAcids, accuracy, completeCSVPath, labelIn, reporterPpmDev, threads);
+    }
+
+    //evidenceEntries: the rows of the evidence.txt which belong to this run
+    static void pipelineRunner(SpectrumSource spectra, boolean streamSpectra, ArrayList<EvidenceEntry> evidenceEntries, ArrayList<AminoAcid> aminoAcids, double accuracy,
+                               String completeCSVPath, String labelIn, double reporterPpmDev, int threads) throws JMzReaderException, IOException {
+        WholeRunPipeline pipeline = new WholeRunPipeline(completeCSVPath, labelIn, reporterPpmDev);
+        try {
+            //the complete .csv-file is only forced to disk when it is closed
+            CompClusterCSVWriter csvOut = new CompClusterCSVWriter(completeCSVPath, 0);
+            try {
+                CSVReader.cicCheckerRunner(spectra, streamSpectra, evidenceEntries, aminoAcids, accuracy, 0, null, csvOut, pipeline, labelIn, threads);
+            }
+            finally {
+                csvOut.close();
+            }
+        }
+        finally {
+            pipeline.close();
+        }
+        AnalysisLog.info("Pipeline complete! Scans analyzed: " + pipeline.analyzedScans + ", spectra without precursor: " + pipeline.skippedSpectra);
+    }
+
+    //adds the written rows of one spectrum; the rows of the previous scan are analyzed as soon as a row with another scan number arrives
+    public void checkedSpectrumAdder(MySpectrum spectrumIn, ArrayList<String[]> rowsIn) {
+        if (rowsIn.isEmpty())
+            return;
+        //all the rows of a spectrum have the same precursor
+        try {
+            Integer.parseInt(rowsIn.get(0)[2].replace("+", ""));
+            Double.parseDouble(rowsIn.get(0)[1]);
+        }
+        catch (NumberFormatException e) {
+            this.skippedSpectra++;
+            return;
+        }
+        int scanNumber = Integer.parseInt(rowsIn.get(0)[15]);
+        if (!this.scanRows.isEmpty() && scanNumber != this.activeScanNumber)
+            scanFinisher();
+        this.activeScanNumber = scanNumber;
+        this.activeSpectrum = spectrumIn;
+        this.scanRows.addAll(rowsIn);
+    }
+
+    //writes the statistics, reporter ion and complementary cluster lines of the active scan
+    private void scanFinisher() {
+        String statisticsLine = CSVAnalyzer.cicStatisticsLineBuilder(this.scanRows, this.ec, this.twoDec);
+        this.statisticsWriter.write(statisticsLine);
+        //modified peptide, precursor charge, scan number and leading proteins, as read from the statistics file by Section 4
+        String[] reporterRowValues = Arrays.copyOf(statisticsLine.split(","), 4);
+        this.reporterWriter.write(CSVReader.reporterLineBuilder(reporterRowValues, this.activeSpectrum, this.labelName, this.reporterPpmDev, this.twoDec, this.scientific));
+        this.clusterWriter.write(CSVAnalyzer.cicRatioLinesBuilder(this.scanRows, this.captionPositions));
+        this.scanRows.clear();
+        this.activeSpectrum = null;
+        this.analyzedScans++;
+        if (AnalysisLog.isDebugEnabled())
+            AnalysisLog.debug("Analyzed scan: #" + this.activeScanNumber);
+    }
+
+    private static PrintWriter writerCreator(String filePath) throws IOException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath)), 1 << 16));
+    }
+
+    //analyzes the last scan and closes the files
+    public void close() throws IOException {
+        try {
+            if (!this.scanRows.isEmpty())
+                scanFinisher();
+        }
+        finally {
+            this.statisticsWriter.close();
+            this.reporterWriter.close();
+            this.clusterWriter.close();
+        }
+        if (this.statisticsWriter.checkError() || this.reporterWriter.checkError() || this.clusterWriter.checkError())
+            throw new IOException("Could not write the pipeline .csv-files!");
+    }
+}